@@ -5,7 +5,14 @@ import android.support.v7.app.AppCompatDelegate;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.File;
+
+import io.github.froodyapp.api.invoker.ApiClient;
+import io.github.froodyapp.api.invoker.ApiMetrics;
+import io.github.froodyapp.api.invoker.CachePolicy;
 import io.github.froodyapp.api.invoker.Configuration;
+import io.github.froodyapp.api.invoker.RetryPolicy;
+import io.github.froodyapp.service.BlockFetcher;
 import io.github.froodyapp.service.UserRegisterer;
 import io.github.froodyapp.util.AppSettings;
 import io.github.froodyapp.util.MyEntriesHelper;
@@ -19,6 +26,11 @@ public class App extends Application {
     //## Const
     //#####################
     public static final boolean LOGGING_ENABLED = true;
+    private static final long HTTP_CACHE_SIZE = 5 * 1024 * 1024;
+    private static final long KEEP_ALIVE_MILLIS = 5 * 60 * 1000;
+    private static final int BLOCK_GET_TIMEOUT_MILLIS = 30 * 1000;
+    private static final int CIRCUIT_BREAKER_THRESHOLD = 5;
+    private static final long CIRCUIT_BREAKER_OPEN_MILLIS = 30 * 1000;
 
     /**
      * Log to console
@@ -48,12 +60,59 @@ public class App extends Application {
 
         appSettings = new AppSettings(this);
         String server = appSettings.getFroodyServer();
-        Configuration.getDefaultApiClient().setBasePath(server);
+        ApiClient apiClient = Configuration.getDefaultApiClient();
+        apiClient.setBasePath(server);
+        apiClient.setMetricsEnabled(true);
+        setupConnections(apiClient);
+        setupHttpCache(apiClient);
         UserRegisterer.registerUserIfNotRegistered(this);
 
         new MyEntriesHelper(this).processMyEntriesToBlockCache();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            ApiMetrics metrics = Configuration.getDefaultApiClient().getMetrics();
+            if (metrics != null) {
+                log(getClass(), "API metrics:\n" + metrics.dump());
+            }
+        }
+    }
+
+    /**
+     * Keep a connection alive for each parallel block fetch, so moving the map reuses them.
+     * Failed requests are retried with backoff, a failing host is not requested for a while.
+     * Block sync calls are retried by the BlockRetryQueue only, not on the fetching threads
+     *
+     * @param apiClient The shared ApiClient
+     */
+    private void setupConnections(ApiClient apiClient) {
+        apiClient.setConnectionPool(BlockFetcher.MAX_PARALLEL_FETCHES + 2, KEEP_ALIVE_MILLIS);
+        // Blocks of low precision can be big on slow connections
+        apiClient.setCallTimeout("/block/get", BLOCK_GET_TIMEOUT_MILLIS);
+        // Ride out short hiccups, but stop hammering a server which is down
+        apiClient.setRetryPolicy(new RetryPolicy(3, 500, 8000));
+        apiClient.setRetryPolicy("/block/info", RetryPolicy.NONE);
+        apiClient.setRetryPolicy("/block/get", RetryPolicy.NONE);
+        apiClient.setRetryPolicy("/block/changes", RetryPolicy.NONE);
+        apiClient.setCircuitBreaker(CIRCUIT_BREAKER_THRESHOLD, CIRCUIT_BREAKER_OPEN_MILLIS);
+    }
+
+    /**
+     * Cache the responses re-requested for the same blocks while the map is moved around
+     *
+     * @param apiClient The shared ApiClient
+     */
+    private void setupHttpCache(ApiClient apiClient) {
+        apiClient.enableCache(new File(getCacheDir(), "http"), HTTP_CACHE_SIZE);
+        // Block infos tell if a block has to be reloaded, so revalidate them soon
+        apiClient.setCachePolicy("/block/info", new CachePolicy(60, 0));
+        // Popular entry types change slowly, show the known ones immediately
+        apiClient.setCachePolicy("/entry/popularEntryTypes", new CachePolicy(10 * 60, 24 * 60 * 60));
+    }
+
     //#####################
     //## Getter & Setter
     //#####################
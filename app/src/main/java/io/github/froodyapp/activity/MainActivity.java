@@ -23,6 +23,8 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.Toast;
 
+import org.osmdroid.util.BoundingBox;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -34,8 +36,9 @@ import io.github.froodyapp.R;
 import io.github.froodyapp.api.model_.FroodyEntry;
 import io.github.froodyapp.listener.FroodyEntrySelectedListener;
 import io.github.froodyapp.location.LocationTool;
+import io.github.froodyapp.model.CompactEntry;
 import io.github.froodyapp.model.FroodyEntryPlus;
-import io.github.froodyapp.service.EntryByBlockLoader;
+import io.github.froodyapp.service.BlockLoadScheduler;
 import io.github.froodyapp.service.EntryDetailsLoader;
 import io.github.froodyapp.ui.BaseFragment;
 import io.github.froodyapp.util.AppCast;
@@ -250,9 +253,7 @@ public class MainActivity extends AppCompatActivity implements FroodyEntrySelect
                             wasRequestForMyServer = true;
                         }
                         if (wasRequestForMyServer) {
-                            FroodyEntryPlus entry = new FroodyEntryPlus(new FroodyEntry());
-                            entry.setEntryId(entryId);
-                            new EntryDetailsLoader(this, entry, null, REQUEST_BY_SHARED_INTO_APP).start();
+                            loadSharedEntry(entryId);
                         }
                     } catch (NumberFormatException | NullPointerException ex) {
                         return;
@@ -374,6 +375,40 @@ public class MainActivity extends AppCompatActivity implements FroodyEntrySelect
     }
 
 
+    // Look up an entry shared into the app in the BlockCache, off the UI thread as it may be paged in
+    // Entries not cached are requested from the server
+    private void loadSharedEntry(final long entryId) {
+        new Thread() {
+            public void run() {
+                final FroodyEntryPlus cached = BlockCache.getInstance().getEntryById(entryId);
+                if (cached != null) {
+                    // Post to the decor view, so the map fragment transaction is done when called from onCreate
+                    getWindow().getDecorView().post(new Runnable() {
+                        public void run() {
+                            onSharedEntryLoaded(cached);
+                        }
+                    });
+                } else {
+                    FroodyEntryPlus entry = new FroodyEntryPlus(new FroodyEntry());
+                    entry.setEntryId(entryId);
+                    new EntryDetailsLoader(MainActivity.this, entry, null, REQUEST_BY_SHARED_INTO_APP).start();
+                }
+            }
+        }.start();
+    }
+
+    // Show an entry shared into the app
+    private void onSharedEntryLoaded(FroodyEntryPlus entry) {
+        onFroodyEntrySelected(entry);
+
+        BaseFragment baseFrag = getCurrentVisibleFragment();
+        if (baseFrag != null && baseFrag.isAdded() && baseFrag.getFragmentTag().equals(MapOSMFragment.FRAGMENT_TAG)) {
+            MapOSMFragment mapFragment = (MapOSMFragment) baseFrag;
+            mapFragment.addOrUpdateFroodyEntryToCluster(entry, true);
+            mapFragment.zoomToPosition(entry.getLatitude(), entry.getLongitude(), 17);
+        }
+    }
+
     public void onLocationFound(LocationTool.LocationToolResponse location) {
         this.lastFoundLocation = location;
         BaseFragment frag = getCurrentVisibleFragment();
@@ -382,8 +417,8 @@ public class MainActivity extends AppCompatActivity implements FroodyEntrySelect
             // Check if the map is visible
             if (frag.getFragmentTag().equals(MapOSMFragment.FRAGMENT_TAG)) {
                 MapOSMFragment mapFragment = (MapOSMFragment) frag;
-                new EntryByBlockLoader(this, location.lat, location.lng,
-                        MapOSMFragment.ZOOMLEVEL_BLOCK5_TRESHOLD).start();
+                BlockLoadScheduler.getInstance().loadPosition(this, location.lat, location.lng,
+                        MapOSMFragment.ZOOMLEVEL_BLOCK5_TRESHOLD);
 
 
                 // Show snackbar if far away
@@ -420,13 +455,21 @@ public class MainActivity extends AppCompatActivity implements FroodyEntrySelect
             switch (intent.getAction()) {
 
                 case AppCast.FROODY_ENTRIES_LOADED.ACTION: {
-                    ArrayList<FroodyEntryPlus> entries = AppCast.getFroodyEntryListFromIntent(
+                    ArrayList<CompactEntry> entries = AppCast.getCompactEntryListFromIntent(
                             intent, AppCast.FROODY_ENTRIES_LOADED.EXTRA_FROODY_ENTRIES);
 
                     BaseFragment baseFrag = getCurrentVisibleFragment();
                     if (baseFrag != null && baseFrag.isAdded() && baseFrag.getFragmentTag().equals(MapOSMFragment.FRAGMENT_TAG)) {
                         MapOSMFragment mapFragment = (MapOSMFragment) baseFrag;
-                        mapFragment.addFroodyEntriesToCluster(entries);
+                        mapFragment.addEntriesToCluster(entries);
+                    }
+                    break;
+                }
+
+                case AppCast.BLOCKS_PAGED_IN.ACTION: {
+                    BaseFragment baseFrag = getCurrentVisibleFragment();
+                    if (baseFrag != null && baseFrag.isAdded() && baseFrag.getFragmentTag().equals(MapOSMFragment.FRAGMENT_TAG)) {
+                        ((MapOSMFragment) baseFrag).loadEntriesFromBlockCache();
                     }
                     break;
                 }
@@ -450,7 +493,19 @@ public class MainActivity extends AppCompatActivity implements FroodyEntrySelect
                     double lng = intent.getDoubleExtra(AppCast.MAP_POSITION_CHANGED.EXTRA_LONGITUDE, 0.0);
                     int zoom = intent.getIntExtra(AppCast.MAP_POSITION_CHANGED.EXTRA_ZOOM, 15);
 
-                    new EntryByBlockLoader(context, lat, lng, zoom).start();
+                    BoundingBox bbox = AppCast.MAP_POSITION_CHANGED.getBoundingBoxFromIntent(intent);
+                    if (bbox != null) {
+                        BlockLoadScheduler.getInstance().loadViewport(context, bbox.getLatNorth(), bbox.getLonEast(),
+                                bbox.getLatSouth(), bbox.getLonWest(), lat, lng, zoom);
+                    } else {
+                        BlockLoadScheduler.getInstance().loadViewport(context, lat, lng, lat, lng, lat, lng, zoom);
+                    }
+
+                    // Show the cached entries of the now visible area, blocks not in memory yet follow with BLOCKS_PAGED_IN
+                    BaseFragment baseFrag = getCurrentVisibleFragment();
+                    if (baseFrag != null && baseFrag.isAdded() && baseFrag.getFragmentTag().equals(MapOSMFragment.FRAGMENT_TAG)) {
+                        ((MapOSMFragment) baseFrag).loadEntriesFromBlockCache();
+                    }
 
                     if (zoom >= MapOSMFragment.ZOOMLEVEL_BLOCK5_TRESHOLD) {
                         appSettings.setLastMapLocation(lat, lng, zoom);
@@ -476,15 +531,7 @@ public class MainActivity extends AppCompatActivity implements FroodyEntrySelect
 
                 case AppCast.FROODY_ENTRY_DETAILS_LOADED.ACTION: {
                     if (REQUEST_BY_SHARED_INTO_APP.equals(intent.getStringExtra(AppCast.FROODY_ENTRY_DETAILS_LOADED.EXTRA_REQUESTED_BY))) {
-                        FroodyEntryPlus entry = AppCast.getEntryFromIntent(intent);
-                        onFroodyEntrySelected(entry);
-
-                        BaseFragment baseFrag = getCurrentVisibleFragment();
-                        if (baseFrag != null && baseFrag.isAdded() && baseFrag.getFragmentTag().equals(MapOSMFragment.FRAGMENT_TAG)) {
-                            MapOSMFragment mapFragment = (MapOSMFragment) baseFrag;
-                            mapFragment.addOrUpdateFroodyEntryToCluster(entry, true);
-                            mapFragment.zoomToPosition(entry.getLatitude(), entry.getLongitude(), 17);
-                        }
+                        onSharedEntryLoaded(AppCast.getEntryFromIntent(intent));
                     }
 
                     break;
@@ -10,6 +10,7 @@ import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 
 import org.osmdroid.api.IMapController;
 import org.osmdroid.events.MapListener;
@@ -22,7 +23,11 @@ import org.osmdroid.views.MapView;
 import org.osmdroid.views.overlay.gestures.RotationGestureOverlay;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import ch.hsr.geohash.GeoHash;
 import io.github.froodyapp.App;
@@ -30,6 +35,7 @@ import io.github.froodyapp.R;
 import io.github.froodyapp.location.EntryMarker;
 import io.github.froodyapp.location.MapListenerNotifier;
 import io.github.froodyapp.location.RadiusMarkerClusterWithClusterClick;
+import io.github.froodyapp.model.CompactEntry;
 import io.github.froodyapp.model.FroodyEntryPlus;
 import io.github.froodyapp.ui.BaseFragment;
 import io.github.froodyapp.util.AppSettings;
@@ -56,8 +62,11 @@ public class MapOSMFragment extends BaseFragment implements MapListener {
     private IMapController mapController;
     private RotationGestureOverlay rotationGesture;
     private RadiusMarkerClusterWithClusterClick mapCluster;
-    private ArrayList<EntryMarker> entryMarkersInCluster;
+    private LinkedHashMap<Long, EntryMarker> entryMarkersInCluster;   // Entry id -> marker
     private AppSettings appSettings;
+    private long shownViewVersion = -1;     // Of the BlockCacheView the markers were diffed against
+    private BoundingBox shownBoundingBox;
+    private int shownZoom;
 
 
     @Nullable
@@ -86,7 +95,7 @@ public class MapOSMFragment extends BaseFragment implements MapListener {
         // Init
         appSettings = new AppSettings(c);
         mapController = map.getController();
-        entryMarkersInCluster = new ArrayList<>();
+        entryMarkersInCluster = new LinkedHashMap<>();
         mapCluster = new RadiusMarkerClusterWithClusterClick(c);
 
         // Basic Options
@@ -135,10 +144,60 @@ public class MapOSMFragment extends BaseFragment implements MapListener {
                 map.getMapCenter().getLongitude(), precision);
     }
 
+    /**
+     * Show the cached entries within the visible area of the map: Markers are diffed against the entries
+     * of the current BlockCacheView, only entries entering or leaving the area or changed get touched
+     * Doesn't page in blocks, that's done by the loaders (see AppCast.BLOCKS_PAGED_IN)
+     * Waits for the first layout, before the map has no visible area
+     */
     public void loadEntriesFromBlockCache() {
+        if (map == null) {
+            return;
+        }
+        if (map.getWidth() == 0 || map.getHeight() == 0) {
+            map.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+                @Override
+                public void onGlobalLayout() {
+                    map.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+                    loadEntriesFromBlockCache();
+                }
+            });
+            return;
+        }
+
         BlockCache blockCache = BlockCache.getInstance();
-        List<FroodyEntryPlus> entries = blockCache.getAllCachedEntries();
-        addFroodyEntriesToCluster(entries);
+        BoundingBox bbox = map.getBoundingBox();
+        int zoom = map.getZoomLevel();
+        long viewVersion = blockCache.getView().getVersion();
+        if (viewVersion == shownViewVersion && zoom == shownZoom && isSameBoundingBox(bbox, shownBoundingBox)) {
+            return;
+        }
+        shownViewVersion = viewVersion;
+        shownBoundingBox = bbox;
+        shownZoom = zoom;
+
+        Map<Long, CompactEntry> visible = new HashMap<>();
+        for (CompactEntry entry : blockCache.queryEntries(bbox, zoom)) {
+            visible.put(entry.getEntryId(), entry);
+        }
+        boolean changed = false;
+        for (Iterator<Long> it = entryMarkersInCluster.keySet().iterator(); it.hasNext(); ) {
+            if (!visible.containsKey(it.next())) {
+                it.remove();
+                changed = true;
+            }
+        }
+        for (CompactEntry entry : visible.values()) {
+            changed |= putMarker(entry);
+        }
+        if (changed) {
+            recluster();
+        }
+    }
+
+    private static boolean isSameBoundingBox(BoundingBox a, BoundingBox b) {
+        return a != null && b != null && a.getLatNorth() == b.getLatNorth() && a.getLonEast() == b.getLonEast()
+                && a.getLatSouth() == b.getLatSouth() && a.getLonWest() == b.getLonWest();
     }
 
     public void setRotationGestureEnabled(boolean enable) {
@@ -149,10 +208,10 @@ public class MapOSMFragment extends BaseFragment implements MapListener {
         return map.getZoomLevel();
     }
 
-    public void addFroodyEntriesToCluster(List<FroodyEntryPlus> entries) {
+    public void addEntriesToCluster(List<CompactEntry> entries) {
         if (entries != null && map != null) {
-            for (FroodyEntryPlus entry : entries) {
-                addOrUpdateFroodyEntryToCluster(entry, false);
+            for (CompactEntry entry : entries) {
+                addOrUpdateEntryToCluster(entry, false);
             }
             recluster();
         }
@@ -160,30 +219,37 @@ public class MapOSMFragment extends BaseFragment implements MapListener {
 
     public void clearEntries() {
         entryMarkersInCluster.clear();
+        shownViewVersion = -1;
+        recluster();
     }
 
     public void addOrUpdateFroodyEntryToCluster(FroodyEntryPlus entry, boolean autoRecluster) {
-        EntryMarker marker = new EntryMarker(map, entry);
+        addOrUpdateEntryToCluster(CompactEntry.from(entry), autoRecluster);
+    }
 
-        // Remove + Insert then = Update/replace marker
-        if (entryMarkersInCluster.contains(marker)) {
-            entryMarkersInCluster.remove(marker);
+    public void addOrUpdateEntryToCluster(CompactEntry entry, boolean autoRecluster) {
+        if (putMarker(entry) && autoRecluster) {
+            recluster();
         }
+    }
 
-        if (!entry.getWasDeleted()) {
-            entryMarkersInCluster.add(marker);
-            mapCluster.add(marker);
+    // Remove + Insert then = Update/replace marker. Returns false if the marker shows this entry already
+    private boolean putMarker(CompactEntry entry) {
+        EntryMarker existing = entryMarkersInCluster.get(entry.getEntryId());
+        if (existing != null && existing.getCompactEntry() == entry) {
+            return false;
         }
-
-        if (autoRecluster) {
-            recluster();
+        entryMarkersInCluster.remove(entry.getEntryId());
+        if (!entry.wasDeleted()) {
+            EntryMarker marker = new EntryMarker(map, entry);
+            entryMarkersInCluster.put(entry.getEntryId(), marker);
+            mapCluster.add(marker);
         }
+        return existing != null || !entry.wasDeleted();
     }
 
     public void removeFroodyEntryFromCluster(FroodyEntryPlus entry) {
-        EntryMarker compareMarker = EntryMarker.from(map, entry);
-        if (entryMarkersInCluster.contains(compareMarker)) {
-            entryMarkersInCluster.remove(compareMarker);
+        if (entry.getEntryId() != null && entryMarkersInCluster.remove(entry.getEntryId()) != null) {
             recluster();
         }
     }
@@ -194,7 +260,7 @@ public class MapOSMFragment extends BaseFragment implements MapListener {
             public void run() {
 
                 RadiusMarkerClusterWithClusterClick newCluster = new RadiusMarkerClusterWithClusterClick(map.getContext());
-                for (EntryMarker marker : entryMarkersInCluster) {
+                for (EntryMarker marker : entryMarkersInCluster.values()) {
                     newCluster.add(marker);
                 }
                 map.getOverlays().remove(mapCluster);
@@ -9,7 +9,7 @@ import org.osmdroid.views.MapView;
 import org.osmdroid.views.Projection;
 import org.osmdroid.views.overlay.Marker;
 
-import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.model.CompactEntry;
 import io.github.froodyapp.model.FroodyEntryPlus;
 import io.github.froodyapp.util.AppCast;
 import io.github.froodyapp.util.FroodyEntryFormatter;
@@ -24,36 +24,36 @@ public class EntryMarker extends Marker implements Marker.OnMarkerClickListener
     private static final int MARKER_SIZE_IN_DP = 40;
 
     public static EntryMarker from(MapView mapView, FroodyEntryPlus froodyEntry) {
-        return new EntryMarker(mapView, froodyEntry);
+        return new EntryMarker(mapView, CompactEntry.from(froodyEntry));
     }
 
     //########################
     //## Members
     //########################
     private OnMarkerClickListener anotherMarkerClickListener = null;
-    private final FroodyEntryPlus froodyEntry;
+    private final CompactEntry entry;   // Converted to a FroodyEntryPlus only when tapped
 
     //########################
     //## Methods
     //########################
-    public EntryMarker(MapView mapView, FroodyEntryPlus froodyEntry) {
+    public EntryMarker(MapView mapView, CompactEntry entry) {
         super(mapView);
-        this.froodyEntry = froodyEntry;
+        this.entry = entry;
         super.setOnMarkerClickListener(this);
 
         Context context = mapView.getContext();
         if (context != null) {
-            FroodyEntryFormatter froodyEntryFormatter = new FroodyEntryFormatter(context, froodyEntry);
-            setTitle(froodyEntryFormatter.getEntryTypeName());
-            setIcon(froodyEntryFormatter.getEntryTypeImage());
+            int entryType = entry.getEntryType() == CompactEntry.NULL_INT ? FroodyEntryFormatter.ENTRY_TYPE_UNKNOWN : entry.getEntryType();
+            setTitle(FroodyEntryFormatter.getEntryTypeName(context, entryType));
+            setIcon(FroodyEntryFormatter.getEntryTypeImage(context, entryType));
         }
         setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_BOTTOM);
-        setPosition(new GeoPoint(froodyEntry.getLatitude(), froodyEntry.getLongitude()));
+        setPosition(new GeoPoint(entry.getLatitude(), entry.getLongitude()));
     }
 
     @Override
     public boolean onMarkerClick(Marker marker, MapView mapView) {
-        AppCast.FROODY_ENTRY_TAPPED.send(mapView.getContext(), froodyEntry);
+        AppCast.FROODY_ENTRY_TAPPED.send(mapView.getContext(), entry.toEntryPlus());
         return anotherMarkerClickListener == null || anotherMarkerClickListener.onMarkerClick(marker, mapView);
     }
 
@@ -61,7 +61,7 @@ public class EntryMarker extends Marker implements Marker.OnMarkerClickListener
     public boolean equals(Object obj) {
         if (obj != null && obj instanceof EntryMarker) {
             EntryMarker other = ((EntryMarker) obj);
-            return froodyEntry.getEntryId().equals(other.getFroodyEntry().getEntryId());
+            return entry.getEntryId() == other.entry.getEntryId();
         }
         return super.equals(obj);
     }
@@ -99,8 +99,8 @@ public class EntryMarker extends Marker implements Marker.OnMarkerClickListener
     //########################
     //## Getter & Setter
     //########################
-    public FroodyEntry getFroodyEntry() {
-        return froodyEntry;
+    public CompactEntry getCompactEntry() {
+        return entry;
     }
 
     @Override
@@ -45,7 +45,7 @@ public class MapListenerNotifier extends Thread {
         if ((now - LAST_HAPPENING_TIME) >= HAPPENING_INTERVAL && map != null && map.getZoomLevel() >= MapOSMFragment.ZOOMLEVEL_REQUEST_TRESHOLD_TO_5) {
             setLastHappeningTime(now);
             IGeoPoint center = map.getMapCenter();
-            AppCast.MAP_POSITION_CHANGED.send(map.getContext(), center.getLatitude(), center.getLongitude(), map.getZoomLevel());
+            AppCast.MAP_POSITION_CHANGED.send(map.getContext(), center.getLatitude(), center.getLongitude(), map.getZoomLevel(), map.getBoundingBox());
         }
     }
 }
@@ -57,7 +57,7 @@ public class RadiusMarkerClusterWithClusterClick extends RadiusMarkerClusterer {
         ArrayList<FroodyEntry> entries = new ArrayList<>();
         for (int i = 0; i < cluster.getSize(); i++) {
             EntryMarker entryMarker = (EntryMarker) cluster.getItem(i);
-            entries.add(entryMarker.getFroodyEntry());
+            entries.add(entryMarker.getCompactEntry().toEntryPlus());
         }
 
         // Send a broadcast
@@ -53,6 +53,36 @@ public class BlockInfoPlus extends BlockInfo implements Serializable {
         blockInfo = newerBlockInfo;
     }
 
+    /**
+     * Copy of this block, which is fetched since the same previous modification date again,
+     * e.g. after fetching it failed. Unaffected by newer block infos set on this one meanwhile
+     */
+    public BlockInfoPlus copyForRefetch() {
+        BlockInfoPlus copy = new BlockInfoPlus(getGeohash(), getPreviousModificationDate());
+        copy.setNewerBlockInfo(blockInfo);
+        return copy;
+    }
+
+    /**
+     * Copy, unaffected by later changes of this one, e.g. to write it to a snapshot outside of a lock
+     */
+    public BlockInfoPlus copy() {
+        BlockInfoPlus copy = new BlockInfoPlus(copyOf(blockInfo));
+        copy.previousBlockInfo = previousBlockInfo == null ? null : copyOf(previousBlockInfo);
+        return copy;
+    }
+
+    private static BlockInfo copyOf(BlockInfo info) {
+        return new BlockInfo()
+                .geohash(info.getGeohash())
+                .modificationDate(info.getModificationDate())
+                .hasBlockBeenModified(info.getHasBlockBeenModified());
+    }
+
+    public boolean hasPreviousBlockInfo() {
+        return previousBlockInfo != null;
+    }
+
     public DateTime getPreviousModificationDate() {
         if (previousBlockInfo != null) {
             return previousBlockInfo.getModificationDate();
@@ -0,0 +1,214 @@
+package io.github.froodyapp.model;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.io.Serializable;
+
+import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.util.GeohashCodec;
+
+/**
+ * Entry as kept by the BlockCache and the map: Primitive ids, types and dates and a float position,
+ * so an entry is a single small object instead of a FroodyEntryPlus, its FroodyEntry, boxed numbers and DateTimes.
+ * Converted to a FroodyEntryPlus only where entries leave the cache, e.g. when broadcast or shown in detail.
+ * Absent values are stored as NULL_LONG / NULL_INT, texts not loaded yet as null.
+ * Serializable to be passed around in local broadcasts, e.g. the entries loaded to the map.
+ */
+public final class CompactEntry implements Serializable {
+    //########################
+    //## Statics
+    //########################
+    private static final long serialVersionUID = 1L;
+    public static final long NULL_LONG = Long.MIN_VALUE;
+    public static final int NULL_INT = Integer.MIN_VALUE;
+    private static final long THREE_WEEKS_MILLIS = 21L * 24 * 60 * 60 * 1000;
+
+    public static CompactEntry from(FroodyEntry entry) {
+        if (entry instanceof FroodyEntryPlus) {
+            entry = ((FroodyEntryPlus) entry).getContainedEntry();
+        }
+        CompactEntry compact = new CompactEntry(
+                entry.getEntryId(), toLong(entry.getUserId()), entry.getGeohash(),
+                toMillis(entry.getCreationDate()), toMillis(entry.getModificationDate()),
+                toInt(entry.getEntryType()), toInt(entry.getCertificationType()), toInt(entry.getDistributionType()),
+                toInt(entry.getManagementCode()), Boolean.TRUE.equals(entry.getWasDeleted()));
+        compact.setTexts(entry.getDescription(), entry.getContact(), entry.getAddress());
+        return compact;
+    }
+
+    private static long toLong(Long value) {
+        return value == null ? NULL_LONG : value;
+    }
+
+    private static int toInt(Integer value) {
+        return value == null ? NULL_INT : value;
+    }
+
+    private static long toMillis(DateTime date) {
+        return date == null ? NULL_LONG : date.getMillis();
+    }
+
+    //########################
+    //## Member
+    //########################
+    private final long entryId;
+    private final long userId;
+    private final String geohash;
+    private final long creationMillis;
+    private final long modificationMillis;
+    private final int entryType;
+    private final int certificationType;
+    private final int distributionType;
+    private final int managementCode;
+    private final boolean wasDeleted;
+    private final float latitude;
+    private final float longitude;
+    private String description;
+    private String contact;
+    private String address;
+
+    //########################
+    //## Methods
+    //########################
+    public CompactEntry(long entryId, long userId, String geohash, long creationMillis, long modificationMillis,
+                        int entryType, int certificationType, int distributionType, int managementCode, boolean wasDeleted) {
+        this.entryId = entryId;
+        this.userId = userId;
+        this.geohash = geohash;
+        this.creationMillis = creationMillis;
+        this.modificationMillis = modificationMillis;
+        this.entryType = entryType;
+        this.certificationType = certificationType;
+        this.distributionType = distributionType;
+        this.managementCode = managementCode;
+        this.wasDeleted = wasDeleted;
+
+        if (geohash != null && !geohash.isEmpty()) {
+            long bits = GeohashCodec.toBits(geohash);
+            latitude = (float) GeohashCodec.latitudeOf(bits, geohash.length());
+            longitude = (float) GeohashCodec.longitudeOf(bits, geohash.length());
+        } else {
+            latitude = Float.NaN;
+            longitude = Float.NaN;
+        }
+    }
+
+    /**
+     * The FroodyEntry for API and UI, allocated on each call
+     */
+    public FroodyEntry toFroodyEntry() {
+        FroodyEntry entry = new FroodyEntry();
+        entry.setEntryId(entryId);
+        entry.setUserId(userId == NULL_LONG ? null : userId);
+        entry.setGeohash(geohash);
+        entry.setCreationDate(creationMillis == NULL_LONG ? null : new DateTime(creationMillis, DateTimeZone.UTC));
+        entry.setModificationDate(modificationMillis == NULL_LONG ? null : new DateTime(modificationMillis, DateTimeZone.UTC));
+        entry.setEntryType(entryType == NULL_INT ? null : entryType);
+        entry.setCertificationType(certificationType == NULL_INT ? null : certificationType);
+        entry.setDistributionType(distributionType == NULL_INT ? null : distributionType);
+        entry.setManagementCode(managementCode == NULL_INT ? null : managementCode);
+        entry.setWasDeleted(wasDeleted);
+        entry.setDescription(description);
+        entry.setContact(contact);
+        entry.setAddress(address);
+        return entry;
+    }
+
+    public FroodyEntryPlus toEntryPlus() {
+        return new FroodyEntryPlus(toFroodyEntry());
+    }
+
+    public boolean hasExtendedInfoLoaded() {
+        return contact != null && !contact.isEmpty() && description != null && !description.isEmpty();
+    }
+
+    /**
+     * Same as FroodyEntryPlus.canEntryBeRemovedFromCache
+     */
+    public boolean canEntryBeRemovedFromCache(long nowMillis) {
+        return wasDeleted || (creationMillis != NULL_LONG && creationMillis + THREE_WEEKS_MILLIS < nowMillis);
+    }
+
+    public boolean hasPosition() {
+        return !Float.isNaN(latitude);
+    }
+
+    // A box with west > east crosses the antimeridian
+    public boolean isWithin(double north, double east, double south, double west) {
+        return latitude >= south && latitude <= north
+                && (west <= east ? longitude >= west && longitude <= east : longitude >= west || longitude <= east);
+    }
+
+    /**
+     * Set the texts, which are only loaded with the details of an entry
+     */
+    public void setTexts(String description, String contact, String address) {
+        this.description = description;
+        this.contact = contact;
+        this.address = address;
+    }
+
+    //########################
+    //## Getter
+    //########################
+    public long getEntryId() {
+        return entryId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getGeohash() {
+        return geohash;
+    }
+
+    public long getCreationMillis() {
+        return creationMillis;
+    }
+
+    public long getModificationMillis() {
+        return modificationMillis;
+    }
+
+    public int getEntryType() {
+        return entryType;
+    }
+
+    public int getCertificationType() {
+        return certificationType;
+    }
+
+    public int getDistributionType() {
+        return distributionType;
+    }
+
+    public int getManagementCode() {
+        return managementCode;
+    }
+
+    public boolean wasDeleted() {
+        return wasDeleted;
+    }
+
+    public float getLatitude() {
+        return latitude;
+    }
+
+    public float getLongitude() {
+        return longitude;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getContact() {
+        return contact;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+}
@@ -7,9 +7,8 @@ import org.joda.time.DateTime;
 import java.io.Serializable;
 import java.util.Locale;
 
-import ch.hsr.geohash.GeoHash;
-import ch.hsr.geohash.WGS84Point;
 import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.util.GeohashCodec;
 
 @SuppressWarnings("WeakerAccess")
 public class FroodyEntryPlus extends FroodyEntry implements Serializable {
@@ -43,20 +42,18 @@ public class FroodyEntryPlus extends FroodyEntry implements Serializable {
     }
 
     public void loadGeohashFromLocation(double latitude, double longitude, int precision) {
-        GeoHash gh = GeoHash.withCharacterPrecision(latitude, longitude, precision);
-        entry.setGeohash(gh.toBase32());
+        entry.setGeohash(GeohashCodec.encode(latitude, longitude, precision));
 
-        // param will differ slightly from Geohash center point
-        WGS84Point point = gh.getPoint();
-        this.latitude = point.getLatitude();
-        this.longitude = point.getLongitude();
+        // Keep the exact position, it differs slightly from the Geohash center point
+        this.latitude = latitude;
+        this.longitude = longitude;
     }
 
     public boolean loadLocationFromGeohash() {
         if (hasGeohash()) {
-            WGS84Point pt = GeoHash.fromGeohashString(entry.getGeohash()).getPoint();
-            longitude = pt.getLongitude();
-            latitude = pt.getLatitude();
+            double[] center = GeohashCodec.decodeCenter(entry.getGeohash());
+            latitude = center[0];
+            longitude = center[1];
             return true;
         }
         longitude = null;
@@ -0,0 +1,175 @@
+package io.github.froodyapp.service;
+
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.froodyapp.App;
+import io.github.froodyapp.api.api.BlockApi;
+import io.github.froodyapp.api.invoker.ItemConsumer;
+import io.github.froodyapp.api.model_.BlockInfo;
+import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.model.BlockInfoPlus;
+import io.github.froodyapp.util.Helpers;
+
+/**
+ * Fetches infos and entries of several blocks concurrently, on the executor of the caller
+ * There is no multi-block request in the API, so a batch is one request per block in parallel.
+ * Nobody waits for the requests, the last one to finish passes the results of all on to a callback
+ */
+public class BlockFetcher {
+    //########################
+    //## Statics
+    //########################
+    public static final int MAX_PARALLEL_FETCHES = 4;
+
+    /**
+     * Receives the results of a batch
+     */
+    public interface Callback<T> {
+        /**
+         * Called on the thread of the request finishing last, or the calling one for an empty batch
+         *
+         * @param results one per request, in the same order
+         */
+        void onDone(List<T> results);
+    }
+
+    /**
+     * Creates the consumer receiving the entries of a block, while its response is parsed
+     */
+    public interface EntryConsumerFactory {
+        ItemConsumer<FroodyEntry> create(BlockInfoPlus block, DateTime requestedAt);
+    }
+
+    /**
+     * The count of entries passed on for a block, or the error why they could not be fetched completely
+     */
+    public static class Result {
+        public final BlockInfoPlus block;
+        public final DateTime requestedAt;
+        public final int entryCount;
+        public final Exception error;
+
+        Result(BlockInfoPlus block, DateTime requestedAt, int entryCount, Exception error) {
+            this.block = block;
+            this.requestedAt = requestedAt;
+            this.entryCount = entryCount;
+            this.error = error;
+        }
+    }
+
+    //########################
+    //## Methods
+    //########################
+
+    /**
+     * Fetch the entries modified since the previous modification date of each block
+     * The entries are streamed to a consumer per block, while the responses are parsed
+     *
+     * @param api       api to use
+     * @param blocks    blocks to fetch
+     * @param consumers creates the consumer for each block, called on the fetching thread
+     * @param executor  runs the requests
+     * @param callback  gets one result per block, in the same order
+     */
+    public static void fetchAll(final BlockApi api, final List<BlockInfoPlus> blocks, final EntryConsumerFactory consumers,
+                                Executor executor, final Callback<Result> callback) {
+        List<Callable<Result>> calls = new ArrayList<>(blocks.size());
+        for (final BlockInfoPlus block : blocks) {
+            calls.add(new Callable<Result>() {
+                public Result call() {
+                    return fetch(api, block, consumers);
+                }
+            });
+        }
+
+        invokeAll(calls, executor, new Callback<Result>() {
+            public void onDone(List<Result> fetched) {
+                List<Result> results = new ArrayList<>(blocks.size());
+                for (Result result : fetched) {
+                    results.add(result != null ? result : new Result(blocks.get(results.size()), null, 0, new IllegalStateException("Fetch did not complete")));
+                }
+                callback.onDone(results);
+            }
+        });
+    }
+
+    /**
+     * Request the infos of several blocks, each modified since the given date
+     *
+     * @param api      api to use
+     * @param blocks   blocks to request, with the modification date known locally
+     * @param executor runs the requests
+     * @param callback gets the infos per block, in the same order, null where the request failed
+     */
+    public static void fetchInfos(final BlockApi api, List<BlockInfo> blocks, Executor executor, Callback<List<BlockInfo>> callback) {
+        List<Callable<List<BlockInfo>>> calls = new ArrayList<>(blocks.size());
+        for (final BlockInfo block : blocks) {
+            calls.add(new Callable<List<BlockInfo>>() {
+                public List<BlockInfo> call() {
+                    try {
+                        return api.blockInfoGet(block.getGeohash(), block.getModificationDate());
+                    } catch (Exception e) {
+                        App.log(BlockFetcher.class, "ERROR: Getting BlockInfo " + e.getMessage());
+                        return null;
+                    }
+                }
+            });
+        }
+        invokeAll(calls, executor, callback);
+    }
+
+    // Run all calls on the executor, results in the same order, null where a call failed
+    // The counter orders the writes of the results before the read of the last call
+    @SuppressWarnings("unchecked")
+    private static <T> void invokeAll(List<Callable<T>> calls, Executor executor, final Callback<T> callback) {
+        if (calls.isEmpty()) {
+            callback.onDone(Collections.<T>emptyList());
+            return;
+        }
+        final Object[] results = new Object[calls.size()];
+        final AtomicInteger remaining = new AtomicInteger(calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            final int index = i;
+            final Callable<T> call = calls.get(i);
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        results[index] = call.call();
+                    } catch (Exception e) {
+                        App.log(BlockFetcher.class, "ERROR: Request failed " + e.getMessage());
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            callback.onDone((List<T>) Arrays.asList(results));
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private static Result fetch(BlockApi api, BlockInfoPlus block, EntryConsumerFactory consumers) {
+        DateTime requestedAt = Helpers.getNow();
+        final int[] count = {0};
+        final ItemConsumer<FroodyEntry> consumer = consumers.create(block, requestedAt);
+        try {
+            api.blockGetGetStream(block.getGeohash(), block.getPreviousModificationDate(), new ItemConsumer<FroodyEntry>() {
+                public void accept(FroodyEntry entry) {
+                    count[0]++;
+                    consumer.accept(entry);
+                }
+            });
+            return new Result(block, requestedAt, count[0], null);
+        } catch (Exception e) {
+            App.log(BlockFetcher.class, "ERROR: Getting Block " + e.getMessage());
+            return new Result(block, requestedAt, count[0], e);
+        }
+    }
+}
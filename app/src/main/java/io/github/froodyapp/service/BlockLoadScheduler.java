@@ -0,0 +1,337 @@
+package io.github.froodyapp.service;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.froodyapp.App;
+import io.github.froodyapp.model.BlockInfoPlus;
+import io.github.froodyapp.util.GeohashCodec;
+import io.github.froodyapp.util.GeohashCoverage;
+import io.github.froodyapp.util.Helpers;
+
+/**
+ * Schedules EntryByBlockLoaders on a fixed pool of workers
+ * The parallel block requests of a load are queued as tasks of its priority on the same workers,
+ * so no worker waits for the requests of another one.
+ * The visible area is covered by blocks, which are loaded in batches, the ones nearest to its center first.
+ * Around it the adjacent blocks and the next ring in pan direction are prefetched at low priority.
+ * A block already queued or loading is not requested twice, and requests for the viewport
+ * are dropped before they start, if the viewport has moved on to other blocks meanwhile.
+ * Blocks failing to load are retried with backoff by the BlockRetryQueue, while still in the viewport.
+ */
+public class BlockLoadScheduler {
+    //########################
+    //## Statics
+    //########################
+    public static final int WORKER_COUNT = BlockFetcher.MAX_PARALLEL_FETCHES;
+    public static final int MAX_BATCH_BLOCKS = 16;
+    public static final int MAX_PREFETCH_BLOCKS = 24;
+
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_PREFETCH = 1;
+    public static final int PRIORITY_PREFETCH_RING = 2;
+
+    private static BlockLoadScheduler instance;
+
+    public static synchronized BlockLoadScheduler getInstance() {
+        if (instance == null) {
+            instance = new BlockLoadScheduler();
+        }
+        return instance;
+    }
+
+    //########################
+    //## Member
+    //########################
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<String, Boolean> inFlight = new ConcurrentHashMap<>();  // Geohash -> may be dropped
+    private final AtomicLong sequence = new AtomicLong();
+    private final BlockRetryQueue retryQueue;
+    private volatile Context context;
+    private volatile Set<String> viewportGeohashes = Collections.emptySet();
+    private double lastViewportLat = Double.NaN;
+    private double lastViewportLng = Double.NaN;
+
+    //########################
+    //## Methods
+    //########################
+    private BlockLoadScheduler() {
+        executor = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "BlockLoader-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        retryQueue = new BlockRetryQueue(new BlockRetryQueue.RetryHandler() {
+            public void retry(List<String> geohashes, List<BlockInfoPlus> blocks) {
+                scheduleRetry(geohashes, blocks);
+            }
+        });
+    }
+
+    /**
+     * Load the blocks covering the visible area and prefetch its surrounding. Replaces the current viewport,
+     * so queued requests for blocks no longer visible or around are dropped
+     * north, east, south and west are the bounds of the visible area, lat and lng its center
+     */
+    public synchronized void loadViewport(Context context, double north, double east, double south, double west,
+                                          double lat, double lng, int zoom) {
+        int precision = EntryByBlockLoader.getPrecisionToLoad(zoom);
+        // Blocks exist with precision 5 and 6 only, so the visible area is not limited at precision 5
+        if (precision > 5 && GeohashCoverage.countCells(north, east, south, west, precision) > MAX_BATCH_BLOCKS) {
+            precision = 5;
+        }
+        double height = GeohashCoverage.getCellHeight(precision);
+        double width = GeohashCoverage.getCellWidth(precision);
+
+        List<String> cover = GeohashCoverage.cover(north, east, south, west, precision);
+        Set<String> visible = new LinkedHashSet<>(nearest(cover, lat, lng, cover.size()));
+        Set<String> prefetch = new LinkedHashSet<>();
+        Set<String> prefetchRing = new LinkedHashSet<>();
+        if (Helpers.isConnectedToInternet(context)) {
+            prefetch.addAll(GeohashCoverage.cover(north + height, east + width, south - height, west - width, precision));
+            prefetch.removeAll(visible);
+            prefetch = new LinkedHashSet<>(nearest(prefetch, lat, lng, MAX_PREFETCH_BLOCKS));
+
+            // The next ring in pan direction, only where data is cheap
+            if (Helpers.isConnectedToUnmeteredNetwork(context) && !Double.isNaN(lastViewportLat)) {
+                int dirLat = direction(lat - lastViewportLat, height / 2);
+                int dirLng = direction(lng - lastViewportLng, width / 2);
+                if (dirLat != 0 || dirLng != 0) {
+                    prefetchRing.addAll(GeohashCoverage.cover(
+                            north + height * (dirLat > 0 ? 2 : 0), east + width * (dirLng > 0 ? 2 : 0),
+                            south - height * (dirLat < 0 ? 2 : 0), west - width * (dirLng < 0 ? 2 : 0), precision));
+                    prefetchRing.removeAll(visible);
+                    prefetchRing.removeAll(prefetch);
+                    prefetchRing = new LinkedHashSet<>(nearest(prefetchRing, lat, lng, MAX_PREFETCH_BLOCKS));
+                }
+            }
+        }
+        lastViewportLat = lat;
+        lastViewportLng = lng;
+
+        Set<String> viewport = new HashSet<>(visible);
+        viewport.addAll(prefetch);
+        viewport.addAll(prefetchRing);
+        viewportGeohashes = viewport;
+
+        schedule(context, visible, PRIORITY_HIGH, true);
+        schedule(context, prefetch, PRIORITY_PREFETCH, true);
+        schedule(context, prefetchRing, PRIORITY_PREFETCH_RING, true);
+    }
+
+    /**
+     * Load the block at a position, e.g. the user location. Never dropped
+     */
+    public void loadPosition(Context context, double lat, double lng, int zoom) {
+        schedule(context, Collections.singletonList(EntryByBlockLoader.getGeohashToLoad(lat, lng, zoom)), PRIORITY_HIGH, false);
+    }
+
+    private static int direction(double delta, double threshold) {
+        return delta > threshold ? 1 : (delta < -threshold ? -1 : 0);
+    }
+
+    // At most max geohashes, the ones nearest to the position first
+    private static List<String> nearest(Collection<String> geohashes, final double lat, final double lng, int max) {
+        List<String> sorted = new ArrayList<>(geohashes);
+        final double lngScale = Math.cos(Math.toRadians(lat));
+        Collections.sort(sorted, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Double.compare(distance(a), distance(b));
+            }
+
+            private double distance(String geohash) {
+                double[] center = GeohashCodec.decodeCenter(geohash);
+                double dLat = center[0] - lat;
+                double dLng = (center[1] - lng) * lngScale;
+                return dLat * dLat + dLng * dLng;
+            }
+        });
+        return sorted.size() > max ? sorted.subList(0, max) : sorted;
+    }
+
+    private void schedule(Context context, Collection<String> geohashes, int priority, boolean mayBeDropped) {
+        this.context = context.getApplicationContext();
+        List<String> toLoad = new ArrayList<>();
+        for (String geohash : geohashes) {
+            if (inFlight.putIfAbsent(geohash, mayBeDropped) == null) {
+                toLoad.add(geohash);
+            } else if (!mayBeDropped) {
+                // Already queued or loading, but make sure it isn't dropped if this request must not be
+                inFlight.replace(geohash, false);
+            }
+        }
+        // In batches, so a large area doesn't end up in a single request, run in the given order
+        for (int i = 0; i < toLoad.size(); i += MAX_BATCH_BLOCKS) {
+            List<String> batch = new ArrayList<>(toLoad.subList(i, Math.min(i + MAX_BATCH_BLOCKS, toLoad.size())));
+            executor.execute(new LoadTask(context.getApplicationContext(), batch,
+                    Collections.<BlockInfoPlus>emptyList(), priority, sequence.incrementAndGet()));
+        }
+    }
+
+    // Retries may be dropped too, and blocks to refetch are loaded even if their geohash is in flight,
+    // as a load in flight only requests blocks modified since their latest info
+    private void scheduleRetry(List<String> geohashes, List<BlockInfoPlus> blocks) {
+        Context context = this.context;
+        if (context == null) {
+            return;
+        }
+        List<String> toLoad = new ArrayList<>();
+        for (String geohash : geohashes) {
+            if (inFlight.putIfAbsent(geohash, true) == null) {
+                toLoad.add(geohash);
+            }
+        }
+        if (!toLoad.isEmpty() || !blocks.isEmpty()) {
+            executor.execute(new LoadTask(context, toLoad, blocks, PRIORITY_PREFETCH, sequence.incrementAndGet()));
+        }
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public int getPendingRetryCount() {
+        return retryQueue.getPendingCount();
+    }
+
+    // Queued batch of blocks. Its geohashes stay in flight until its last request is done
+    private class LoadTask extends PrioritizedTask {
+        private final Context context;
+        private final List<String> geohashes;
+        private final List<BlockInfoPlus> blocksToRefetch;
+
+        LoadTask(Context context, List<String> geohashes, List<BlockInfoPlus> blocksToRefetch, int priority, long sequence) {
+            super(priority, sequence);
+            this.context = context;
+            this.geohashes = geohashes;
+            this.blocksToRefetch = blocksToRefetch;
+        }
+
+        @Override
+        public void run() {
+            boolean started = false;
+            try {
+                List<String> toLoad = new ArrayList<>();
+                List<String> dropped = new ArrayList<>();
+                Set<String> viewport = viewportGeohashes;
+                for (String geohash : geohashes) {
+                    if (Boolean.TRUE.equals(inFlight.get(geohash)) && !viewport.contains(geohash)) {
+                        App.log(getClass(), "Dropped stale block request " + geohash);
+                        dropped.add(geohash);
+                    } else {
+                        toLoad.add(geohash);
+                    }
+                }
+                List<BlockInfoPlus> toRefetch = new ArrayList<>();
+                for (BlockInfoPlus block : blocksToRefetch) {
+                    if (viewport.contains(block.getGeohash())) {
+                        toRefetch.add(block);
+                    } else {
+                        dropped.add(block.getGeohash());
+                    }
+                }
+                retryQueue.remove(dropped);
+
+                if (toLoad.isEmpty() && toRefetch.isEmpty()) {
+                    return;
+                }
+                final List<String> requested = toLoad;
+                final List<BlockInfoPlus> refetched = toRefetch;
+                new EntryByBlockLoader(context, toLoad, toRefetch)
+                        .setRequestExecutor(new Executor() {
+                            public void execute(Runnable request) {
+                                executor.execute(new RequestTask(request, priority, sequence));
+                            }
+                        })
+                        .setLoadListener(new EntryByBlockLoader.LoadListener() {
+                            public void onLoadDone(EntryByBlockLoader loader) {
+                                try {
+                                    Set<String> loaded = new HashSet<>(requested);
+                                    for (BlockInfoPlus block : refetched) {
+                                        loaded.add(block.getGeohash());
+                                    }
+                                    loaded.removeAll(loader.getFailedGeohashes());
+                                    for (BlockInfoPlus block : loader.getFailedBlocks()) {
+                                        loaded.remove(block.getGeohash());
+                                    }
+                                    retryQueue.remove(loaded);
+                                    retryQueue.add(loader.getFailedGeohashes(), loader.getFailedBlocks());
+                                } finally {
+                                    releaseGeohashes();
+                                }
+                            }
+                        })
+                        .run();
+                started = true;
+            } finally {
+                if (!started) {
+                    releaseGeohashes();
+                }
+            }
+        }
+
+        // No longer queued or loading, after the last request of the load
+        private void releaseGeohashes() {
+            for (String geohash : geohashes) {
+                inFlight.remove(geohash);
+            }
+        }
+    }
+
+    // A block request of a LoadTask, queued with its priority
+    private static class RequestTask extends PrioritizedTask {
+        private final Runnable request;
+
+        RequestTask(Runnable request, int priority, long sequence) {
+            super(priority, sequence);
+            this.request = request;
+        }
+
+        @Override
+        public void run() {
+            request.run();
+        }
+    }
+
+    // Ordered by priority first and request order second, the requests of a load right after it
+    private static abstract class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        final int priority;
+        final long sequence;
+
+        PrioritizedTask(int priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            if (priority != other.priority) {
+                return priority - other.priority;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
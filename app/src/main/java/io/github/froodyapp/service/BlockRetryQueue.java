@@ -0,0 +1,145 @@
+package io.github.froodyapp.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import io.github.froodyapp.App;
+import io.github.froodyapp.api.invoker.RetryPolicy;
+import io.github.froodyapp.model.BlockInfoPlus;
+
+/**
+ * Loads blocks again, whose loading failed, after a jittered exponential backoff
+ * Failures collected meanwhile are retried together as one batch. A block is given up
+ * after MAX_ATTEMPTS failed loads in a row, until it is requested again
+ */
+public class BlockRetryQueue {
+    //########################
+    //## Statics
+    //########################
+    public static final int MAX_ATTEMPTS = 5;
+    public static final long BASE_DELAY_MILLIS = 2 * 1000;
+    public static final long MAX_DELAY_MILLIS = 2 * 60 * 1000;
+
+    /**
+     * Loads the blocks due for a retry
+     */
+    public interface RetryHandler {
+        /**
+         * @param geohashes Blocks whose info could not be requested
+         * @param blocks    Blocks known to be modified, to be fetched since their previous modification date
+         */
+        void retry(List<String> geohashes, List<BlockInfoPlus> blocks);
+    }
+
+    //########################
+    //## Member
+    //########################
+    private final RetryHandler handler;
+    private final RetryPolicy backoff = new RetryPolicy(MAX_ATTEMPTS, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS);
+    private final Random random = new Random();
+    private final ScheduledExecutorService timer;
+    private final Map<String, Integer> attempts = new HashMap<>();
+    private final Set<String> pendingGeohashes = new LinkedHashSet<>();
+    private final Map<String, BlockInfoPlus> pendingBlocks = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    //########################
+    //## Methods
+    //########################
+    public BlockRetryQueue(RetryHandler handler) {
+        this.handler = handler;
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "BlockRetry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queue failed blocks for a retry, unless they failed MAX_ATTEMPTS times already
+     */
+    public synchronized void add(Collection<String> failedGeohashes, Collection<BlockInfoPlus> failedBlocks) {
+        int attempt = 0;
+        for (String geohash : failedGeohashes) {
+            int count = countAttempt(geohash);
+            if (count > 0) {
+                pendingGeohashes.add(geohash);
+                attempt = Math.max(attempt, count);
+            }
+        }
+        for (BlockInfoPlus block : failedBlocks) {
+            int count = countAttempt(block.getGeohash());
+            if (count > 0) {
+                // Fetched since the date of the first failure, even if its info was updated meanwhile
+                if (!pendingBlocks.containsKey(block.getGeohash())) {
+                    pendingBlocks.put(block.getGeohash(), block.copyForRefetch());
+                }
+                pendingGeohashes.remove(block.getGeohash());
+                attempt = Math.max(attempt, count);
+            }
+        }
+        if (attempt > 0 && !flushScheduled) {
+            flushScheduled = true;
+            long delay = backoff.getDelayMillis(attempt, random);
+            timer.schedule(new Runnable() {
+                public void run() {
+                    flush();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Forget about blocks loaded successfully or not needed anymore
+     */
+    public synchronized void remove(Collection<String> geohashes) {
+        for (String geohash : geohashes) {
+            attempts.remove(geohash);
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingGeohashes.size() + pendingBlocks.size();
+    }
+
+    // Count a failed load, the attempt number of the retry, 0 if it should not be retried anymore
+    private int countAttempt(String geohash) {
+        Integer count = attempts.get(geohash);
+        count = count == null ? 1 : count + 1;
+        if (count >= MAX_ATTEMPTS) {
+            attempts.remove(geohash);
+            App.log(getClass(), "Giving up loading block " + geohash + " after " + count + " attempts");
+            return 0;
+        }
+        attempts.put(geohash, count);
+        return count;
+    }
+
+    private void flush() {
+        List<String> geohashes;
+        List<BlockInfoPlus> blocks;
+        synchronized (this) {
+            flushScheduled = false;
+            geohashes = new ArrayList<>(pendingGeohashes);
+            blocks = new ArrayList<>(pendingBlocks.values());
+            pendingGeohashes.clear();
+            pendingBlocks.clear();
+        }
+        if (!geohashes.isEmpty() || !blocks.isEmpty()) {
+            handler.retry(geohashes, blocks);
+        }
+    }
+}
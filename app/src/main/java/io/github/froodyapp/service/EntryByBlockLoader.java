@@ -6,33 +6,71 @@ import com.google.gson.JsonParseException;
 
 import org.joda.time.DateTime;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
-import ch.hsr.geohash.GeoHash;
 import io.github.froodyapp.App;
 import io.github.froodyapp.activity.MapOSMFragment;
 import io.github.froodyapp.api.api.BlockApi;
 import io.github.froodyapp.api.invoker.ApiException;
+import io.github.froodyapp.api.invoker.ItemConsumer;
+import io.github.froodyapp.api.model_.BlockChanges;
 import io.github.froodyapp.api.model_.BlockInfo;
 import io.github.froodyapp.api.model_.FroodyEntry;
 import io.github.froodyapp.model.BlockInfoPlus;
-import io.github.froodyapp.model.FroodyEntryPlus;
+import io.github.froodyapp.model.CompactEntry;
 import io.github.froodyapp.util.AppCast;
 import io.github.froodyapp.util.BlockCache;
+import io.github.froodyapp.util.GeohashCodec;
 import io.github.froodyapp.util.Helpers;
 
 /**
- * Task for loading blocks via API
+ * Task for loading a batch of blocks via API, run by the BlockLoadScheduler
+ * The changes of all blocks since their last sync are requested at once via /block/changes.
+ * Servers without it get the block infos requested, and the modified blocks in parallel,
+ * their entries merged into the BlockCache while being parsed.
+ * The parallel requests run on the request executor, run() returns once they are started and
+ * the LoadListener is told when the last one is done. Without an executor they run on the calling thread
  */
-public class EntryByBlockLoader extends Thread {
+public class EntryByBlockLoader implements Runnable {
+    //########################
+    //## Statics
+    //########################
+    public static final int MERGE_CHUNK_SIZE = 100;
+
+    // Base path of the server which answered /block/changes with 404 or 501, null while all support it
+    private static volatile String changesUnsupportedBasePath = null;
+
+    private static final Executor CALLING_THREAD = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Gets told when all requests of a load are done
+     */
+    public interface LoadListener {
+        /**
+         * Called on the thread of the request finishing last
+         */
+        void onLoadDone(EntryByBlockLoader loader);
+    }
+
     //########################
     //## Member
     //########################
     private final Context context;
-    private final double lat;
-    private final double lng;
-    private final int zoom;
-
+    private final List<String> geohashes;
+    private final List<BlockInfoPlus> blocksToRefetch;
+    private final List<String> failedGeohashes = new ArrayList<>();
+    private final List<BlockInfoPlus> failedBlocks = new ArrayList<>();
+    private Executor requestExecutor = CALLING_THREAD;
+    private LoadListener loadListener;
 
     //########################
     //## Methods
@@ -42,54 +80,297 @@ public class EntryByBlockLoader extends Thread {
     //    this(context, map.getMapCenter().getLatitude(), map.getMapCenter().getLongitude(), map.getZoomLevel(), userId);
     //}
 
-    public EntryByBlockLoader(Context context, double lat, double lng, int zoom) {
+    public EntryByBlockLoader(Context context, String geohash) {
+        this(context, Collections.singletonList(geohash));
+    }
+
+    public EntryByBlockLoader(Context context, List<String> geohashes) {
+        this(context, geohashes, Collections.<BlockInfoPlus>emptyList());
+    }
+
+    /**
+     * @param blocksToRefetch Blocks fetched again without requesting their info, e.g. after fetching them failed
+     */
+    public EntryByBlockLoader(Context context, List<String> geohashes, List<BlockInfoPlus> blocksToRefetch) {
         this.context = context;
-        this.lat = lat;
-        this.lng = lng;
-        this.zoom = zoom;
+        this.geohashes = geohashes;
+        this.blocksToRefetch = blocksToRefetch;
+    }
+
+    /**
+     * Geohash precision of the blocks to load, depending on the zoom level
+     */
+    public static int getPrecisionToLoad(int zoom) {
+        return zoom < MapOSMFragment.ZOOMLEVEL_BLOCK6_TRESHOLD ? 5 : 6;
+    }
+
+    /**
+     * Geohash of the block to load for a position, precision depending on the zoom level
+     */
+    public static String getGeohashToLoad(double lat, double lng, int zoom) {
+        return GeohashCodec.encode(lat, lng, getPrecisionToLoad(zoom));
+    }
+
+    /**
+     * Run the parallel requests of blocks on executor, instead of the calling thread
+     */
+    public EntryByBlockLoader setRequestExecutor(Executor executor) {
+        requestExecutor = executor;
+        return this;
+    }
+
+    public EntryByBlockLoader setLoadListener(LoadListener listener) {
+        loadListener = listener;
+        return this;
+    }
+
+    public List<String> getGeohashes() {
+        return geohashes;
+    }
+
+    /**
+     * Geohashes whose block info could not be requested, when the load is done
+     */
+    public List<String> getFailedGeohashes() {
+        return failedGeohashes;
+    }
+
+    /**
+     * Blocks known to be modified, but whose entries could not be fetched completely, when the load is done
+     */
+    public List<BlockInfoPlus> getFailedBlocks() {
+        return failedBlocks;
     }
 
     @Override
     public void run() {
-        int precisionToLoad = zoom < MapOSMFragment.ZOOMLEVEL_BLOCK6_TRESHOLD ? 5 : 6;
-        String geohash = GeoHash.withCharacterPrecision(lat, lng, precisionToLoad).toBase32();
-        BlockCache blockCache = BlockCache.getInstance();
+        // Cached entries first, while the server is asked for changes
+        if (BlockCache.getInstance().pageInBlocks(geohashes) && context != null) {
+            AppCast.BLOCKS_PAGED_IN.send(context);
+        }
 
-        BlockInfo blockInfo;
-        BlockCache.BlockCacheItem blockCacheItem = blockCache.getBlockCacheItemAt(geohash);
-        if (blockCacheItem == null) {
-            blockInfo = new BlockInfoPlus(geohash, Helpers.getNow().minusWeeks(3));
+        BlockApi blockApi = new BlockApi();
+        List<String> unsynced = geohashes;
+        if (!geohashes.isEmpty() && isChangesSyncSupported(blockApi)) {
+            unsynced = syncChanges(blockApi);
+        }
+        if (!unsynced.isEmpty()) {
+            requestModifiedBlocks(blockApi, unsynced);
         } else {
-            blockInfo = blockCacheItem.blockInfo;
+            fetchBlocks(blockApi, new ArrayList<>(blocksToRefetch));
         }
+    }
 
-        BlockApi blockApi = new BlockApi();
-        try {
-            // Request info for Block
-            List<BlockInfo> blockInfos = blockApi.blockInfoGet(geohash, blockInfo.getModificationDate());
-            for (BlockInfoPlus bpu : blockCache.processBlockInfosAndGetModified(blockInfos)) {
-                // For every block
+    // Checked per base path, so a changed server setting asks the new server again
+    private static boolean isChangesSyncSupported(BlockApi blockApi) {
+        return !blockApi.getApiClient().getBasePath().equals(changesUnsupportedBasePath);
+    }
+
+    /**
+     * Sync the blocks with one /block/changes request per cursor, usually one for all of them
+     * Geohashes of failed requests are added to the failed ones
+     *
+     * @return the geohashes not synced because the server does not support it, empty if all were requested
+     */
+    private List<String> syncChanges(BlockApi blockApi) {
+        BlockCache blockCache = BlockCache.getInstance();
+        Map<Long, List<String>> geohashesByCursor = new LinkedHashMap<>();
+        for (String geohash : geohashes) {
+            long cursor = blockCache.getSyncCursor(geohash);
+            List<String> group = geohashesByCursor.get(cursor);
+            if (group == null) {
+                group = new ArrayList<>();
+                geohashesByCursor.put(cursor, group);
+            }
+            group.add(geohash);
+        }
+
+        List<Map.Entry<Long, List<String>>> groups = new ArrayList<>(geohashesByCursor.entrySet());
+        for (int i = 0; i < groups.size(); i++) {
+            List<String> group = groups.get(i).getValue();
+            DateTime requestedAt = Helpers.getNow();
+            try {
+                BlockChanges changes = requestChanges(blockApi, group, groups.get(i).getKey());
+                if (changes == null) {
+                    App.log(getClass(), "ERROR: Getting BlockChanges, empty response");
+                    failedGeohashes.addAll(group);
+                    continue;
+                }
+                publishNewOrModifiedEntries(blockCache.processChanges(group, changes, requestedAt));
+            } catch (ApiException e) {
+                if (e.getCode() == 404 || e.getCode() == 501) {
+                    // The groups synced before keep their changes, the others request their block infos
+                    App.log(getClass(), "Server does not support /block/changes, requesting block infos");
+                    changesUnsupportedBasePath = blockApi.getApiClient().getBasePath();
+                    List<String> unsynced = new ArrayList<>();
+                    for (Map.Entry<Long, List<String>> rest : groups.subList(i, groups.size())) {
+                        unsynced.addAll(rest.getValue());
+                    }
+                    return unsynced;
+                }
+                App.log(getClass(), "ERROR: Getting BlockChanges " + e.getMessage());
+                failedGeohashes.addAll(group);
+            } catch (JsonParseException | IllegalArgumentException | NullPointerException e) {
+                // Malformed response, e.g. a broken body or an invalid geohash
+                App.log(getClass(), "ERROR: Getting BlockChanges " + e.getMessage());
+                failedGeohashes.addAll(group);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private BlockChanges requestChanges(BlockApi blockApi, List<String> geohashes, long cursor) throws ApiException {
+        if (cursor > 0) {
+            try {
+                return blockApi.blockChangesGet(geohashes, cursor);
+            } catch (ApiException e) {
+                if (e.getCode() != 410) {
+                    throw e;
+                }
+                // The server forgot the changes since the cursor of these geohashes, start over with them
+                BlockCache.getInstance().clearSyncCursors(geohashes);
+            }
+        }
+        return blockApi.blockChangesGet(geohashes, null);
+    }
+
+    // Request info for the blocks, since the last known modification, then fetch the modified ones
+    private void requestModifiedBlocks(final BlockApi blockApi, final List<String> geohashes) {
+        final BlockCache blockCache = BlockCache.getInstance();
+        List<BlockInfo> knownInfos = new ArrayList<>();
+        for (String geohash : geohashes) {
+            BlockCache.BlockCacheItem blockCacheItem = blockCache.getBlockCacheItemAt(geohash);
+            if (blockCacheItem == null) {
+                knownInfos.add(new BlockInfoPlus(geohash, Helpers.getNow().minusWeeks(3)));
+            } else {
+                knownInfos.add(blockCacheItem.blockInfo);
+            }
+        }
+        BlockFetcher.fetchInfos(blockApi, knownInfos, requestExecutor, new BlockFetcher.Callback<List<BlockInfo>>() {
+            public void onDone(List<List<BlockInfo>> fetchedInfos) {
+                // fetchBlocks tells the listener once it is started, else it is told here
+                boolean fetching = false;
                 try {
-                    // Request new/modified blocks from server
-                    DateTime requestedAt = Helpers.getNow();
-                    List<FroodyEntry> entries = blockApi.blockGetGet(bpu.getGeohash(), bpu.getPreviousModificationDate());
-
-                    // Process entries from server into local cache
-                    List<FroodyEntryPlus> newOrModifiedEntries = blockCache.processEntries(entries, requestedAt);
-                    publishNewOrModifiedEntries(newOrModifiedEntries);
-                } catch (ApiException | JsonParseException e) {
-                    App.log(getClass(), "ERROR: Getting Block " + e.getMessage());
+                    List<BlockInfo> blockInfos = new ArrayList<>();
+                    for (int i = 0; i < fetchedInfos.size(); i++) {
+                        if (fetchedInfos.get(i) != null) {
+                            blockInfos.addAll(fetchedInfos.get(i));
+                        } else {
+                            failedGeohashes.add(geohashes.get(i));
+                        }
+                    }
+                    List<BlockInfoPlus> modifiedBlocks = new ArrayList<>();
+                    if (!blockInfos.isEmpty()) {
+                        modifiedBlocks.addAll(blockCache.processBlockInfosAndGetModified(blockInfos));
+                    }
+                    modifiedBlocks.addAll(blocksToRefetch);
+                    fetching = true;
+                    fetchBlocks(blockApi, modifiedBlocks);
+                } catch (RuntimeException e) {
+                    if (fetching) {
+                        throw e;
+                    }
+                    // E.g. an invalid geohash in the response, retry all of them
+                    App.log(getClass(), "ERROR: Processing BlockInfos " + e.getMessage());
+                    for (String geohash : geohashes) {
+                        if (!failedGeohashes.contains(geohash)) {
+                            failedGeohashes.add(geohash);
+                        }
+                    }
+                    failedBlocks.addAll(blocksToRefetch);
+                } finally {
+                    if (!fetching) {
+                        loadDone();
+                    }
                 }
             }
+        });
+    }
 
-        } catch (ApiException | JsonParseException | NullPointerException e) {
-            App.log(getClass(), "ERROR: Getting BlockInfo " + e.getMessage());
+    // Request new/modified blocks from server, concurrently, merging entries while they are parsed
+    private void fetchBlocks(BlockApi blockApi, List<BlockInfoPlus> modifiedBlocks) {
+        if (modifiedBlocks.isEmpty()) {
+            loadDone();
+            return;
         }
+        final List<BlockMerger> mergers = Collections.synchronizedList(new ArrayList<BlockMerger>());
+        BlockFetcher.EntryConsumerFactory consumers = new BlockFetcher.EntryConsumerFactory() {
+            public ItemConsumer<FroodyEntry> create(BlockInfoPlus block, DateTime requestedAt) {
+                BlockMerger merger = new BlockMerger(block, requestedAt);
+                mergers.add(merger);
+                return merger;
+            }
+        };
+        BlockFetcher.fetchAll(blockApi, modifiedBlocks, consumers, requestExecutor, new BlockFetcher.Callback<BlockFetcher.Result>() {
+            public void onDone(List<BlockFetcher.Result> results) {
+                try {
+                    for (BlockFetcher.Result result : results) {
+                        if (result.error != null) {
+                            failedBlocks.add(result.block);
+                        }
+                    }
+
+                    // Merge the remaining entries of all blocks, published as one batch
+                    List<CompactEntry> entries = new ArrayList<>();
+                    synchronized (mergers) {
+                        for (BlockMerger merger : mergers) {
+                            try {
+                                entries.addAll(merger.merge());
+                            } catch (RuntimeException e) {
+                                App.log(getClass(), "ERROR: Merging entries " + e.getMessage());
+                                if (!failedBlocks.contains(merger.block)) {
+                                    failedBlocks.add(merger.block);
+                                }
+                            }
+                        }
+                    }
+                    publishNewOrModifiedEntries(entries);
+                } finally {
+                    loadDone();
+                }
+            }
+        });
     }
 
-    private void publishNewOrModifiedEntries(List<FroodyEntryPlus> response) {
+    private void loadDone() {
+        if (loadListener != null) {
+            loadListener.onLoadDone(this);
+        }
+    }
+
+    private void publishNewOrModifiedEntries(List<CompactEntry> response) {
         if (response != null && response.size() > 0 && context != null) {
             AppCast.FROODY_ENTRIES_LOADED.send(context, response);
         }
     }
+
+    // Collects the entries of a block and merges them into the BlockCache in chunks
+    // Large blocks are merged and published while still loading, small ones at the end of the batch
+    private class BlockMerger implements ItemConsumer<FroodyEntry> {
+        private final BlockInfoPlus block;
+        private final DateTime requestedAt;
+        private List<FroodyEntry> pending = new ArrayList<>();
+
+        BlockMerger(BlockInfoPlus block, DateTime requestedAt) {
+            this.block = block;
+            this.requestedAt = requestedAt;
+        }
+
+        @Override
+        public synchronized void accept(FroodyEntry entry) {
+            pending.add(entry);
+            if (pending.size() >= MERGE_CHUNK_SIZE) {
+                publishNewOrModifiedEntries(merge());
+            }
+        }
+
+        synchronized List<CompactEntry> merge() {
+            if (pending.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<FroodyEntry> chunk = pending;
+            pending = new ArrayList<>();
+            return BlockCache.getInstance().processEntries(chunk, requestedAt);
+        }
+    }
 }
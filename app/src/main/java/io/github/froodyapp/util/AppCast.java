@@ -5,6 +5,8 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.support.v4.content.LocalBroadcastManager;
 
+import org.osmdroid.util.BoundingBox;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,6 +14,7 @@ import java.util.List;
 import io.github.froodyapp.api.model_.FroodyEntry;
 import io.github.froodyapp.api.model_.FroodyUser;
 import io.github.froodyapp.location.LocationTool;
+import io.github.froodyapp.model.CompactEntry;
 import io.github.froodyapp.model.FroodyEntryPlus;
 
 /**
@@ -35,6 +38,11 @@ public class AppCast {
         return ((ArrayList<FroodyEntryPlus>) (intent.getSerializableExtra(extra)));
     }
 
+    @SuppressWarnings("unchecked")
+    public static ArrayList<CompactEntry> getCompactEntryListFromIntent(Intent intent, String extra) {
+        return ((ArrayList<CompactEntry>) (intent.getSerializableExtra(extra)));
+    }
+
     public static FroodyEntryPlus getEntryFromIntent(Intent intent) {
         return (FroodyEntryPlus) (intent.getSerializableExtra(FroodyEntryInfoExtra.EXTRA_FROODY_ENTRY));
     }
@@ -48,6 +56,7 @@ public class AppCast {
                 FROODY_ENTRY_DETAILS_LOADED.ACTION,
                 FROODY_ENTRY_TAPPED.ACTION,
                 FROODY_ENTRIES_LOADED.ACTION,
+                BLOCKS_PAGED_IN.ACTION,
                 FROODY_ENTRIES_TAPPED.ACTION,
                 FROODY_USER_REGISTERED.ACTION,
                 FROODY_ENTRY_GEOCODED.ACTION,
@@ -96,12 +105,18 @@ public class AppCast {
     //########################
     public static class MAP_POSITION_CHANGED extends PositionInfoExtras {
         public static final String ACTION = "MAP_POSITION_CHANGED";
+        public static final String EXTRA_BOUNDING_BOX = "EXTRA_BOUNDING_BOX";
 
-        public static void send(Context c, double lat, double lng, int zoom) {
+        public static void send(Context c, double lat, double lng, int zoom, BoundingBox visibleArea) {
             Intent i = new Intent(ACTION);
             putPositionExtras(i, lat, lng, zoom);
+            i.putExtra(EXTRA_BOUNDING_BOX, visibleArea);
             sendBroadcast(c, i);
         }
+
+        public static BoundingBox getBoundingBoxFromIntent(Intent i) {
+            return (BoundingBox) i.getSerializableExtra(EXTRA_BOUNDING_BOX);
+        }
     }
 
     public static class LOCATION_FOUND {
@@ -144,13 +159,22 @@ public class AppCast {
         public static final String ACTION = "FROODY_ENTRIES_LOADED";
         public static final String EXTRA_FROODY_ENTRIES = "EXTRA_FROODY_ENTRIES";
 
-        public static void send(Context c, List<FroodyEntryPlus> entries) {
+        public static void send(Context c, List<CompactEntry> entries) {
             Intent i = new Intent(ACTION);
             i.putExtra(EXTRA_FROODY_ENTRIES, new ArrayList<>(entries));
             sendBroadcast(c, i);
         }
     }
 
+    // Cached blocks were loaded from the snapshot, the map can show their entries now
+    public static class BLOCKS_PAGED_IN {
+        public static final String ACTION = "BLOCKS_PAGED_IN";
+
+        public static void send(Context c) {
+            sendBroadcast(c, new Intent(ACTION));
+        }
+    }
+
     public static class FROODY_ENTRIES_TAPPED {
         public static final String ACTION = "FROODY_ENTRIES_TAPPED";
         public static final String EXTRA_FROODY_ENTRIES = "EXTRA_FROODY_ENTRIES";
@@ -3,35 +3,92 @@ package io.github.froodyapp.util;
 import android.content.Context;
 
 import org.joda.time.DateTime;
+import org.osmdroid.util.BoundingBox;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import io.github.froodyapp.App;
+import io.github.froodyapp.activity.MapOSMFragment;
+import io.github.froodyapp.api.model_.BlockChanges;
 import io.github.froodyapp.api.model_.BlockInfo;
 import io.github.froodyapp.api.model_.FroodyEntry;
 import io.github.froodyapp.model.BlockInfoPlus;
+import io.github.froodyapp.model.CompactEntry;
 import io.github.froodyapp.model.FroodyEntryPlus;
 
 /**
- * Cache of blocks (containing lists of FroodyEntries)
+ * Cache of blocks (containing lists of FroodyEntries, kept as CompactEntry)
+ * Blocks are held in a GeohashTree keyed by geohash keys (see GeohashCodec.toKey), so lookups by an entry's geohash
+ * and walks over the blocks within a shorter geohash need no string work
+ * Also keeps the cursors of the geohashes synced via /block/changes, saved along with the journal
+ * Locking: Work on a block holds cacheLock shared and the stripe lock of the block, in that order, so loaders of
+ * different blocks run in parallel. Loading, clearing and copying the blocks for a snapshot hold cacheLock exclusively.
+ * File writes are serialized by fileLock, a save never waits for a running compaction
+ * Readers like the map use getView(): An immutable BlockCacheView, republished after each batch of changes,
+ * read without any locking
  */
 public class BlockCache {
     //#####################
     //##      Statics
     //#####################
-    public static class BlockCacheItem implements Serializable {
-        public ConcurrentHashMap<Long, FroodyEntryPlus> entries = new ConcurrentHashMap<>();  // = HashMap
+    public static final int BLOCK_PRECISION = 6;   // Entries are cached in blocks of this geohash precision
+    private static final String CACHE_FILENAME = "blockcache.dat";
+    private static final String JOURNAL_FILENAME = "blockcache.journal";
+    private static final String LEGACY_CACHE_FILENAME = "map.dat";
+    private static final String CURSORS_FILENAME = "blockcache.cursors";
+    private static final long JOURNAL_COMPACTION_THRESHOLD = 512 * 1024;
+    public static final int DEFAULT_MAX_BLOCKS = 1024;
+    public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    // Rough heap usage of the objects behind a block and an entry (incl. its map node and geohash), texts are counted separately
+    private static final int ESTIMATED_BLOCK_OVERHEAD = 256;
+    private static final int ESTIMATED_ENTRY_OVERHEAD = 192;
+
+    // Max. amount of geohash cells walked for a viewport query
+    private static final int MAX_QUERY_CELLS = 64;
+
+    private static final int LOCK_STRIPES = 64;
+
+    public static class BlockCacheItem {
+        public ConcurrentHashMap<Long, CompactEntry> entries = new ConcurrentHashMap<>();  // = HashMap
         public BlockInfoPlus blockInfo;
+        volatile long lastAccess;
+        long estimatedBytes;
+        boolean isDirty;    // Not yet contained in the snapshot, must not be evicted
+
+        // Copy for writing a snapshot while the block goes on changing
+        BlockCacheItem copy() {
+            BlockCacheItem copy = new BlockCacheItem();
+            copy.entries = new ConcurrentHashMap<>(entries);
+            copy.blockInfo = blockInfo.copy();
+            return copy;
+        }
     }
 
     public static class BlockCacheHolder {
@@ -42,218 +99,980 @@ public class BlockCache {
     //######################
     //##  Member
     //######################
-    private ConcurrentHashMap<String, BlockCacheItem> cacheMap;
+    private volatile GeohashTree<BlockCacheItem> blocks;
+    private final ConcurrentHashMap<Long, Long> entryIndex = new ConcurrentHashMap<>();  // EntryId -> block key, of blocks in memory
+    private final BlockCacheJournal journal = new BlockCacheJournal();
+    private volatile BlockCacheSnapshot.MappedReader snapshot;
+    private final AtomicBoolean isCompacting = new AtomicBoolean();
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "BlockCacheCompaction");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private volatile boolean isWritingSnapshot = false;   // Blocks are copied, but not in the mapped snapshot yet
+    private volatile File cacheDir;     // Set by load and save, eviction compacts into it
+    private final ConcurrentHashMap<String, Long> syncCursors = new ConcurrentHashMap<>();   // Synced geohash -> cursor of /block/changes
+    private volatile boolean isSyncCursorsDirty = false;
+
+    // Locking
+    private final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
+    private final StripedLocks blockLocks = new StripedLocks(LOCK_STRIPES);
+    private final ReentrantLock fileLock = new ReentrantLock();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Object viewLock = new Object();   // Serializes publishing views, taken before the stripe locks
+
+    // Read view for the UI, and the blocks changed since it was published
+    private volatile BlockCacheView view = BlockCacheView.EMPTY;
+    private final Set<Long> viewChanges = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+    // Eviction
+    private volatile int maxBlocks = DEFAULT_MAX_BLOCKS;
+    private volatile long maxBytes = DEFAULT_MAX_BYTES;
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
 
     //######################
     //##  Methods
     //######################
-    private BlockCache() {
-        cacheMap = new ConcurrentHashMap<>();
+    // Not private for benchmarks and tests, which need an empty cache each. The app uses getInstance()
+    BlockCache() {
+        blocks = new GeohashTree<>();
+    }
+
+
+    // Load BlockCache from app's cache directory: Maps the last snapshot and applies all mutations journaled since
+    // Blocks of the snapshot are paged in on first access only
+    public void loadFromAppCache(Context context) {
+        deleteLegacyCacheFile(context);
+        load(context.getCacheDir());
     }
 
+    void load(File cacheDir) {
+        this.cacheDir = cacheDir;
+        File file = new File(cacheDir, CACHE_FILENAME);
+        File journalFile = new File(cacheDir, JOURNAL_FILENAME);
+        if (!file.exists() && !journalFile.exists()) {
+            return;
+        }
 
-    // Load BlockCache from app's cache directory
-    @SuppressWarnings("unchecked")
-    public synchronized void loadFromAppCache(Context context) {
+        fileLock.lock();
+        cacheLock.writeLock().lock();
         try {
-            File file = new File(context.getCacheDir(), "map.dat");
-            ObjectInputStream inputStream = new ObjectInputStream(new FileInputStream(file));
-            ConcurrentHashMap<String, BlockCacheItem> mapDat = (ConcurrentHashMap<String, BlockCacheItem>) inputStream.readObject();
-            if (mapDat != null) {
-                cacheMap = mapDat;
+            closeQuietly(snapshot);
+            snapshot = null;
+            if (file.exists()) {
+                snapshot = new BlockCacheSnapshot.MappedReader(file);
+            }
+            Map<String, BlockCacheItem> map = new HashMap<>();
+            BlockCacheJournal.replay(journalFile, map, snapshot);
+            GeohashTree<BlockCacheItem> tree = new GeohashTree<>();
+            entryIndex.clear();
+            for (BlockCacheItem item : map.values()) {
+                item.isDirty = true;
+                tree.put(keyOf(item), item);
+                indexEntries(item);
             }
-            inputStream.close();
+            blocks = tree;
+            estimatedBytes.set(0);
             cleanOldEntries();
+            rebuildView();
+            loadSyncCursors(new File(cacheDir, CURSORS_FILENAME));
         } catch (Exception e) {
+            // Without the entries, the cursors would skip them on the next sync
+            syncCursors.clear();
             App.log(getClass(), "Error: Cannot load CacheMap from cache---" + e.getMessage());
+        } finally {
+            cacheLock.writeLock().unlock();
+            fileLock.unlock();
         }
     }
 
-    // Save BlockCache to app's cache directory
-    public synchronized void saveToAppCache(Context context) {
+    // Save BlockCache to app's cache directory. Only appends the mutations since the last save
+    // Loaders go on meanwhile, a save during a compaction is skipped and its records are appended by the next one
+    public void saveToAppCache(Context context) {
+        save(context.getCacheDir());
+    }
+
+    void save(File cacheDir) {
+        this.cacheDir = cacheDir;
+        File journalFile = new File(cacheDir, JOURNAL_FILENAME);
+        if (!fileLock.tryLock()) {
+            return;
+        }
         try {
-            cleanOldEntries();
-            File file = new File(context.getCacheDir(), "map.dat");
-            ObjectOutputStream outputStream = new ObjectOutputStream(new FileOutputStream(file));
-            outputStream.writeObject(cacheMap);
-            outputStream.flush();
-            outputStream.close();
+            // Copied before the entries are flushed, so a saved cursor never points past entries not saved
+            Map<String, Long> cursors = null;
+            if (isSyncCursorsDirty) {
+                isSyncCursorsDirty = false;
+                cursors = new HashMap<>(syncCursors);
+            }
+            journal.flush(journalFile);
+            if (cursors != null) {
+                try {
+                    saveSyncCursors(new File(cacheDir, CURSORS_FILENAME), cursors);
+                } catch (IOException e) {
+                    isSyncCursorsDirty = true;
+                    throw e;
+                }
+            }
         } catch (Exception e) {
             App.log(getClass(), "Error: Cannot save CacheMap to cache---" + e.getMessage());
+            return;
+        } finally {
+            fileLock.unlock();
+        }
+
+        // Compaction also makes dirty blocks evictable again
+        if (journalFile.length() > JOURNAL_COMPACTION_THRESHOLD || isOverLimits()) {
+            scheduleCompaction(cacheDir);
+        }
+    }
+
+    // Compact on the compaction thread, unless a compaction is running already
+    private void scheduleCompaction(File cacheDir) {
+        final File file = new File(cacheDir, CACHE_FILENAME);
+        final File journalFile = new File(cacheDir, JOURNAL_FILENAME);
+        if (isCompacting.compareAndSet(false, true)) {
+            compactionExecutor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        compact(file, journalFile);
+                    } finally {
+                        isCompacting.set(false);
+                    }
+                }
+            });
+        }
+    }
+
+    // Compact without waiting for the journal to grow, for tests
+    void compact(File cacheDir) {
+        compact(new File(cacheDir, CACHE_FILENAME), new File(cacheDir, JOURNAL_FILENAME));
+    }
+
+    // Wait for the scheduled compactions to finish, for tests
+    void awaitCompaction() throws Exception {
+        compactionExecutor.submit(new Runnable() {
+            public void run() {
+            }
+        }).get();
+    }
+
+    /**
+     * Rewrite the snapshot from the in-memory state plus the blocks not paged in yet, drop the journal and remap
+     * Only copying the blocks and swapping the snapshot hold cacheLock exclusively, loaders go on while it is written.
+     * Records logged after the copy stay pending in the journal
+     */
+    private void compact(File file, File journalFile) {
+        fileLock.lock();
+        try {
+            cleanOldEntries();
+            journal.flush(journalFile);
+            Map<String, BlockCacheItem> copies = new HashMap<>();
+            BlockCacheSnapshot.MappedReader base;
+            cacheLock.writeLock().lock();
+            try {
+                // The journal file then holds exactly the mutations contained in the copies
+                journal.flush(journalFile);
+                for (BlockCacheItem item : blocks.values()) {
+                    copies.put(item.blockInfo.getGeohash(), item.copy());
+                    item.isDirty = false;
+                }
+                base = snapshot;
+                isWritingSnapshot = true;
+            } finally {
+                cacheLock.writeLock().unlock();
+            }
+
+            try {
+                BlockCacheSnapshot.write(file, copies, base);
+            } catch (IOException e) {
+                markAllDirty();
+                throw e;
+            }
+
+            cacheLock.writeLock().lock();
+            try {
+                journal.deleteFile(journalFile);
+                closeQuietly(snapshot);
+                snapshot = new BlockCacheSnapshot.MappedReader(file);
+            } finally {
+                isWritingSnapshot = false;
+                cacheLock.writeLock().unlock();
+            }
+            evictIfNeeded();
+        } catch (Exception e) {
+            App.log(getClass(), "Error: Cannot compact CacheMap journal---" + e.getMessage());
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    // Blocks copied for a snapshot that could not be written must not be evicted
+    private void markAllDirty() {
+        cacheLock.writeLock().lock();
+        try {
+            for (BlockCacheItem item : blocks.values()) {
+                item.isDirty = true;
+            }
+            isWritingSnapshot = false;
+        } finally {
+            cacheLock.writeLock().unlock();
+        }
+    }
+
+    // Layout: count, then geohash and cursor per synced geohash
+    private void saveSyncCursors(File file, Map<String, Long> cursors) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            out.writeInt(cursors.size());
+            for (Map.Entry<String, Long> cursor : cursors.entrySet()) {
+                out.writeUTF(cursor.getKey());
+                out.writeLong(cursor.getValue());
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Cannot rename " + tmpFile);
+        }
+    }
+
+    private void loadSyncCursors(File file) throws IOException {
+        syncCursors.clear();
+        if (!file.exists()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                syncCursors.put(in.readUTF(), in.readLong());
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    // The cache was stored with java serialization before
+    private void deleteLegacyCacheFile(Context context) {
+        File legacyFile = new File(context.getCacheDir(), LEGACY_CACHE_FILENAME);
+        if (legacyFile.exists() && !legacyFile.delete()) {
+            App.log(getClass(), "Error: Cannot delete legacy cache file");
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
         }
     }
 
     /**
      * Remove those entries from cache, that are not needed anymore
+     * Blocks not paged in yet are cleaned when they get paged in
      */
     public void cleanOldEntries() {
-        for (BlockCacheItem blockCache : cacheMap.values()) {
-            List<Long> itemsToRemove = new ArrayList<>();
-            for (FroodyEntryPlus entry : blockCache.entries.values()) {
-                if (entry.getWasDeleted() || entry.canEntryBeRemovedFromCache()) {
-                    itemsToRemove.add(entry.getEntryId());
+        cacheLock.readLock().lock();
+        try {
+            for (BlockCacheItem blockCache : blocks.values()) {
+                synchronized (blockLocks.forKey(keyOf(blockCache))) {
+                    long bytesBefore = blockCache.estimatedBytes;
+                    if (cleanOldEntries(blockCache)) {
+                        viewChanges.add(keyOf(blockCache));
+                    }
+                    blockCache.estimatedBytes = estimateBytes(blockCache);
+                    estimatedBytes.addAndGet(blockCache.estimatedBytes - bytesBefore);
                 }
             }
+        } finally {
+            cacheLock.readLock().unlock();
+        }
+        publishView();
+    }
 
-            for (Long rmId : itemsToRemove) {
-                blockCache.entries.remove(rmId);
+    // Returns if entries were removed
+    private boolean cleanOldEntries(BlockCacheItem blockCache) {
+        List<Long> itemsToRemove = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (CompactEntry entry : blockCache.entries.values()) {
+            if (entry.canEntryBeRemovedFromCache(now)) {
+                itemsToRemove.add(entry.getEntryId());
             }
         }
+
+        Long key = keyOf(blockCache);
+        for (Long rmId : itemsToRemove) {
+            blockCache.entries.remove(rmId);
+            entryIndex.remove(rmId, key);
+        }
+        return !itemsToRemove.isEmpty();
+    }
+
+    private void indexEntries(BlockCacheItem item) {
+        Long key = keyOf(item);
+        for (Long entryId : item.entries.keySet()) {
+            entryIndex.put(entryId, key);
+        }
+    }
+
+    private void unindexEntries(BlockCacheItem item) {
+        Long key = keyOf(item);
+        for (Long entryId : item.entries.keySet()) {
+            entryIndex.remove(entryId, key);
+        }
+    }
+
+    private static long keyOf(BlockCacheItem item) {
+        return GeohashCodec.toKey(item.blockInfo.getGeohash());
     }
 
-    public synchronized Vector<BlockInfoPlus> processBlockInfosAndGetModified(List<BlockInfo> blockInfosServer) {
+    public Vector<BlockInfoPlus> processBlockInfosAndGetModified(List<BlockInfo> blockInfosServer) {
         Vector<BlockInfoPlus> blocksModifiedOnServerButNotLocal = new Vector<>();
 
-        for (BlockInfo infoServer : blockInfosServer) {
-            BlockCacheItem item = getBlockCacheItemAt(infoServer.getGeohash());
-            if (item == null) {
-                item = new BlockCacheItem();
-                item.blockInfo = new BlockInfoPlus(infoServer);
-            } else {
-                item.blockInfo.setNewerBlockInfo(infoServer);
-            }
+        cacheLock.readLock().lock();
+        try {
+            for (BlockInfo infoServer : blockInfosServer) {
+                long key = GeohashCodec.toKey(infoServer.getGeohash());
+                synchronized (blockLocks.forKey(key)) {
+                    BlockCacheItem item = getItem(key);
+                    if (item == null) {
+                        item = new BlockCacheItem();
+                        item.blockInfo = new BlockInfoPlus(infoServer);
+                    } else {
+                        item.blockInfo.setNewerBlockInfo(infoServer);
+                    }
 
-            if (item.blockInfo.getHasBlockBeenModified()) {
-                blocksModifiedOnServerButNotLocal.add(item.blockInfo);
+                    if (item.blockInfo.getHasBlockBeenModified()) {
+                        blocksModifiedOnServerButNotLocal.add(item.blockInfo);
+                    }
+                    updateBlockCache(item);
+                    journal.logBlockInfo(item.blockInfo);
+                }
             }
-            updateBlockCache(item);
+        } finally {
+            cacheLock.readLock().unlock();
         }
+        publishView();
+        evictIfNeeded();
         return blocksModifiedOnServerButNotLocal;
     }
 
     /**
      * Process entries, returns a list of new or modified entries. Deleted ones got wasDeleted set to true
+     * Entries are merged block by block, each while holding the lock of its block only. The view
+     * containing all of them is published afterwards
      *
      * @param entriesFromServer The entries received from a /block/get/ call
      * @param requestedAt       When the entries where requested
      * @return A List of deleted,added or modified entries
      */
-    public synchronized List<FroodyEntryPlus> processEntries(List<FroodyEntry> entriesFromServer, DateTime requestedAt) {
-        List<FroodyEntryPlus> retEntries = new ArrayList<>();
+    public List<CompactEntry> processEntries(List<FroodyEntry> entriesFromServer, DateTime requestedAt) {
+        Map<Long, List<CompactEntry>> entriesByBlock = new LinkedHashMap<>();
         for (FroodyEntry fe : entriesFromServer) {
-            FroodyEntryPlus entry = new FroodyEntryPlus(fe);
-            String block6 = entry.getGeohashWithPrecision(6);
-            if (block6 == null) {
+            CompactEntry entry = CompactEntry.from(fe);
+            if (!isMorePreciseThanBlock(entry.getGeohash())) {
                 continue;   // Won't happen, if server is doing well
             }
+            long blockKey = GeohashCodec.toKey(entry.getGeohash(), BLOCK_PRECISION);
+            List<CompactEntry> blockEntries = entriesByBlock.get(blockKey);
+            if (blockEntries == null) {
+                blockEntries = new ArrayList<>();
+                entriesByBlock.put(blockKey, blockEntries);
+            }
+            blockEntries.add(entry);
+        }
 
-            BlockCacheItem cacheItem = getBlockCacheItemAt(block6);
-            if (cacheItem == null) {
-                cacheItem = new BlockCacheItem();
-                cacheItem.blockInfo = new BlockInfoPlus(block6, requestedAt);
-            } else {
-                cacheItem.blockInfo.setModificationDate(requestedAt);
+        List<CompactEntry> retEntries = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        cacheLock.readLock().lock();
+        try {
+            for (Map.Entry<Long, List<CompactEntry>> block : entriesByBlock.entrySet()) {
+                synchronized (blockLocks.forKey(block.getKey())) {
+                    mergeBlock(block.getKey(), block.getValue(), requestedAt, now, retEntries);
+                }
             }
+        } finally {
+            cacheLock.readLock().unlock();
+        }
+        publishView();
+        evictIfNeeded();
+        return retEntries;
+    }
 
+    // Merge the entries of one block, the caller holds the lock of the block
+    private void mergeBlock(long blockKey, List<CompactEntry> entries, DateTime requestedAt, long now, List<CompactEntry> retEntries) {
+        BlockCacheItem cacheItem = getItem(blockKey);
+        if (cacheItem == null) {
+            cacheItem = new BlockCacheItem();
+            cacheItem.blockInfo = new BlockInfoPlus(GeohashCodec.keyToString(blockKey), requestedAt);
+        } else {
+            cacheItem.blockInfo.setModificationDate(requestedAt);
+        }
+        String block6 = cacheItem.blockInfo.getGeohash();
+
+        for (CompactEntry entry : entries) {
             // Process cached entries
-            FroodyEntryPlus entryOld = cacheItem.entries.get(entry.getEntryId());
+            CompactEntry entryOld = cacheItem.entries.get(entry.getEntryId());
             if (entryOld != null) {
                 if (entryOld.hasExtendedInfoLoaded()) {
-                    entry.setAddress(entryOld.getAddress());
-                    entry.setContact(entryOld.getContact());
-                    entry.setDescription(entryOld.getDescription());
+                    entry.setTexts(entryOld.getDescription(), entryOld.getContact(), entryOld.getAddress());
                 }
                 cacheItem.entries.remove(entry.getEntryId());
             }
 
-            if (!entry.getWasDeleted() && !entry.canEntryBeRemovedFromCache()) {
+            if (!entry.canEntryBeRemovedFromCache(now)) {
                 // New or modified entry
                 cacheItem.entries.put(entry.getEntryId(), entry);
+                entryIndex.put(entry.getEntryId(), blockKey);
+                journal.logPutEntry(block6, entry);
+            } else if (entryOld != null) {
+                entryIndex.remove(entry.getEntryId(), blockKey);
+                journal.logRemoveEntry(block6, entry.getEntryId());
             }
-
             retEntries.add(entry);
-            updateBlockCache(cacheItem);
         }
-        return retEntries;
+        updateBlockCache(cacheItem);
+        journal.logBlockInfo(cacheItem.blockInfo);
     }
 
-    // Process a single entry containing details
-    public void processEntryWithDetails(FroodyEntryPlus entry) {
-        String block6 = entry.getGeohashWithPrecision(6);
-        BlockCacheItem cacheItem = getBlockCacheItemAt(block6);
-        if (block6 != null) {
-            if (cacheItem == null) {
-                // Won't happen, because extended entries will retrieved by existing ones
-                cacheItem = new BlockCacheItem();
-                cacheItem.blockInfo = new BlockInfoPlus(block6, Helpers.getNow());
-            }
-
-            // Delete from cache
-            if (cacheItem.entries.get(entry.getEntryId()) != null) {
-                cacheItem.entries.remove(entry.getEntryId());
+    /**
+     * Process the entries of a /block/changes sync and remember its cursor for the synced geohashes
+     *
+     * @param geohashes   The geohashes synced
+     * @param changes     The response of the sync
+     * @param requestedAt When the changes where requested
+     * @return A List of deleted,added or modified entries
+     */
+    public List<CompactEntry> processChanges(Collection<String> geohashes, BlockChanges changes, DateTime requestedAt) {
+        List<CompactEntry> entries = changes.getEntries() == null
+                ? Collections.<CompactEntry>emptyList() : processEntries(changes.getEntries(), requestedAt);
+        if (changes.getCursor() != null) {
+            for (String geohash : geohashes) {
+                syncCursors.put(geohash, changes.getCursor());
             }
+            isSyncCursorsDirty = true;
+        }
+        return entries;
+    }
 
-            // Update cache if it was not deleted
-            if (!entry.getWasDeleted()) {
-                // New or modified entry
-                cacheItem.entries.put(entry.getEntryId(), entry);
+    /**
+     * Cursor to sync a geohash from via /block/changes: The newest of its own and the ones of
+     * shorter geohashes containing it, as their syncs covered it too
+     *
+     * @param geohash The geohash to sync
+     * @return the cursor, 0 if it was never synced
+     */
+    public long getSyncCursor(String geohash) {
+        long cursor = 0;
+        for (int i = 1; i <= geohash.length(); i++) {
+            Long prefixCursor = syncCursors.get(geohash.substring(0, i));
+            if (prefixCursor != null && prefixCursor > cursor) {
+                cursor = prefixCursor;
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Forget all cursors, e.g. when the server doesn't know them anymore. The next sync gets all entries again
+     */
+    public void clearSyncCursors() {
+        syncCursors.clear();
+        isSyncCursorsDirty = true;
+    }
+
+    /**
+     * Forget the cursors of some geohashes, e.g. when the server doesn't know them anymore. The cursors of
+     * shorter geohashes containing them are dropped too, as getSyncCursor would fall back to them
+     *
+     * @param geohashes The geohashes to get all entries of with their next sync
+     */
+    public void clearSyncCursors(Collection<String> geohashes) {
+        for (String geohash : geohashes) {
+            for (int i = 1; i <= geohash.length(); i++) {
+                syncCursors.remove(geohash.substring(0, i));
+            }
+        }
+        isSyncCursorsDirty = true;
+    }
+
+    // Process a single entry containing details
+    public void processEntryWithDetails(FroodyEntryPlus entryWithDetails) {
+        CompactEntry entry = CompactEntry.from(entryWithDetails);
+        if (!isMorePreciseThanBlock(entry.getGeohash())) {
+            return;
+        }
+        long blockKey = GeohashCodec.toKey(entry.getGeohash(), BLOCK_PRECISION);
+        cacheLock.readLock().lock();
+        try {
+            synchronized (blockLocks.forKey(blockKey)) {
+                BlockCacheItem cacheItem = getItem(blockKey);
+                if (cacheItem == null) {
+                    // Won't happen, because extended entries will retrieved by existing ones
+                    cacheItem = new BlockCacheItem();
+                    cacheItem.blockInfo = new BlockInfoPlus(GeohashCodec.keyToString(blockKey), Helpers.getNow());
+                    journal.logBlockInfo(cacheItem.blockInfo);
+                }
+                String block6 = cacheItem.blockInfo.getGeohash();
+
+                // Delete from cache
+                if (cacheItem.entries.get(entry.getEntryId()) != null) {
+                    cacheItem.entries.remove(entry.getEntryId());
+                    entryIndex.remove(entry.getEntryId(), blockKey);
+                    journal.logRemoveEntry(block6, entry.getEntryId());
+                }
+
+                // Update cache if it was not deleted
+                if (!entry.wasDeleted()) {
+                    // New or modified entry
+                    cacheItem.entries.put(entry.getEntryId(), entry);
+                    entryIndex.put(entry.getEntryId(), blockKey);
+                    journal.logPutEntry(block6, entry);
+                }
+                updateBlockCache(cacheItem);
             }
-            updateBlockCache(cacheItem);
+        } finally {
+            cacheLock.readLock().unlock();
         }
+        publishView();
+        evictIfNeeded();
+    }
+
+    // Whether an entry's geohash lies within a block (same as FroodyEntryPlus.getGeohashWithPrecision not being null)
+    private static boolean isMorePreciseThanBlock(String geohash) {
+        return geohash != null && geohash.length() > BLOCK_PRECISION;
     }
 
     // Try to get a single entry from the cache. Queries by ID
     public FroodyEntryPlus tryGetEntryByIdFromCache(FroodyEntryPlus entry) {
-        String block6 = entry.getGeohashWithPrecision(6);
-        BlockCacheItem cacheItem = getBlockCacheItemAt(block6);
-
-        if (block6 != null && cacheItem != null) {
-            // Iterate all entries in BlockCacheItem
-            for (int i = 0, size = cacheItem.entries.size(); i < size; i++) {
-                for (FroodyEntryPlus entryFromCache : cacheItem.entries.values()) {
-                    if (entryFromCache.getEntryId().equals(entry.getEntryId())) {
-                        return entryFromCache;
-                    }
+        return entry.getEntryId() == null ? null : getEntryById(entry.getEntryId());
+    }
+
+    /**
+     * Get a cached entry by its id, without knowing its geohash
+     * Blocks in memory are found by the entry index, others by the entry index of the snapshot.
+     * The entry is read from the view
+     *
+     * @param entryId The id of the entry
+     * @return a copy of the cached entry or null
+     */
+    public FroodyEntryPlus getEntryById(long entryId) {
+        CompactEntry entry = getCompactEntryById(entryId);
+        return entry == null ? null : entry.toEntryPlus();
+    }
+
+    // Same as getEntryById, without the copy
+    CompactEntry getCompactEntryById(long entryId) {
+        Long key = entryIndex.get(entryId);
+        BlockCacheSnapshot.MappedReader snapshot = this.snapshot;
+        if (key == null && snapshot != null) {
+            String geohash = snapshot.findBlockOfEntry(entryId);
+            key = geohash == null ? null : GeohashCodec.toKey(geohash);
+        }
+        CompactEntry entry = null;
+        if (key != null && getItem(key) != null) {
+            publishView();
+            entry = view.getEntry(key, entryId);
+        }
+        evictIfNeeded();
+        return entry;
+    }
+
+    /**
+     * Get the cached entries within the bounding box from the current view. Only walks the blocks covering it:
+     * Single blocks when zoomed in, ranges of blocks below a shorter geohash prefix when zoomed out
+     * Never pages in, so it is cheap enough for the UI thread. Blocks of the snapshot get into the view
+     * by pageInBlocks, called by the loaders
+     *
+     * @param bbox The visible area
+     * @param zoom The zoom level of the map
+     * @return entries within bbox
+     */
+    public List<CompactEntry> queryEntries(BoundingBox bbox, int zoom) {
+        double north = bbox.getLatNorth();
+        double south = bbox.getLatSouth();
+        double east = bbox.getLonEast();
+        double west = bbox.getLonWest();
+        int maxPrecision = zoom < MapOSMFragment.ZOOMLEVEL_BLOCK5_TRESHOLD ? BLOCK_PRECISION - 1 : BLOCK_PRECISION;
+        int precision = GeohashCoverage.choosePrecision(north, east, south, west, maxPrecision, MAX_QUERY_CELLS);
+
+        List<Long> cellKeys = new ArrayList<>();
+        for (String cell : GeohashCoverage.cover(north, east, south, west, precision)) {
+            cellKeys.add(GeohashCodec.toKey(cell));
+        }
+        return view.getEntriesWithin(cellKeys, north, east, south, west);
+    }
+
+    /**
+     * Page in the cached blocks within the geohashes, e.g. of the blocks about to be loaded, so their
+     * entries get into the view. Reads the mapped snapshot, so not to be called on the UI thread
+     *
+     * @param geohashes Geohashes of block precision or shorter
+     * @return if a new view was published
+     */
+    public boolean pageInBlocks(Collection<String> geohashes) {
+        long version = view.getVersion();
+        for (String geohash : geohashes) {
+            if (geohash.length() >= BLOCK_PRECISION) {
+                getItem(GeohashCodec.toKey(geohash, BLOCK_PRECISION));
+            } else {
+                getItemsWithPrefix(GeohashCodec.toKey(geohash));
+            }
+        }
+        publishView();
+        evictIfNeeded();
+        return view.getVersion() != version;
+    }
+
+    /**
+     * The current read view of the cache. Needs no locking and stays unchanged, call again for newer changes
+     * Only contains the blocks in memory, use queryEntries to page in the blocks of an area too
+     */
+    public BlockCacheView getView() {
+        return view;
+    }
+
+    /**
+     * Publish a new view containing the blocks changed since the last one
+     * Must not be called while holding the lock of a block. Each block is read under its lock, so it is published
+     * completely before or after a merge. Changes made meanwhile are left for the next publish of their writer
+     */
+    private void publishView() {
+        if (viewChanges.isEmpty()) {
+            return;
+        }
+        synchronized (viewLock) {
+            Map<Long, CompactEntry[]> changes = new HashMap<>();
+            for (Iterator<Long> it = viewChanges.iterator(); it.hasNext(); ) {
+                long key = it.next();
+                it.remove();
+                synchronized (blockLocks.forKey(key)) {
+                    BlockCacheItem item = blocks.get(key);
+                    changes.put(key, item == null ? null : entriesOf(item));
                 }
             }
+            if (!changes.isEmpty()) {
+                view = view.withBlocks(changes);
+            }
         }
-        return null;
     }
 
-    public List<FroodyEntryPlus> getAllCachedEntries() {
-        List<FroodyEntryPlus> entries = new ArrayList<>();
-        // Iterate all items in cacheMap
-        for (Map.Entry<String, BlockCacheItem> stringBlockCacheItemEntry : cacheMap.entrySet()) {
-            BlockCacheItem blockCacheItem = stringBlockCacheItemEntry.getValue();
-            entries.addAll(new ArrayList<>(blockCacheItem.entries.values()));
+    // Publish a view of all blocks in memory, after they were replaced as a whole
+    private void rebuildView() {
+        synchronized (viewLock) {
+            viewChanges.clear();
+            final Map<Long, CompactEntry[]> all = new HashMap<>();
+            blocks.visitAll(new GeohashTree.Visitor<BlockCacheItem>() {
+                public void visit(long key, BlockCacheItem item) {
+                    synchronized (blockLocks.forKey(key)) {
+                        all.put(key, entriesOf(item));
+                    }
+                }
+            });
+            view = view.withOnlyBlocks(all);
         }
-        return entries;
+    }
+
+    private static CompactEntry[] entriesOf(BlockCacheItem item) {
+        return item.entries.values().toArray(new CompactEntry[item.entries.size()]);
     }
 
     /**
      * Get block cache at specific blockGeohash. Returns null if nothing was cached yet
      *
      * @param blockGeohash The geohash to request at
-     * @return A BlockCacheItem or null if nothing was inserted yet
+     * @return A BlockCacheItem or null if nothing was inserted yet or blockGeohash is no valid geohash
      */
     public BlockCacheItem getBlockCacheItemAt(String blockGeohash) {
-        return cacheMap.get(blockGeohash);
+        return GeohashCodec.isValid(blockGeohash) ? getBlockCacheItemAt(GeohashCodec.toKey(blockGeohash)) : null;
+    }
+
+    /**
+     * Get block cache at a geohash key (see GeohashCodec.toKey). Returns null if nothing was cached yet
+     *
+     * @param blockKey The key of the block's geohash
+     * @return A BlockCacheItem or null if nothing was inserted yet
+     */
+    public BlockCacheItem getBlockCacheItemAt(long blockKey) {
+        BlockCacheItem item = getItem(blockKey);
+        publishView();
+        evictIfNeeded();
+        return item;
+    }
+
+    // Get a block, paging it in if needed. Doesn't evict, so it can be called while holding the lock of a block
+    private BlockCacheItem getItem(long blockKey) {
+        BlockCacheItem item = blocks.get(blockKey);
+        if (item != null) {
+            hitCount.incrementAndGet();
+            item.lastAccess = System.currentTimeMillis();
+            return item;
+        }
+        missCount.incrementAndGet();
+        return pageIn(blockKey);
     }
 
     /**
-     * Update (=Replace) the BlockCacheItem at item.blockInfo.geoHash
+     * Get all blocks whose geohash starts with the geohash of prefixKey, e.g. the 6 char blocks within a 5 char block
+     * Blocks in memory are a subtree walk, blocks of the snapshot are looked up by binary search and paged in
+     *
+     * @param prefixKey key of the geohash prefix (see GeohashCodec.toKey)
+     * @return the blocks found
+     */
+    public List<BlockCacheItem> getBlockCacheItemsWithPrefix(long prefixKey) {
+        List<BlockCacheItem> items = getItemsWithPrefix(prefixKey);
+        publishView();
+        evictIfNeeded();
+        return items;
+    }
+
+    private List<BlockCacheItem> getItemsWithPrefix(long prefixKey) {
+        List<BlockCacheItem> items = blocks.valuesWithPrefix(prefixKey);
+        long now = System.currentTimeMillis();
+        for (BlockCacheItem item : items) {
+            item.lastAccess = now;
+        }
+
+        BlockCacheSnapshot.MappedReader snapshot = this.snapshot;
+        if (snapshot != null) {
+            for (long key : snapshot.getBlockKeysWithPrefix(prefixKey)) {
+                if (!blocks.containsKey(key)) {
+                    BlockCacheItem item = pageIn(key);
+                    if (item != null) {
+                        items.add(item);
+                    }
+                }
+            }
+        }
+        return items;
+    }
+
+    // Load a block from the mapped snapshot into memory. Shares cacheLock, so the snapshot isn't swapped meanwhile
+    private BlockCacheItem pageIn(long blockKey) {
+        if (this.snapshot == null) {
+            return null;
+        }
+        String blockGeohash = GeohashCodec.keyToString(blockKey);
+        cacheLock.readLock().lock();
+        try {
+            BlockCacheSnapshot.MappedReader snapshot = this.snapshot;
+            if (snapshot == null) {
+                return null;
+            }
+            BlockCacheItem item = snapshot.readBlock(blockGeohash);
+            if (item == null) {
+                return null;
+            }
+            cleanOldEntries(item);
+            item.lastAccess = System.currentTimeMillis();
+            item.estimatedBytes = estimateBytes(item);
+            BlockCacheItem existing = blocks.putIfAbsent(blockKey, item);
+            if (existing != null) {
+                return existing;
+            }
+            viewChanges.add(blockKey);
+            indexEntries(item);
+            estimatedBytes.addAndGet(item.estimatedBytes);
+            return item;
+        } catch (Exception e) {
+            App.log(getClass(), "Error: Cannot page in block " + blockGeohash + "---" + e.getMessage());
+            return null;
+        } finally {
+            cacheLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Update (=Replace) the BlockCacheItem at item.blockInfo.geoHash, the caller holds the lock of the block
      *
      * @param item The item to place
      */
     private void updateBlockCache(BlockCacheItem item) {
-        cacheMap.put(item.blockInfo.getGeohash(), item);
+        long bytesBefore = item.estimatedBytes;
+        item.estimatedBytes = estimateBytes(item);
+        item.lastAccess = System.currentTimeMillis();
+        item.isDirty = true;
+        BlockCacheItem previous = blocks.put(keyOf(item), item);
+        viewChanges.add(keyOf(item));
+        if (previous != null && previous != item) {
+            bytesBefore = previous.estimatedBytes;
+        } else if (previous == null) {
+            bytesBefore = 0;
+        }
+        estimatedBytes.addAndGet(item.estimatedBytes - bytesBefore);
+    }
+
+    private boolean isOverLimits() {
+        return blocks.size() > maxBlocks || estimatedBytes.get() > maxBytes;
+    }
+
+    /**
+     * Drop the least recently used blocks until the cache is within maxBlocks and maxBytes again
+     * Only blocks contained in the snapshot are dropped, they get paged in again on next access.
+     * If that isn't enough, a compaction is scheduled, which writes the dirty blocks into the snapshot and evicts then
+     * Must not be called while holding the lock of a block. Skipped if another thread is evicting already
+     */
+    private void evictIfNeeded() {
+        if (!isOverLimits() || isWritingSnapshot || !evictionLock.tryLock()) {
+            return;
+        }
+        boolean needsCompaction;
+        cacheLock.readLock().lock();
+        try {
+            final List<EvictionCandidate> candidates = new ArrayList<>();
+            blocks.visitAll(new GeohashTree.Visitor<BlockCacheItem>() {
+                public void visit(long key, BlockCacheItem item) {
+                    if (!item.isDirty) {
+                        candidates.add(new EvictionCandidate(key, item));
+                    }
+                }
+            });
+            Collections.sort(candidates);
+
+            for (EvictionCandidate candidate : candidates) {
+                if (!isOverLimits() || isWritingSnapshot) {
+                    break;
+                }
+                synchronized (blockLocks.forKey(candidate.key)) {
+                    if (!candidate.item.isDirty && blocks.remove(candidate.key, candidate.item)) {
+                        unindexEntries(candidate.item);
+                        estimatedBytes.addAndGet(-candidate.item.estimatedBytes);
+                        evictionCount.incrementAndGet();
+                        viewChanges.add(candidate.key);
+                    }
+                }
+            }
+            needsCompaction = isOverLimits() && !isWritingSnapshot;
+        } finally {
+            cacheLock.readLock().unlock();
+            evictionLock.unlock();
+        }
+        publishView();
+
+        File cacheDir = this.cacheDir;
+        if (needsCompaction && cacheDir != null) {
+            scheduleCompaction(cacheDir);
+        }
+    }
+
+    // Keeps the access time at creation, so sorting is stable while blocks are accessed
+    private static class EvictionCandidate implements Comparable<EvictionCandidate> {
+        final long key;
+        final BlockCacheItem item;
+        final long lastAccess;
+
+        EvictionCandidate(long key, BlockCacheItem item) {
+            this.key = key;
+            this.item = item;
+            this.lastAccess = item.lastAccess;
+        }
+
+        @Override
+        public int compareTo(EvictionCandidate other) {
+            return lastAccess < other.lastAccess ? -1 : (lastAccess == other.lastAccess ? 0 : 1);
+        }
+    }
+
+    private static long estimateBytes(BlockCacheItem item) {
+        long bytes = ESTIMATED_BLOCK_OVERHEAD;
+        for (CompactEntry entry : item.entries.values()) {
+            bytes += ESTIMATED_ENTRY_OVERHEAD
+                    + 2 * (length(entry.getDescription()) + length(entry.getContact()) + length(entry.getAddress()));
+        }
+        return bytes;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
     }
 
     public void clearCache(Context context) {
-        cacheMap = new ConcurrentHashMap<>();
-        saveToAppCache(context);
+        fileLock.lock();
+        cacheLock.writeLock().lock();
+        try {
+            blocks = new GeohashTree<>();
+            entryIndex.clear();
+            estimatedBytes.set(0);
+            closeQuietly(snapshot);
+            snapshot = null;
+            clearSyncCursors();
+            File cursorsFile = new File(context.getCacheDir(), CURSORS_FILENAME);
+            if (cursorsFile.exists() && !cursorsFile.delete()) {
+                App.log(getClass(), "Error: Cannot delete sync cursors");
+            }
+            rebuildView();
+            compact(context.getCacheDir());
+        } finally {
+            cacheLock.writeLock().unlock();
+            fileLock.unlock();
+        }
     }
 
 
     //######################
     //##  Getter / Setter
     //######################
-    public ConcurrentHashMap<String, BlockCacheItem> getCacheMap() {
-        return cacheMap;
+    public GeohashTree<BlockCacheItem> getBlocks() {
+        return blocks;
+    }
+
+    public void setBlocks(GeohashTree<BlockCacheItem> blocks) {
+        cacheLock.writeLock().lock();
+        try {
+            this.blocks = blocks;
+            entryIndex.clear();
+            for (BlockCacheItem item : blocks.values()) {
+                indexEntries(item);
+            }
+            rebuildView();
+        } finally {
+            cacheLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Set the bounds of the in-memory cache
+     *
+     * @param maxBlocks max. amount of blocks kept in memory
+     * @param maxBytes  max. estimated heap usage of the blocks kept in memory
+     */
+    public void setLimits(int maxBlocks, long maxBytes) {
+        this.maxBlocks = maxBlocks;
+        this.maxBytes = maxBytes;
+        evictIfNeeded();
+    }
+
+    public int getMaxBlocks() {
+        return maxBlocks;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
     }
 
-    public void setCacheMap(ConcurrentHashMap<String, BlockCacheItem> cacheMap) {
-        this.cacheMap = cacheMap;
+    public long getEvictionCount() {
+        return evictionCount.get();
     }
 
     public static BlockCache getInstance() {
@@ -0,0 +1,235 @@
+package io.github.froodyapp.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import io.github.froodyapp.model.BlockInfoPlus;
+import io.github.froodyapp.model.CompactEntry;
+
+/**
+ * Append-only journal of BlockCache mutations, replayed on top of the last BlockCacheSnapshot
+ * Records are buffered in memory and appended to file on flush, so a save only costs the delta.
+ * Layout: MAGIC, VERSION, then records of type byte, payload length and payload.
+ */
+public class BlockCacheJournal {
+    //########################
+    //## Statics
+    //########################
+    public static final int MAGIC = 0x46424a31; // "FBJ1"
+    public static final int VERSION = 1;
+
+    private static final int RECORD_BLOCK_INFO = 1;
+    private static final int RECORD_PUT_ENTRY = 2;
+    private static final int RECORD_REMOVE_ENTRY = 3;
+
+    //########################
+    //## Member
+    //########################
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(4096);
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(512);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+
+    //########################
+    //## Methods
+    //########################
+
+    /**
+     * Log the (new) block info of a block
+     */
+    public synchronized void logBlockInfo(BlockInfoPlus info) {
+        try {
+            record.reset();
+            BlockCacheSnapshot.writeGeohash(recordOut, info.getGeohash());
+            BlockCacheSnapshot.writeBlockInfo(recordOut, info);
+            appendRecord(RECORD_BLOCK_INFO);
+        } catch (IOException ignored) {
+            // Writing to memory
+        }
+    }
+
+    /**
+     * Log an added or replaced entry
+     */
+    public synchronized void logPutEntry(String blockGeohash, CompactEntry entry) {
+        try {
+            record.reset();
+            BlockCacheSnapshot.writeGeohash(recordOut, blockGeohash);
+            BlockCacheSnapshot.writeEntry(recordOut, entry, null);
+            appendRecord(RECORD_PUT_ENTRY);
+        } catch (IOException ignored) {
+            // Writing to memory
+        }
+    }
+
+    /**
+     * Log a removed entry
+     */
+    public synchronized void logRemoveEntry(String blockGeohash, long entryId) {
+        try {
+            record.reset();
+            BlockCacheSnapshot.writeGeohash(recordOut, blockGeohash);
+            recordOut.writeLong(entryId);
+            appendRecord(RECORD_REMOVE_ENTRY);
+        } catch (IOException ignored) {
+            // Writing to memory
+        }
+    }
+
+    private void appendRecord(int type) throws IOException {
+        recordOut.flush();
+        DataOutputStream out = new DataOutputStream(pending);
+        out.writeByte(type);
+        out.writeInt(record.size());
+        record.writeTo(out);
+    }
+
+    public synchronized boolean hasPendingRecords() {
+        return pending.size() > 0;
+    }
+
+    /**
+     * Append all pending records to the journal file
+     * Records are taken over first and written without holding the journal's lock, so logging goes on meanwhile.
+     * Must not be called concurrently for the same file
+     *
+     * @param file the journal file
+     */
+    public void flush(File file) throws IOException {
+        byte[] records;
+        synchronized (this) {
+            if (pending.size() == 0) {
+                return;
+            }
+            records = pending.toByteArray();
+            pending.reset();
+        }
+        boolean writeHeader = !file.exists() || file.length() == 0;
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(file, true));
+            if (writeHeader) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            out.write(records);
+            out.flush();
+        } catch (IOException e) {
+            // Keep the records for the next flush, in front of the ones logged meanwhile
+            synchronized (this) {
+                byte[] logged = pending.toByteArray();
+                pending.reset();
+                pending.write(records, 0, records.length);
+                pending.write(logged, 0, logged.length);
+            }
+            throw e;
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Delete the journal file, but keep the pending records, e.g. after compaction into a snapshot
+     * which only contains the records flushed before
+     *
+     * @param file the journal file
+     */
+    public synchronized void deleteFile(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot delete " + file);
+        }
+    }
+
+    /**
+     * Apply all records of the journal file to the blocks map
+     * A record cut off by a crash while appending ends the replay
+     *
+     * @param file   the journal file
+     * @param blocks blocks in memory, keyed by geohash
+     * @param base   snapshot to page in blocks missing in memory from, or null
+     * @return amount of applied records
+     */
+    public static int replay(File file, Map<String, BlockCache.BlockCacheItem> blocks, BlockCacheSnapshot.MappedReader base) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        int applied = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a BlockCache journal");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported BlockCache journal version " + version);
+            }
+
+            while (true) {
+                byte[] payload;
+                int type;
+                try {
+                    type = in.readUnsignedByte();
+                    payload = new byte[in.readInt()];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                applyRecord(type, new DataInputStream(new ByteArrayInputStream(payload)), blocks, base);
+                applied++;
+            }
+        } finally {
+            in.close();
+        }
+        return applied;
+    }
+
+    private static void applyRecord(int type, DataInputStream in, Map<String, BlockCache.BlockCacheItem> blocks, BlockCacheSnapshot.MappedReader base) throws IOException {
+        String blockGeohash = BlockCacheSnapshot.readGeohash(in);
+        BlockCache.BlockCacheItem item = blocks.get(blockGeohash);
+        if (item == null && base != null) {
+            item = base.readBlock(blockGeohash);
+            if (item != null) {
+                blocks.put(blockGeohash, item);
+            }
+        }
+        switch (type) {
+            case RECORD_BLOCK_INFO: {
+                if (item == null) {
+                    item = new BlockCache.BlockCacheItem();
+                    blocks.put(blockGeohash, item);
+                }
+                item.blockInfo = BlockCacheSnapshot.readBlockInfo(in, blockGeohash);
+                break;
+            }
+            case RECORD_PUT_ENTRY: {
+                if (item == null) {
+                    item = new BlockCache.BlockCacheItem();
+                    item.blockInfo = new BlockInfoPlus(blockGeohash);
+                    blocks.put(blockGeohash, item);
+                }
+                CompactEntry entry = BlockCacheSnapshot.readEntry(in, null);
+                item.entries.put(entry.getEntryId(), entry);
+                break;
+            }
+            case RECORD_REMOVE_ENTRY: {
+                if (item != null) {
+                    item.entries.remove(in.readLong());
+                }
+                break;
+            }
+            default: {
+                throw new IOException("Unknown BlockCache journal record " + type);
+            }
+        }
+    }
+}
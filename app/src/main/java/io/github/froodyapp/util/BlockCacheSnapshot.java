@@ -0,0 +1,567 @@
+package io.github.froodyapp.util;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.froodyapp.api.model_.BlockInfo;
+import io.github.froodyapp.model.BlockInfoPlus;
+import io.github.froodyapp.model.CompactEntry;
+
+/**
+ * Compact binary file format of the BlockCache
+ * Layout: MAGIC, VERSION, entry type table, block count, block records sorted by geohash, block index,
+ * entry index, entry index size.
+ * The block index holds one fixed size entry (packed geohash, precision, offset, length) per block, in the
+ * same order, so blocks can be looked up by binary search over a memory-mapped file. The entry index maps
+ * entry ids (sorted) to the index of their block.
+ * Geohashes are stored as packed bits, dates as epoch millis and entry types as index into the type table.
+ */
+public class BlockCacheSnapshot {
+    //########################
+    //## Statics
+    //########################
+    public static final int MAGIC = 0x46424331; // "FBC1"
+    public static final int VERSION = 3;
+    public static final int MAX_GEOHASH_PRECISION = 12;
+
+    private static final long NULL_LONG = CompactEntry.NULL_LONG;
+    private static final int INDEX_ENTRY_SIZE = 17;
+    private static final int ENTRY_INDEX_ENTRY_SIZE = 12;
+
+    private static final int FLAG_WAS_DELETED = 1;
+    private static final int FLAG_DESCRIPTION = 1 << 1;
+    private static final int FLAG_CONTACT = 1 << 2;
+    private static final int FLAG_ADDRESS = 1 << 3;
+    private static final int FLAG_HAS_PREVIOUS_INFO = 1 << 4;
+    private static final int FLAG_BLOCK_MODIFIED = 1 << 5;
+
+    /**
+     * Pack a base32 geohash into a long: The bits of GeohashCodec, left aligned at bit 62 instead of right aligned
+     * Keeps the value positive, so packed geohashes of any precision sort like their strings, which the
+     * binary search and the prefix ranges of the index rely on. Right aligned bits only sort within one precision
+     *
+     * @param geohash Geohash string, max. MAX_GEOHASH_PRECISION chars
+     * @return packed bits
+     */
+    public static long packGeohash(String geohash) {
+        return geohash.isEmpty() ? 0 : packBits(GeohashCodec.toBits(geohash), geohash.length());
+    }
+
+    /**
+     * Unpack a geohash packed by packGeohash
+     *
+     * @param bits      packed bits
+     * @param precision amount of chars
+     * @return geohash string
+     */
+    public static String unpackGeohash(long bits, int precision) {
+        return precision == 0 ? "" : GeohashCodec.toString(unpackBits(bits, precision), precision);
+    }
+
+    // Left align GeohashCodec bits
+    static long packBits(long bits, int precision) {
+        return bits << (63 - 5 * precision);
+    }
+
+    // Right align packed bits, as GeohashCodec uses them
+    static long unpackBits(long packed, int precision) {
+        return packed >>> (63 - 5 * precision);
+    }
+
+    /**
+     * Mask of the bits below a geohash prefix of given length
+     */
+    public static long prefixMask(int precision) {
+        return precision == 0 ? Long.MAX_VALUE : (1L << (63 - 5 * precision)) - 1;
+    }
+
+    /**
+     * Write all blocks to file, sorted by geohash
+     * Writes to a temporary file first, so a crash won't leave a broken snapshot behind
+     *
+     * @param file   target file
+     * @param blocks the blocks to write, keyed by geohash
+     * @param base   previous snapshot, or null. Its blocks missing in blocks are copied over as they are
+     */
+    public static void write(File file, Map<String, BlockCache.BlockCacheItem> blocks, MappedReader base) throws IOException {
+        // Intern entry types, keeping the indices of the base snapshot valid
+        List<Integer> typeTable = new ArrayList<>();
+        Map<Integer, Integer> typeIndex = new HashMap<>();
+        if (base != null) {
+            for (int type : base.typeTable) {
+                typeIndex.put(type, typeTable.size());
+                typeTable.add(type);
+            }
+        }
+        List<IndexEntry> index = new ArrayList<>();
+        for (Map.Entry<String, BlockCache.BlockCacheItem> block : blocks.entrySet()) {
+            index.add(new IndexEntry(block.getKey(), block.getValue(), -1));
+            for (CompactEntry entry : block.getValue().entries.values()) {
+                int type = entry.getEntryType();
+                if (type != CompactEntry.NULL_INT && !typeIndex.containsKey(type)) {
+                    typeIndex.put(type, typeTable.size());
+                    typeTable.add(type);
+                }
+            }
+        }
+        if (base != null) {
+            for (int i = 0; i < base.getBlockCount(); i++) {
+                String geohash = base.getBlockGeohash(i);
+                if (!blocks.containsKey(geohash)) {
+                    index.add(new IndexEntry(geohash, null, i));
+                }
+            }
+        }
+        Collections.sort(index);
+
+        // Entry ids of all written blocks, ids of copied blocks are taken from the entry index of base
+        List<long[]> entryIndex = new ArrayList<>();
+        int[] baseToNew = new int[base != null ? base.getBlockCount() : 0];
+        for (int i = 0; i < index.size(); i++) {
+            IndexEntry entry = index.get(i);
+            if (entry.item != null) {
+                for (Long entryId : entry.item.entries.keySet()) {
+                    entryIndex.add(new long[]{entryId, i});
+                }
+            } else {
+                baseToNew[entry.baseIndex] = i + 1;
+            }
+        }
+        if (base != null) {
+            for (int i = 0; i < base.getEntryIndexSize(); i++) {
+                int newBlock = baseToNew[base.getEntryIndexBlock(i)] - 1;
+                if (newBlock >= 0) {
+                    entryIndex.add(new long[]{base.getEntryIndexId(i), newBlock});
+                }
+            }
+        }
+        Collections.sort(entryIndex, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+            }
+        });
+
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeShort(typeTable.size());
+            for (Integer type : typeTable) {
+                out.writeInt(type);
+            }
+            out.writeInt(index.size());
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(4096);
+            DataOutputStream recordOut = new DataOutputStream(record);
+            for (IndexEntry entry : index) {
+                entry.offset = out.size();
+                if (entry.item != null) {
+                    record.reset();
+                    writeBlock(recordOut, entry.item, typeIndex);
+                    recordOut.flush();
+                    record.writeTo(out);
+                } else {
+                    base.copyBlockTo(entry.baseIndex, out);
+                }
+                entry.length = out.size() - entry.offset;
+            }
+
+            for (IndexEntry entry : index) {
+                out.writeLong(entry.bits);
+                out.writeByte(entry.precision);
+                out.writeInt(entry.offset);
+                out.writeInt(entry.length);
+            }
+            for (long[] entry : entryIndex) {
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+            }
+            out.writeInt(entryIndex.size());
+            out.flush();
+        } finally {
+            out.close();
+        }
+
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+    }
+
+    // A block to be written, ordered by geohash
+    private static class IndexEntry implements Comparable<IndexEntry> {
+        final long bits;
+        final int precision;
+        final BlockCache.BlockCacheItem item;
+        final int baseIndex;
+        int offset;
+        int length;
+
+        IndexEntry(String geohash, BlockCache.BlockCacheItem item, int baseIndex) {
+            this.bits = packGeohash(geohash);
+            this.precision = geohash.length();
+            this.item = item;
+            this.baseIndex = baseIndex;
+        }
+
+        @Override
+        public int compareTo(IndexEntry other) {
+            return compareKeys(bits, precision, other.bits, other.precision);
+        }
+    }
+
+    private static int compareKeys(long bits, int precision, long otherBits, int otherPrecision) {
+        if (bits != otherBits) {
+            return bits < otherBits ? -1 : 1;
+        }
+        return precision - otherPrecision;
+    }
+
+    private static void writeBlock(DataOutputStream out, BlockCache.BlockCacheItem item, Map<Integer, Integer> typeIndex) throws IOException {
+        writeBlockInfo(out, item.blockInfo);
+
+        List<CompactEntry> entries = new ArrayList<>(item.entries.values());
+        out.writeInt(entries.size());
+        for (CompactEntry entry : entries) {
+            writeEntry(out, entry, typeIndex);
+        }
+    }
+
+    static void writeGeohash(DataOutputStream out, String geohash) throws IOException {
+        geohash = geohash == null ? "" : geohash;
+        out.writeLong(packGeohash(geohash));
+        out.writeByte(geohash.length());
+    }
+
+    static void writeBlockInfo(DataOutputStream out, BlockInfoPlus info) throws IOException {
+        int flags = 0;
+        flags |= Boolean.TRUE.equals(info.getHasBlockBeenModified()) ? FLAG_BLOCK_MODIFIED : 0;
+        flags |= info.hasPreviousBlockInfo() ? FLAG_HAS_PREVIOUS_INFO : 0;
+        out.writeByte(flags);
+        writeDate(out, info.getModificationDate());
+        if (info.hasPreviousBlockInfo()) {
+            writeDate(out, info.getPreviousModificationDate());
+        }
+    }
+
+    /**
+     * Write a single entry
+     *
+     * @param typeIndex interned entry types, or null to write the plain type
+     */
+    static void writeEntry(DataOutputStream out, CompactEntry entry, Map<Integer, Integer> typeIndex) throws IOException {
+        out.writeLong(entry.getEntryId());
+        out.writeLong(entry.getUserId());
+        writeGeohash(out, entry.getGeohash());
+        out.writeLong(entry.getCreationMillis());
+        out.writeLong(entry.getModificationMillis());
+        int type = entry.getEntryType();
+        if (typeIndex != null) {
+            out.writeShort(type == CompactEntry.NULL_INT ? 0xFFFF : typeIndex.get(type));
+        } else {
+            out.writeInt(type);
+        }
+        out.writeInt(entry.getCertificationType());
+        out.writeInt(entry.getDistributionType());
+        out.writeInt(entry.getManagementCode());
+
+        int flags = 0;
+        flags |= entry.wasDeleted() ? FLAG_WAS_DELETED : 0;
+        flags |= entry.getDescription() != null ? FLAG_DESCRIPTION : 0;
+        flags |= entry.getContact() != null ? FLAG_CONTACT : 0;
+        flags |= entry.getAddress() != null ? FLAG_ADDRESS : 0;
+        out.writeByte(flags);
+        if ((flags & FLAG_DESCRIPTION) != 0) {
+            writeString(out, entry.getDescription());
+        }
+        if ((flags & FLAG_CONTACT) != 0) {
+            writeString(out, entry.getContact());
+        }
+        if ((flags & FLAG_ADDRESS) != 0) {
+            writeString(out, entry.getAddress());
+        }
+    }
+
+    private static void writeDate(DataOutputStream out, DateTime date) throws IOException {
+        out.writeLong(date == null ? NULL_LONG : date.getMillis());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    //########################
+    //## Reader
+    //########################
+
+    /**
+     * Reader for memory-mapped snapshot files. Nothing is decoded on open:
+     * Blocks are found by binary search over the index and decoded on demand.
+     * Safe for concurrent use, every read works on its own view of the mapped buffer.
+     */
+    public static class MappedReader implements Closeable {
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+        private final int[] typeTable;
+        private final int blockCount;
+        private final int indexOffset;
+        private final int entryIndexSize;
+        private final int entryIndexOffset;
+
+        public MappedReader(File file) throws IOException {
+            raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt(0) != MAGIC) {
+                    throw new IOException("Not a BlockCache snapshot");
+                }
+                int version = buffer.getInt(4);
+                if (version != VERSION) {
+                    throw new IOException("Unsupported BlockCache snapshot version " + version);
+                }
+                typeTable = new int[buffer.getShort(8) & 0xFFFF];
+                for (int i = 0; i < typeTable.length; i++) {
+                    typeTable[i] = buffer.getInt(10 + 4 * i);
+                }
+                blockCount = buffer.getInt(10 + 4 * typeTable.length);
+                entryIndexSize = buffer.getInt(buffer.capacity() - 4);
+                entryIndexOffset = buffer.capacity() - 4 - entryIndexSize * ENTRY_INDEX_ENTRY_SIZE;
+                indexOffset = entryIndexOffset - blockCount * INDEX_ENTRY_SIZE;
+                if (blockCount < 0 || entryIndexSize < 0 || indexOffset < 14 + 4 * typeTable.length) {
+                    throw new IOException("Broken BlockCache snapshot");
+                }
+            } catch (IOException e) {
+                raf.close();
+                throw e;
+            }
+        }
+
+        public int getBlockCount() {
+            return blockCount;
+        }
+
+        public String getBlockGeohash(int i) {
+            int pos = indexOffset + i * INDEX_ENTRY_SIZE;
+            return unpackGeohash(buffer.getLong(pos), buffer.get(pos + 8));
+        }
+
+        /**
+         * Index of the block with given geohash
+         *
+         * @return index or -1 if the snapshot doesn't contain the block
+         */
+        public int indexOf(String geohash) {
+            long bits = packGeohash(geohash);
+            int i = lowerBound(bits, geohash.length());
+            if (i < blockCount) {
+                int pos = indexOffset + i * INDEX_ENTRY_SIZE;
+                if (buffer.getLong(pos) == bits && buffer.get(pos + 8) == geohash.length()) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Geohash key (see GeohashCodec.toKey) of a block, without decoding its geohash string
+        public long getBlockKey(int i) {
+            int pos = indexOffset + i * INDEX_ENTRY_SIZE;
+            int precision = buffer.get(pos + 8);
+            return GeohashCodec.toKey(unpackBits(buffer.getLong(pos), precision), precision);
+        }
+
+        /**
+         * Geohash keys (see GeohashCodec.toKey) of all blocks starting with the geohash of prefixKey,
+         * e.g. all 6 char blocks within a 5 char block
+         */
+        public List<Long> getBlockKeysWithPrefix(long prefixKey) {
+            List<Long> keys = new ArrayList<>();
+            int precision = GeohashCodec.keyPrecision(prefixKey);
+            long bits = packBits(GeohashCodec.keyBits(prefixKey), precision);
+            long last = bits | prefixMask(precision);
+            for (int i = lowerBound(bits, precision); i < blockCount; i++) {
+                int pos = indexOffset + i * INDEX_ENTRY_SIZE;
+                if (buffer.getLong(pos) > last) {
+                    break;
+                }
+                keys.add(getBlockKey(i));
+            }
+            return keys;
+        }
+
+        /**
+         * Geohash of the block containing the entry
+         *
+         * @return geohash or null if the snapshot doesn't contain the entry
+         */
+        public String findBlockOfEntry(long entryId) {
+            int lo = 0;
+            int hi = entryIndexSize - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                long id = getEntryIndexId(mid);
+                if (id < entryId) {
+                    lo = mid + 1;
+                } else if (id > entryId) {
+                    hi = mid - 1;
+                } else {
+                    return getBlockGeohash(getEntryIndexBlock(mid));
+                }
+            }
+            return null;
+        }
+
+        private int getEntryIndexSize() {
+            return entryIndexSize;
+        }
+
+        private long getEntryIndexId(int i) {
+            return buffer.getLong(entryIndexOffset + i * ENTRY_INDEX_ENTRY_SIZE);
+        }
+
+        private int getEntryIndexBlock(int i) {
+            return buffer.getInt(entryIndexOffset + i * ENTRY_INDEX_ENTRY_SIZE + 8);
+        }
+
+        // First index not smaller than the given key
+        private int lowerBound(long bits, int precision) {
+            int lo = 0;
+            int hi = blockCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int pos = indexOffset + mid * INDEX_ENTRY_SIZE;
+                if (compareKeys(buffer.getLong(pos), buffer.get(pos + 8), bits, precision) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Decode the block with given geohash
+         *
+         * @return the block or null if the snapshot doesn't contain it
+         */
+        public BlockCache.BlockCacheItem readBlock(String geohash) throws IOException {
+            int i = indexOf(geohash);
+            if (i < 0) {
+                return null;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(getBlockBytes(i)));
+            BlockCache.BlockCacheItem item = new BlockCache.BlockCacheItem();
+            item.blockInfo = readBlockInfo(in, geohash);
+            int entryCount = in.readInt();
+            for (int e = 0; e < entryCount; e++) {
+                CompactEntry entry = readEntry(in, typeTable);
+                item.entries.put(entry.getEntryId(), entry);
+            }
+            return item;
+        }
+
+        // Copy the encoded block, only valid for snapshots sharing the type table
+        private void copyBlockTo(int i, DataOutputStream out) throws IOException {
+            out.write(getBlockBytes(i));
+        }
+
+        private byte[] getBlockBytes(int i) {
+            int pos = indexOffset + i * INDEX_ENTRY_SIZE;
+            ByteBuffer view = buffer.duplicate();
+            view.position(buffer.getInt(pos + 9));
+            byte[] bytes = new byte[buffer.getInt(pos + 13)];
+            view.get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+
+    static String readGeohash(DataInputStream in) throws IOException {
+        long bits = in.readLong();
+        return unpackGeohash(bits, in.readUnsignedByte());
+    }
+
+    static BlockInfoPlus readBlockInfo(DataInputStream in, String geohash) throws IOException {
+        int flags = in.readUnsignedByte();
+        BlockInfo info = new BlockInfo()
+                .geohash(geohash)
+                .modificationDate(readDate(in))
+                .hasBlockBeenModified((flags & FLAG_BLOCK_MODIFIED) != 0);
+        if ((flags & FLAG_HAS_PREVIOUS_INFO) != 0) {
+            BlockInfo previous = new BlockInfo().geohash(geohash).modificationDate(readDate(in));
+            BlockInfoPlus infoPlus = new BlockInfoPlus(previous);
+            infoPlus.setNewerBlockInfo(info);
+            return infoPlus;
+        }
+        return new BlockInfoPlus(info);
+    }
+
+    /**
+     * Read a single entry
+     *
+     * @param typeTable interned entry types, or null if the plain type was written
+     */
+    static CompactEntry readEntry(DataInputStream in, int[] typeTable) throws IOException {
+        long entryId = in.readLong();
+        long userId = in.readLong();
+        String geohash = readGeohash(in);
+        long creationMillis = in.readLong();
+        long modificationMillis = in.readLong();
+        int entryType;
+        if (typeTable != null) {
+            int typeIdx = in.readUnsignedShort();
+            entryType = typeIdx == 0xFFFF ? CompactEntry.NULL_INT : typeTable[typeIdx];
+        } else {
+            entryType = in.readInt();
+        }
+        int certificationType = in.readInt();
+        int distributionType = in.readInt();
+        int managementCode = in.readInt();
+
+        int flags = in.readUnsignedByte();
+        CompactEntry entry = new CompactEntry(entryId, userId, geohash, creationMillis, modificationMillis,
+                entryType, certificationType, distributionType, managementCode, (flags & FLAG_WAS_DELETED) != 0);
+        entry.setTexts((flags & FLAG_DESCRIPTION) != 0 ? readString(in) : null,
+                (flags & FLAG_CONTACT) != 0 ? readString(in) : null,
+                (flags & FLAG_ADDRESS) != 0 ? readString(in) : null);
+        return entry;
+    }
+
+    private static DateTime readDate(DataInputStream in) throws IOException {
+        long millis = in.readLong();
+        return millis == NULL_LONG ? null : new DateTime(millis, DateTimeZone.UTC);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.froodyapp.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import io.github.froodyapp.model.CompactEntry;
+
+/**
+ * Immutable version of the entries of the BlockCache, e.g. for drawing the map on the UI thread
+ * The BlockCache publishes a new version after each batch of changes, with every block either completely
+ * before or completely after a merge. Reading a view needs no locking and never sees later changes.
+ * Versions share all unchanged blocks, entries are kept as CompactEntry arrays never changed once published
+ */
+public final class BlockCacheView {
+    //########################
+    //## Statics
+    //########################
+    public static final BlockCacheView EMPTY = new BlockCacheView(0, PersistentGeohashTree.<CompactEntry[]>empty());
+
+    //########################
+    //## Member
+    //########################
+    private final long version;
+    private final PersistentGeohashTree<CompactEntry[]> blocks;
+
+    //########################
+    //## Methods
+    //########################
+    private BlockCacheView(long version, PersistentGeohashTree<CompactEntry[]> blocks) {
+        this.version = version;
+        this.blocks = blocks;
+    }
+
+    /**
+     * The next version, with the entries of the given blocks replaced. A null array removes the block
+     */
+    BlockCacheView withBlocks(Map<Long, CompactEntry[]> changes) {
+        PersistentGeohashTree<CompactEntry[]> next = blocks;
+        for (Map.Entry<Long, CompactEntry[]> change : changes.entrySet()) {
+            next = next.with(change.getKey(), change.getValue());
+        }
+        return new BlockCacheView(version + 1, next);
+    }
+
+    /**
+     * The next version, containing the given blocks only
+     */
+    BlockCacheView withOnlyBlocks(Map<Long, CompactEntry[]> blocks) {
+        return new BlockCacheView(version, PersistentGeohashTree.<CompactEntry[]>empty()).withBlocks(blocks);
+    }
+
+    // Increases with every version published, to tell if anything changed since a view was read
+    public long getVersion() {
+        return version;
+    }
+
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    public boolean containsBlock(long blockKey) {
+        return blocks.containsKey(blockKey);
+    }
+
+    public List<CompactEntry> getBlockEntries(long blockKey) {
+        CompactEntry[] entries = blocks.get(blockKey);
+        return entries == null ? Collections.<CompactEntry>emptyList() : Collections.unmodifiableList(Arrays.asList(entries));
+    }
+
+    public CompactEntry getEntry(long blockKey, long entryId) {
+        CompactEntry[] entries = blocks.get(blockKey);
+        if (entries != null) {
+            for (CompactEntry entry : entries) {
+                if (entry.getEntryId() == entryId) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the entries of the blocks within the given geohash cells, that are located within the bounding box
+     *
+     * @param cellKeys Keys of geohash cells of block precision or shorter (see GeohashCodec.toKey)
+     * @return entries within the bounds
+     */
+    public List<CompactEntry> getEntriesWithin(Collection<Long> cellKeys, final double north, final double east, final double south, final double west) {
+        final List<CompactEntry> result = new ArrayList<>();
+        GeohashTree.Visitor<CompactEntry[]> visitor = new GeohashTree.Visitor<CompactEntry[]>() {
+            public void visit(long key, CompactEntry[] entries) {
+                for (CompactEntry entry : entries) {
+                    if (entry.hasPosition() && entry.isWithin(north, east, south, west)) {
+                        result.add(entry);
+                    }
+                }
+            }
+        };
+        for (long cellKey : cellKeys) {
+            blocks.visitPrefix(cellKey, visitor);
+        }
+        return result;
+    }
+
+    public List<CompactEntry> getAllEntries() {
+        final List<CompactEntry> result = new ArrayList<>();
+        blocks.visitAll(new GeohashTree.Visitor<CompactEntry[]>() {
+            public void visit(long key, CompactEntry[] entries) {
+                Collections.addAll(result, entries);
+            }
+        });
+        return result;
+    }
+}
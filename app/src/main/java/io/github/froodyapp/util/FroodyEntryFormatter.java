@@ -81,19 +81,21 @@ public class FroodyEntryFormatter extends FroodyEntryPlus {
 
     // Get froody type of Froody Entry
     public String getEntryTypeName() {
-        String[] entryTypeNames = context.getResources().getStringArray(R.array.entry_type__names);
-        return entryTypeNames[getEntryTypeResArrayIndex()];
+        return getEntryTypeName(context, entry.getEntryType() == null ? ENTRY_TYPE_UNKNOWN : entry.getEntryType());
     }
 
+    // Get name of an entry type, e.g. of a CompactEntry without a formatter instance
+    public static String getEntryTypeName(Context context, int entryType) {
+        String[] entryTypeNames = context.getResources().getStringArray(R.array.entry_type__names);
+        return entryTypeNames[getEntryTypeResArrayIndex(context, entryType)];
+    }
 
-    private int getEntryTypeResArrayIndex() {
+    private static int getEntryTypeResArrayIndex(Context context, int entryType) {
         if (COUNT_ENTRY_TYPE_LOCAL < 0) {
             String[] resources = context.getResources().getStringArray(R.array.entry_type__names);
             COUNT_ENTRY_TYPE_LOCAL = resources.length;
         }
-        Integer entryType = entry.getEntryType();
-        return entryType == null || entryType < 0 || entryType >= COUNT_ENTRY_TYPE_LOCAL
-                ? ENTRY_TYPE_UNKNOWN : entryType;
+        return entryType < 0 || entryType >= COUNT_ENTRY_TYPE_LOCAL ? ENTRY_TYPE_UNKNOWN : entryType;
     }
 
     //Get distribution type of entry
@@ -136,8 +138,13 @@ public class FroodyEntryFormatter extends FroodyEntryPlus {
     }
 
     public Drawable getEntryTypeImage() {
+        return getEntryTypeImage(context, entry.getEntryType() == null ? ENTRY_TYPE_UNKNOWN : entry.getEntryType());
+    }
+
+    // Get image of an entry type, e.g. of a CompactEntry without a formatter instance
+    public static Drawable getEntryTypeImage(Context context, int entryType) {
         TypedArray imgs = context.getResources().obtainTypedArray(R.array.entry_type__images);
-        int resId = imgs.getResourceId(getEntryTypeResArrayIndex(), R.drawable.entry_type__special__unknown);
+        int resId = imgs.getResourceId(getEntryTypeResArrayIndex(context, entryType), R.drawable.entry_type__special__unknown);
         imgs.recycle();
 
         return getBitmapFromDrawable(context, resId);
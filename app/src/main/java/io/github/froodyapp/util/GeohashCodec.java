@@ -0,0 +1,251 @@
+package io.github.froodyapp.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Geohash encoding and decoding on the bits of a geohash, without GeoHash and WGS84Point objects
+ * Bits are right aligned, 5 per character, the first character in the highest bits. Even bits (counted from
+ * the highest one) split the longitude, odd bits the latitude. Compatible with ch.hsr.geohash.GeoHash
+ * Plain java without android dependencies, so it can be benchmarked on the JVM (see swagger/src/jmh)
+ */
+public final class GeohashCodec {
+    //########################
+    //## Statics
+    //########################
+    public static final int MAX_PRECISION = 12;
+    private static final int BITS_PER_CHAR = 5;
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final byte[] BASE32_INDEX = new byte[128];
+    private static final int CENTER_CACHE_SIZE = 512;
+
+    static {
+        for (int i = 0; i < BASE32_INDEX.length; i++) {
+            BASE32_INDEX[i] = -1;
+        }
+        for (int i = 0; i < BASE32.length; i++) {
+            BASE32_INDEX[BASE32[i]] = (byte) i;
+        }
+    }
+
+    // Decoded centres of recently used geohashes, e.g. of the blocks around the viewport
+    private static final Map<String, double[]> centerCache = new LinkedHashMap<String, double[]>(CENTER_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, double[]> eldest) {
+            return size() > CENTER_CACHE_SIZE;
+        }
+    };
+
+    private GeohashCodec() {
+    }
+
+    //########################
+    //## Encode
+    //########################
+
+    /**
+     * Bits of the geohash cell containing a position
+     *
+     * @param precision amount of characters, 1 to MAX_PRECISION
+     */
+    public static long encodeBits(double latitude, double longitude, int precision) {
+        checkPrecision(precision);
+        double latMin = -90, latMax = 90;
+        double lngMin = -180, lngMax = 180;
+        long bits = 0;
+        int bitCount = precision * BITS_PER_CHAR;
+        for (int i = 0; i < bitCount; i++) {
+            bits <<= 1;
+            if ((i & 1) == 0) {
+                double mid = (lngMin + lngMax) / 2;
+                if (longitude >= mid) {
+                    bits |= 1;
+                    lngMin = mid;
+                } else {
+                    lngMax = mid;
+                }
+            } else {
+                double mid = (latMin + latMax) / 2;
+                if (latitude >= mid) {
+                    bits |= 1;
+                    latMin = mid;
+                } else {
+                    latMax = mid;
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Write the geohash of a position into target, starting at offset
+     *
+     * @return the offset behind the written characters
+     */
+    public static int encode(double latitude, double longitude, int precision, char[] target, int offset) {
+        return toChars(encodeBits(latitude, longitude, precision), precision, target, offset);
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        char[] chars = new char[precision];
+        encode(latitude, longitude, precision, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Write the characters of geohash bits into target, starting at offset
+     *
+     * @return the offset behind the written characters
+     */
+    public static int toChars(long bits, int precision, char[] target, int offset) {
+        checkPrecision(precision);
+        for (int i = precision - 1; i >= 0; i--) {
+            target[offset + i] = BASE32[(int) (bits & 31)];
+            bits >>>= BITS_PER_CHAR;
+        }
+        return offset + precision;
+    }
+
+    public static String toString(long bits, int precision) {
+        char[] chars = new char[precision];
+        toChars(bits, precision, chars, 0);
+        return new String(chars);
+    }
+
+    //########################
+    //## Decode
+    //########################
+
+    /**
+     * True if geohash has 1 to MAX_PRECISION chars, all of them geohash characters
+     */
+    public static boolean isValid(CharSequence geohash) {
+        if (geohash == null || geohash.length() < 1 || geohash.length() > MAX_PRECISION) {
+            return false;
+        }
+        for (int i = 0; i < geohash.length(); i++) {
+            char c = geohash.charAt(i);
+            if (c >= BASE32_INDEX.length || BASE32_INDEX[c] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bits of a geohash, its precision is geohash.length()
+     *
+     * @throws IllegalArgumentException if it is longer than MAX_PRECISION or contains non geohash characters
+     */
+    public static long toBits(CharSequence geohash) {
+        return keyBits(toKey(geohash));
+    }
+
+    // Centre latitude of the cell of geohash bits
+    public static double latitudeOf(long bits, int precision) {
+        int bitCount = precision * BITS_PER_CHAR;
+        return center(extract(bits, bitCount, 1), bitCount / 2, -90, 180);
+    }
+
+    // Centre longitude of the cell of geohash bits
+    public static double longitudeOf(long bits, int precision) {
+        int bitCount = precision * BITS_PER_CHAR;
+        return center(extract(bits, bitCount, 0), (bitCount + 1) / 2, -180, 360);
+    }
+
+    public static double decodeLatitude(CharSequence geohash) {
+        return latitudeOf(toBits(geohash), geohash.length());
+    }
+
+    public static double decodeLongitude(CharSequence geohash) {
+        return longitudeOf(toBits(geohash), geohash.length());
+    }
+
+    /**
+     * Centre of a geohash cell as {latitude, longitude}, from a small LRU cache
+     * The array is shared and must not be modified
+     */
+    public static double[] decodeCenter(String geohash) {
+        synchronized (centerCache) {
+            double[] center = centerCache.get(geohash);
+            if (center != null) {
+                return center;
+            }
+        }
+        long bits = toBits(geohash);
+        double[] center = new double[]{latitudeOf(bits, geohash.length()), longitudeOf(bits, geohash.length())};
+        synchronized (centerCache) {
+            centerCache.put(geohash, center);
+        }
+        return center;
+    }
+
+    //########################
+    //## Keys
+    //########################
+
+    /**
+     * Key of a geohash: Its bits below a marker bit, which encodes the precision.
+     * Unique for geohashes of all precisions, e.g. for maps and trees of blocks (see GeohashTree)
+     */
+    public static long toKey(CharSequence geohash) {
+        return toKey(geohash, geohash.length());
+    }
+
+    /**
+     * Key of the first precision chars of a geohash, without a substring
+     */
+    public static long toKey(CharSequence geohash, int precision) {
+        checkPrecision(precision);
+        long key = 1;
+        for (int i = 0; i < precision; i++) {
+            char c = geohash.charAt(i);
+            int value = c < BASE32_INDEX.length ? BASE32_INDEX[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid geohash character '" + c + "' in " + geohash);
+            }
+            key = (key << BITS_PER_CHAR) | value;
+        }
+        return key;
+    }
+
+    public static long toKey(long bits, int precision) {
+        return (1L << (precision * BITS_PER_CHAR)) | bits;
+    }
+
+    public static int keyPrecision(long key) {
+        return (63 - Long.numberOfLeadingZeros(key)) / BITS_PER_CHAR;
+    }
+
+    public static long keyBits(long key) {
+        return key & ~Long.highestOneBit(key);
+    }
+
+    // The character at position i (0 = first) of a key, as value 0..31
+    public static int keyCharValue(long key, int i) {
+        return (int) (key >>> ((keyPrecision(key) - 1 - i) * BITS_PER_CHAR)) & 31;
+    }
+
+    public static String keyToString(long key) {
+        return toString(keyBits(key), keyPrecision(key));
+    }
+
+    // Collect every second bit, starting at the highest one (first = 0) or the one below (first = 1)
+    private static long extract(long bits, int bitCount, int first) {
+        long value = 0;
+        for (int i = first; i < bitCount; i += 2) {
+            value = (value << 1) | ((bits >>> (bitCount - 1 - i)) & 1);
+        }
+        return value;
+    }
+
+    private static double center(long value, int bitCount, double min, double range) {
+        return min + (value + 0.5) * range / (1L << bitCount);
+    }
+
+    private static void checkPrecision(int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Geohash precision must be 1 to " + MAX_PRECISION + ", was " + precision);
+        }
+    }
+}
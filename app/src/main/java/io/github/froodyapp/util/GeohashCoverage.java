@@ -0,0 +1,126 @@
+package io.github.froodyapp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Computes the geohash cells covering a bounding box
+ * A box with west > east crosses the antimeridian, it covers west to 180 and -180 to east
+ */
+public class GeohashCoverage {
+    //########################
+    //## Statics
+    //########################
+    private static final double MAX_LATITUDE = 90 - 1e-9;
+    private static final double MAX_LONGITUDE = 180 - 1e-9;
+
+    /**
+     * Height of a geohash cell in degrees
+     */
+    public static double getCellHeight(int precision) {
+        return 180.0 / (1L << (5 * precision / 2));
+    }
+
+    /**
+     * Width of a geohash cell in degrees
+     */
+    public static double getCellWidth(int precision) {
+        return 360.0 / (1L << ((5 * precision + 1) / 2));
+    }
+
+    /**
+     * Amount of cells with given precision needed to cover the bounding box
+     */
+    public static int countCells(double north, double east, double south, double west, int precision) {
+        double[] lngRanges = toLongitudeRanges(east, west);
+        double width = getCellWidth(precision);
+        int cols = 0;
+        for (int i = 0; i < lngRanges.length; i += 2) {
+            cols += countSteps(lngRanges[i], lngRanges[i + 1], -180, width);
+        }
+        return countSteps(clampLat(south), clampLat(north), -90, getCellHeight(precision)) * cols;
+    }
+
+    /**
+     * Highest precision up to maxPrecision, where the bounding box is covered by at most maxCells cells
+     */
+    public static int choosePrecision(double north, double east, double south, double west, int maxPrecision, int maxCells) {
+        int precision = maxPrecision;
+        while (precision > 1 && countCells(north, east, south, west, precision) > maxCells) {
+            precision--;
+        }
+        return precision;
+    }
+
+    /**
+     * Geohashes of all cells with given precision intersecting the bounding box
+     */
+    public static List<String> cover(double north, double east, double south, double west, int precision) {
+        south = clampLat(south);
+        north = clampLat(north);
+        double height = getCellHeight(precision);
+        double width = getCellWidth(precision);
+        int rows = countSteps(south, north, -90, height);
+        double firstLat = cellCenter(south, -90, height);
+
+        List<String> cells = new ArrayList<>(countCells(north, east, south, west, precision));
+        double[] lngRanges = toLongitudeRanges(east, west);
+        for (int i = 0; i < lngRanges.length; i += 2) {
+            int cols = countSteps(lngRanges[i], lngRanges[i + 1], -180, width);
+            double firstLng = cellCenter(lngRanges[i], -180, width);
+            for (int r = 0; r < rows; r++) {
+                double lat = Math.min(firstLat + r * height, MAX_LATITUDE);
+                for (int c = 0; c < cols; c++) {
+                    double lng = Math.min(firstLng + c * width, MAX_LONGITUDE);
+                    cells.add(GeohashCodec.encode(lat, lng, precision));
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * The longitude ranges {west, east, ...} of a box, two if it crosses the antimeridian.
+     * Longitudes beyond +-180, e.g. of a box widened by a cell, are wrapped around
+     */
+    private static double[] toLongitudeRanges(double east, double west) {
+        if (east - west >= 360) {
+            return new double[]{-180, MAX_LONGITUDE};
+        }
+        west = clampLng(wrapLng(west));
+        east = clampLng(wrapLng(east));
+        if (west > east) {
+            return new double[]{west, MAX_LONGITUDE, -180, east};
+        }
+        return new double[]{west, east};
+    }
+
+    private static double wrapLng(double lng) {
+        if (lng < -180 || lng > 180) {
+            lng = ((lng + 180) % 360 + 360) % 360 - 180;
+        }
+        return lng;
+    }
+
+    private static int countSteps(double from, double to, double origin, double step) {
+        if (to < from) {
+            return 0;
+        }
+        long first = (long) Math.floor((from - origin) / step);
+        long last = (long) Math.floor((to - origin) / step);
+        return (int) Math.min(last - first + 1, Integer.MAX_VALUE);
+    }
+
+    private static double cellCenter(double value, double origin, double step) {
+        return origin + (Math.floor((value - origin) / step) + 0.5) * step;
+    }
+
+    private static double clampLat(double lat) {
+        return Math.max(-90, Math.min(MAX_LATITUDE, lat));
+    }
+
+    private static double clampLng(double lng) {
+        return Math.max(-180, Math.min(MAX_LONGITUDE, lng));
+    }
+}
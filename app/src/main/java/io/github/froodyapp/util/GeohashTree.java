@@ -0,0 +1,222 @@
+package io.github.froodyapp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Concurrent prefix tree of values keyed by geohash keys (see GeohashCodec.toKey), one level per geohash char
+ * Lookups walk the 5 bit groups of a key, so no strings are involved. All values below a geohash, e.g. the
+ * 6 char blocks within a 5 char block, are a walk of its subtree.
+ * Reads are lock-free, writes use compare-and-set on the nodes. Nodes emptied by removals are kept and
+ * reused, their amount is bounded by the geohashes ever inserted
+ */
+public class GeohashTree<V> {
+    //########################
+    //## Statics
+    //########################
+    private static final int FANOUT = 32;
+
+    /**
+     * Gets the values of a walk with their keys
+     */
+    public interface Visitor<V> {
+        void visit(long key, V value);
+    }
+
+    private static final class Node {
+        private static final AtomicReferenceFieldUpdater<Node, Object> VALUE =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "value");
+        // There is no class literal of AtomicReferenceArray<Node>, the cast only adds the type argument
+        @SuppressWarnings("unchecked")
+        private static final AtomicReferenceFieldUpdater<Node, AtomicReferenceArray<Node>> CHILDREN =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class,
+                        (Class<AtomicReferenceArray<Node>>) (Class<?>) AtomicReferenceArray.class, "children");
+
+        volatile Object value;
+        volatile AtomicReferenceArray<Node> children;   // Created with the first child
+
+        Node child(int index) {
+            AtomicReferenceArray<Node> children = this.children;
+            return children == null ? null : children.get(index);
+        }
+
+        Node getOrCreateChild(int index) {
+            AtomicReferenceArray<Node> children = this.children;
+            if (children == null) {
+                CHILDREN.compareAndSet(this, null, new AtomicReferenceArray<Node>(FANOUT));
+                children = this.children;
+            }
+            Node child = children.get(index);
+            if (child == null) {
+                children.compareAndSet(index, null, new Node());
+                child = children.get(index);
+            }
+            return child;
+        }
+    }
+
+    //########################
+    //## Member
+    //########################
+    private final Node root = new Node();
+    private final AtomicInteger size = new AtomicInteger();
+
+    //########################
+    //## Methods
+    //########################
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        Node node = find(key);
+        return node == null ? null : (V) node.value;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Set the value at key
+     *
+     * @return the previous value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        Object previous = Node.VALUE.getAndSet(findOrCreate(key), value);
+        if (previous == null) {
+            size.incrementAndGet();
+        }
+        return (V) previous;
+    }
+
+    /**
+     * Set the value at key, unless there is one already
+     *
+     * @return the value already present, or null if value was set
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(long key, V value) {
+        Node node = findOrCreate(key);
+        while (true) {
+            Object existing = node.value;
+            if (existing != null) {
+                return (V) existing;
+            }
+            if (Node.VALUE.compareAndSet(node, null, value)) {
+                size.incrementAndGet();
+                return null;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        Node node = find(key);
+        if (node == null) {
+            return null;
+        }
+        Object previous = Node.VALUE.getAndSet(node, null);
+        if (previous != null) {
+            size.decrementAndGet();
+        }
+        return (V) previous;
+    }
+
+    /**
+     * Remove the value at key, if it is still value
+     */
+    public boolean remove(long key, V value) {
+        Node node = find(key);
+        if (node != null && value != null && Node.VALUE.compareAndSet(node, value, null)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Walk the value at prefixKey and all values below it, e.g. the blocks within a geohash cell
+     */
+    public void visitPrefix(long prefixKey, Visitor<V> visitor) {
+        Node node = find(prefixKey);
+        if (node != null) {
+            walk(node, prefixKey, visitor);
+        }
+    }
+
+    /**
+     * Walk all values of the tree
+     */
+    public void visitAll(Visitor<V> visitor) {
+        AtomicReferenceArray<Node> children = root.children;
+        if (children != null) {
+            for (int i = 0; i < FANOUT; i++) {
+                Node child = children.get(i);
+                if (child != null) {
+                    walk(child, GeohashCodec.toKey(i, 1), visitor);
+                }
+            }
+        }
+    }
+
+    public List<V> valuesWithPrefix(long prefixKey) {
+        final List<V> values = new ArrayList<>();
+        visitPrefix(prefixKey, new Visitor<V>() {
+            public void visit(long key, V value) {
+                values.add(value);
+            }
+        });
+        return values;
+    }
+
+    public List<V> values() {
+        final List<V> values = new ArrayList<>(size());
+        visitAll(new Visitor<V>() {
+            public void visit(long key, V value) {
+                values.add(value);
+            }
+        });
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void walk(Node node, long key, Visitor<V> visitor) {
+        Object value = node.value;
+        if (value != null) {
+            visitor.visit(key, (V) value);
+        }
+        AtomicReferenceArray<Node> children = node.children;
+        if (children != null) {
+            for (int i = 0; i < FANOUT; i++) {
+                Node child = children.get(i);
+                if (child != null) {
+                    walk(child, (key << 5) | i, visitor);
+                }
+            }
+        }
+    }
+
+    private Node find(long key) {
+        int precision = GeohashCodec.keyPrecision(key);
+        Node node = root;
+        for (int i = 0; i < precision && node != null; i++) {
+            node = node.child(GeohashCodec.keyCharValue(key, i));
+        }
+        return node;
+    }
+
+    private Node findOrCreate(long key) {
+        int precision = GeohashCodec.keyPrecision(key);
+        Node node = root;
+        for (int i = 0; i < precision; i++) {
+            node = node.getOrCreateChild(GeohashCodec.keyCharValue(key, i));
+        }
+        return node;
+    }
+}
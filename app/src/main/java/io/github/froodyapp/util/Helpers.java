@@ -20,7 +20,6 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
-import ch.hsr.geohash.GeoHash;
 import io.github.froodyapp.R;
 
 /**
@@ -52,19 +51,23 @@ public class Helpers {
     }
 
 
+    // Whether data traffic is cheap, e.g. WiFi
+    public static boolean isConnectedToUnmeteredNetwork(Context context) {
+        ConnectivityManager connectivityManager = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return isConnectedToInternet(context) && !connectivityManager.isActiveNetworkMetered();
+    }
+
     public static String latLngToGeohash(double lat, double lng, int precision) {
-        return GeoHash.withCharacterPrecision(lat, lng, precision).toBase32();
+        return GeohashCodec.encode(lat, lng, precision);
     }
 
     public static Double[] geohashToLatLng(String geohash) {
-        GeoHash gh = GeoHash.fromGeohashString(geohash);
-        if (gh != null && gh.getPoint() != null) {
-            return new Double[]{
-                    gh.getPoint().getLatitude(),
-                    gh.getPoint().getLongitude()
-            };
+        if (!GeohashCodec.isValid(geohash)) {
+            return null;
         }
-        return null;
+        double[] center = GeohashCodec.decodeCenter(geohash);
+        return new Double[]{center[0], center[1]};
     }
 
     public static DateTime getNow() {
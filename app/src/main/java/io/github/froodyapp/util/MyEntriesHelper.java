@@ -121,6 +121,8 @@ public class MyEntriesHelper {
                 inCache.setDescription(entry.getDescription());
                 inCache.setAddress(entry.getAddress());
                 inCache.setContact(entry.getContact());
+                // The cache hands out copies only
+                cache.processEntryWithDetails(inCache);
             } else {
                 cache.processEntryWithDetails(entry);
             }
@@ -0,0 +1,187 @@
+package io.github.froodyapp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable prefix tree of values keyed by geohash keys (see GeohashCodec.toKey), one level per geohash char
+ * Changes return a new tree, which shares all nodes off the changed path with the old one, so a new version
+ * costs one node per geohash char. Nodes keep only their present children, indexed by a bitmap.
+ * Any version can be read by any thread without locking
+ */
+public final class PersistentGeohashTree<V> {
+    //########################
+    //## Statics
+    //########################
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final PersistentGeohashTree<?> EMPTY = new PersistentGeohashTree<>(null, 0);
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentGeohashTree<V> empty() {
+        return (PersistentGeohashTree<V>) EMPTY;
+    }
+
+    private static final class Node {
+        final Object value;
+        final int bitmap;       // Bit i set = child for char value i present
+        final Node[] children;  // Present children, ordered by char value
+
+        Node(Object value, int bitmap, Node[] children) {
+            this.value = value;
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        Node child(int index) {
+            int bit = 1 << index;
+            return (bitmap & bit) == 0 ? null : children[Integer.bitCount(bitmap & (bit - 1))];
+        }
+
+        Node withValue(Object value) {
+            return value == null && bitmap == 0 ? null : new Node(value, bitmap, children);
+        }
+
+        // Copy with child at index replaced, added or (child = null) removed. Null if the node becomes empty
+        Node withChild(int index, Node child) {
+            int bit = 1 << index;
+            int pos = Integer.bitCount(bitmap & (bit - 1));
+            boolean present = (bitmap & bit) != 0;
+            if (child == null) {
+                if (!present) {
+                    return this;
+                }
+                if (value == null && bitmap == bit) {
+                    return null;
+                }
+                Node[] copy = new Node[children.length - 1];
+                System.arraycopy(children, 0, copy, 0, pos);
+                System.arraycopy(children, pos + 1, copy, pos, copy.length - pos);
+                return new Node(value, bitmap & ~bit, copy);
+            }
+            if (present) {
+                Node[] copy = children.clone();
+                copy[pos] = child;
+                return new Node(value, bitmap, copy);
+            }
+            Node[] copy = new Node[children.length + 1];
+            System.arraycopy(children, 0, copy, 0, pos);
+            copy[pos] = child;
+            System.arraycopy(children, pos, copy, pos + 1, children.length - pos);
+            return new Node(value, bitmap | bit, copy);
+        }
+    }
+
+    //########################
+    //## Member
+    //########################
+    private final Node root;
+    private final int size;
+
+    //########################
+    //## Methods
+    //########################
+    private PersistentGeohashTree(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        Node node = find(key);
+        return node == null ? null : (V) node.value;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Tree with the value at key set, or removed if value is null. This tree stays unchanged
+     */
+    public PersistentGeohashTree<V> with(long key, V value) {
+        V previous = get(key);
+        if (previous == value) {
+            return this;
+        }
+        Node newRoot = with(root, key, 0, GeohashCodec.keyPrecision(key), value);
+        int newSize = size + (previous == null ? 1 : 0) - (value == null ? 1 : 0);
+        return new PersistentGeohashTree<>(newRoot, newSize);
+    }
+
+    public PersistentGeohashTree<V> without(long key) {
+        return with(key, null);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Walk the value at prefixKey and all values below it, e.g. the blocks within a geohash cell
+     */
+    public void visitPrefix(long prefixKey, GeohashTree.Visitor<V> visitor) {
+        Node node = find(prefixKey);
+        if (node != null) {
+            walk(node, prefixKey, visitor);
+        }
+    }
+
+    /**
+     * Walk all values of the tree
+     */
+    public void visitAll(GeohashTree.Visitor<V> visitor) {
+        if (root != null) {
+            walkChildren(root, 1, visitor);
+        }
+    }
+
+    public List<V> valuesWithPrefix(long prefixKey) {
+        final List<V> values = new ArrayList<>();
+        visitPrefix(prefixKey, new GeohashTree.Visitor<V>() {
+            public void visit(long key, V value) {
+                values.add(value);
+            }
+        });
+        return values;
+    }
+
+    private static Node with(Node node, long key, int depth, int precision, Object value) {
+        if (node == null) {
+            if (value == null) {
+                return null;
+            }
+            node = new Node(null, 0, NO_CHILDREN);
+        }
+        if (depth == precision) {
+            return node.withValue(value);
+        }
+        int index = GeohashCodec.keyCharValue(key, depth);
+        return node.withChild(index, with(node.child(index), key, depth + 1, precision, value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void walk(Node node, long key, GeohashTree.Visitor<V> visitor) {
+        if (node.value != null) {
+            visitor.visit(key, (V) node.value);
+        }
+        walkChildren(node, key, visitor);
+    }
+
+    private void walkChildren(Node node, long key, GeohashTree.Visitor<V> visitor) {
+        int bitmap = node.bitmap;
+        for (int pos = 0; bitmap != 0; pos++) {
+            int index = Integer.numberOfTrailingZeros(bitmap);
+            walk(node.children[pos], (key << 5) | index, visitor);
+            bitmap &= bitmap - 1;
+        }
+    }
+
+    private Node find(long key) {
+        int precision = GeohashCodec.keyPrecision(key);
+        Node node = root;
+        for (int i = 0; i < precision && node != null; i++) {
+            node = node.child(GeohashCodec.keyCharValue(key, i));
+        }
+        return node;
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.froodyapp.util;
+
+/**
+ * Fixed set of monitors, each key is guarded by one of them
+ * Keys spread over the stripes, so threads working on different keys (e.g. blocks) rarely wait on each other,
+ * while the memory stays constant no matter how many keys there are
+ */
+public final class StripedLocks {
+    //########################
+    //## Member
+    //########################
+    private final Object[] locks;
+    private final int mask;
+
+    //########################
+    //## Methods
+    //########################
+
+    /**
+     * @param stripes amount of locks, rounded up to a power of two
+     */
+    public StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new Object[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new Object();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * The monitor guarding key, to synchronize on
+     */
+    public Object forKey(long key) {
+        int hash = (int) (key ^ (key >>> 32));
+        hash ^= (hash >>> 16);
+        hash *= 0x9E3779B9;
+        return locks[(hash >>> 16) & mask];
+    }
+
+    public int getStripeCount() {
+        return locks.length;
+    }
+}
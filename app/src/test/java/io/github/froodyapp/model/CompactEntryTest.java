@@ -0,0 +1,110 @@
+package io.github.froodyapp.model;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.util.GeohashCodec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the compact entries kept in the BlockCache
+ */
+public class CompactEntryTest {
+    private static final DateTime NOW = new DateTime(2017, 3, 1, 12, 0, DateTimeZone.UTC);
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    @Test
+    public void froodyEntryRoundTripTest() {
+        FroodyEntry entry = new FroodyEntry();
+        entry.setEntryId(42L);
+        entry.setUserId(7L);
+        entry.setGeohash("u33dc0bcd");
+        entry.setCreationDate(NOW);
+        entry.setModificationDate(NOW.plusHours(1));
+        entry.setEntryType(3);
+        entry.setCertificationType(1);
+        entry.setDistributionType(2);
+        entry.setManagementCode(1234);
+        entry.setWasDeleted(false);
+        entry.setDescription("Apples");
+        entry.setContact("Contact äöü");
+
+        FroodyEntry copy = CompactEntry.from(entry).toFroodyEntry();
+        assertEquals(entry.getEntryId(), copy.getEntryId());
+        assertEquals(entry.getUserId(), copy.getUserId());
+        assertEquals(entry.getGeohash(), copy.getGeohash());
+        assertEquals(entry.getCreationDate().getMillis(), copy.getCreationDate().getMillis());
+        assertEquals(entry.getModificationDate().getMillis(), copy.getModificationDate().getMillis());
+        assertEquals(entry.getEntryType(), copy.getEntryType());
+        assertEquals(entry.getCertificationType(), copy.getCertificationType());
+        assertEquals(entry.getDistributionType(), copy.getDistributionType());
+        assertEquals(entry.getManagementCode(), copy.getManagementCode());
+        assertEquals(entry.getWasDeleted(), copy.getWasDeleted());
+        assertEquals(entry.getDescription(), copy.getDescription());
+        assertEquals(entry.getContact(), copy.getContact());
+        assertEquals(entry.getAddress(), copy.getAddress());
+    }
+
+    @Test
+    public void missingValuesTest() {
+        // Null boxed values are kept as null, not as 0
+        FroodyEntry entry = new FroodyEntry();
+        entry.setEntryId(42L);
+        entry.setUserId(null);
+        entry.setGeohash(null);
+        entry.setManagementCode(null);
+        entry.setContact(null);
+        CompactEntry compact = CompactEntry.from(entry);
+        assertEquals(CompactEntry.NULL_LONG, compact.getUserId());
+        assertEquals(CompactEntry.NULL_INT, compact.getEntryType());
+        assertFalse(compact.hasPosition());
+        assertFalse(compact.hasExtendedInfoLoaded());
+
+        FroodyEntry copy = compact.toFroodyEntry();
+        assertNull(copy.getUserId());
+        assertNull(copy.getCreationDate());
+        assertNull(copy.getEntryType());
+        assertNull(copy.getManagementCode());
+        assertFalse(copy.getWasDeleted());
+    }
+
+    @Test
+    public void positionTest() {
+        CompactEntry entry = entry("u33dc0bcd", NOW.getMillis(), false);
+        assertTrue(entry.hasPosition());
+        assertEquals(GeohashCodec.decodeLatitude("u33dc0bcd"), entry.getLatitude(), 1e-4);
+        assertEquals(GeohashCodec.decodeLongitude("u33dc0bcd"), entry.getLongitude(), 1e-4);
+        assertTrue(entry.isWithin(53, 14, 52, 13));
+        assertFalse(entry.isWithin(53, 13, 52, 12));
+    }
+
+    @Test
+    public void isWithinAcrossAntimeridianTest() {
+        // West > east: The box crosses the antimeridian
+        CompactEntry east = entry(GeohashCodec.encode(5, 175, 9), NOW.getMillis(), false);
+        CompactEntry west = entry(GeohashCodec.encode(5, -175, 9), NOW.getMillis(), false);
+        CompactEntry outside = entry(GeohashCodec.encode(5, 0, 9), NOW.getMillis(), false);
+        assertTrue(east.isWithin(10, -170, 0, 170));
+        assertTrue(west.isWithin(10, -170, 0, 170));
+        assertFalse(outside.isWithin(10, -170, 0, 170));
+    }
+
+    @Test
+    public void canEntryBeRemovedFromCacheTest() {
+        long now = NOW.getMillis();
+        assertFalse(entry("u33dc0bcd", now - 20 * DAY_MILLIS, false).canEntryBeRemovedFromCache(now));
+        assertTrue(entry("u33dc0bcd", now - 22 * DAY_MILLIS, false).canEntryBeRemovedFromCache(now));
+        assertTrue(entry("u33dc0bcd", now, true).canEntryBeRemovedFromCache(now));
+        assertFalse(entry("u33dc0bcd", CompactEntry.NULL_LONG, false).canEntryBeRemovedFromCache(now));
+    }
+
+    private static CompactEntry entry(String geohash, long creationMillis, boolean wasDeleted) {
+        return new CompactEntry(1, 1, geohash, creationMillis, creationMillis, 0, 0, 0, 0, wasDeleted);
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.froodyapp.util;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.model.BlockInfoPlus;
+import io.github.froodyapp.model.CompactEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Blocks and entries for the BlockCache tests, created now so they are not dropped as old
+ */
+class BlockCacheFixtures {
+    static final DateTime NOW = DateTime.now(DateTimeZone.UTC).withMillisOfSecond(0);
+
+    static CompactEntry entry(long entryId, String geohash) {
+        CompactEntry entry = new CompactEntry(entryId, 100 + entryId, geohash, NOW.getMillis(), NOW.getMillis(),
+                (int) (entryId % 7), 1, CompactEntry.NULL_INT, 0, false);
+        if (entryId % 2 == 0) {
+            entry.setTexts("Description " + entryId, "Contact äöü", null);
+        }
+        return entry;
+    }
+
+    static FroodyEntry froodyEntry(long entryId, String geohash) {
+        return entry(entryId, geohash).toFroodyEntry();
+    }
+
+    static BlockCache.BlockCacheItem block(String blockGeohash, CompactEntry... entries) {
+        BlockCache.BlockCacheItem item = new BlockCache.BlockCacheItem();
+        item.blockInfo = new BlockInfoPlus(blockGeohash, NOW);
+        for (CompactEntry entry : entries) {
+            item.entries.put(entry.getEntryId(), entry);
+        }
+        return item;
+    }
+
+    static void assertEntryEquals(CompactEntry expected, CompactEntry actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getEntryId(), actual.getEntryId());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getGeohash(), actual.getGeohash());
+        assertEquals(expected.getCreationMillis(), actual.getCreationMillis());
+        assertEquals(expected.getModificationMillis(), actual.getModificationMillis());
+        assertEquals(expected.getEntryType(), actual.getEntryType());
+        assertEquals(expected.getCertificationType(), actual.getCertificationType());
+        assertEquals(expected.getDistributionType(), actual.getDistributionType());
+        assertEquals(expected.getManagementCode(), actual.getManagementCode());
+        assertEquals(expected.wasDeleted(), actual.wasDeleted());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getContact(), actual.getContact());
+        assertEquals(expected.getAddress(), actual.getAddress());
+    }
+
+    static void assertBlockEquals(BlockCache.BlockCacheItem expected, BlockCache.BlockCacheItem actual) {
+        assertNotNull(actual);
+        assertEquals(expected.blockInfo.getGeohash(), actual.blockInfo.getGeohash());
+        assertEquals(expected.blockInfo.getModificationDate().getMillis(), actual.blockInfo.getModificationDate().getMillis());
+        assertEquals(expected.entries.keySet(), actual.entries.keySet());
+        for (CompactEntry entry : expected.entries.values()) {
+            assertEntryEquals(entry, actual.entries.get(entry.getEntryId()));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.froodyapp.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.froodyapp.model.BlockInfoPlus;
+
+import static io.github.froodyapp.util.BlockCacheFixtures.NOW;
+import static io.github.froodyapp.util.BlockCacheFixtures.assertBlockEquals;
+import static io.github.froodyapp.util.BlockCacheFixtures.assertEntryEquals;
+import static io.github.froodyapp.util.BlockCacheFixtures.block;
+import static io.github.froodyapp.util.BlockCacheFixtures.entry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for journaling BlockCache mutations and replaying them, also after a crash while appending
+ */
+public class BlockCacheJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BlockCacheJournal journal;
+    private File file;
+    private Map<String, BlockCache.BlockCacheItem> blocks;
+
+    @Before
+    public void setUp() throws Exception {
+        journal = new BlockCacheJournal();
+        file = new File(folder.getRoot(), "blockcache.journal");
+        blocks = new HashMap<>();
+    }
+
+    @Test
+    public void replayTest() throws Exception {
+        journal.logBlockInfo(new BlockInfoPlus("u33dc0", NOW));
+        journal.logPutEntry("u33dc0", entry(1, "u33dc0bcd"));
+        journal.logPutEntry("u33dc0", entry(2, "u33dc0xyz"));
+        journal.logPutEntry("s00000", entry(3, "s00000zzz"));
+        journal.logRemoveEntry("u33dc0", 2);
+        assertTrue(journal.hasPendingRecords());
+        journal.flush(file);
+        assertFalse(journal.hasPendingRecords());
+
+        assertEquals(5, BlockCacheJournal.replay(file, blocks, null));
+        assertEquals(2, blocks.size());
+        assertBlockEquals(block("u33dc0", entry(1, "u33dc0bcd")), blocks.get("u33dc0"));
+        assertEntryEquals(entry(3, "s00000zzz"), blocks.get("s00000").entries.get(3L));
+        assertEquals("s00000", blocks.get("s00000").blockInfo.getGeohash());
+    }
+
+    @Test
+    public void appendingFlushesTest() throws Exception {
+        journal.logPutEntry("u33dc0", entry(1, "u33dc0bcd"));
+        journal.flush(file);
+        journal.logPutEntry("u33dc0", entry(2, "u33dc0xyz"));
+        journal.flush(file);
+        journal.flush(file);
+
+        assertEquals(2, BlockCacheJournal.replay(file, blocks, null));
+        assertEquals(2, blocks.get("u33dc0").entries.size());
+    }
+
+    @Test
+    public void replayTruncatedRecordTest() throws Exception {
+        journal.logPutEntry("u33dc0", entry(1, "u33dc0bcd"));
+        journal.logPutEntry("u33dc0", entry(3, "u33dc0bbb"));
+        journal.flush(file);
+        long complete = file.length();
+        journal.logPutEntry("u33dc0", entry(2, "u33dc0xyz"));
+        journal.flush(file);
+
+        // A crash while appending the last record: The ones before it are kept
+        for (long length = complete; length < file.length(); length++) {
+            File truncated = copyTruncated(length);
+            Map<String, BlockCache.BlockCacheItem> replayed = new HashMap<>();
+            assertEquals(2, BlockCacheJournal.replay(truncated, replayed, null));
+            assertEquals(2, replayed.get("u33dc0").entries.size());
+            assertNull(replayed.get("u33dc0").entries.get(2L));
+        }
+    }
+
+    @Test
+    public void replayHeaderOnlyTest() throws Exception {
+        journal.logPutEntry("u33dc0", entry(1, "u33dc0bcd"));
+        journal.flush(file);
+        assertEquals(0, BlockCacheJournal.replay(copyTruncated(8), blocks, null));
+        assertTrue(blocks.isEmpty());
+    }
+
+    @Test
+    public void replayMissingFileTest() throws Exception {
+        assertEquals(0, BlockCacheJournal.replay(file, blocks, null));
+        assertTrue(blocks.isEmpty());
+    }
+
+    @Test
+    public void replayVersionMismatchTest() throws Exception {
+        journal.logPutEntry("u33dc0", entry(1, "u33dc0bcd"));
+        journal.flush(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(4);
+            raf.writeInt(BlockCacheJournal.VERSION + 1);
+        } finally {
+            raf.close();
+        }
+        try {
+            BlockCacheJournal.replay(file, blocks, null);
+            fail("Unknown journal version accepted");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("version"));
+        }
+    }
+
+    @Test
+    public void replayOntoSnapshotTest() throws Exception {
+        // Blocks only in the snapshot are paged in before the records are applied to them
+        Map<String, BlockCache.BlockCacheItem> snapshotBlocks = new HashMap<>();
+        snapshotBlocks.put("u33dc0", block("u33dc0", entry(1, "u33dc0bcd"), entry(2, "u33dc0xyz")));
+        File snapshotFile = new File(folder.getRoot(), "blockcache.dat");
+        BlockCacheSnapshot.write(snapshotFile, snapshotBlocks, null);
+        BlockCacheSnapshot.MappedReader snapshot = new BlockCacheSnapshot.MappedReader(snapshotFile);
+        try {
+            journal.logRemoveEntry("u33dc0", 1);
+            journal.logPutEntry("u33dc0", entry(4, "u33dc0ccc"));
+            journal.flush(file);
+
+            assertEquals(2, BlockCacheJournal.replay(file, blocks, snapshot));
+            assertBlockEquals(block("u33dc0", entry(2, "u33dc0xyz"), entry(4, "u33dc0ccc")), blocks.get("u33dc0"));
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    @Test
+    public void deleteFileKeepsPendingTest() throws Exception {
+        // Records logged after a compaction took its copies are flushed into the new file
+        journal.logPutEntry("u33dc0", entry(1, "u33dc0bcd"));
+        journal.flush(file);
+        journal.logPutEntry("u33dc0", entry(2, "u33dc0xyz"));
+
+        journal.deleteFile(file);
+        assertFalse(file.exists());
+        assertTrue(journal.hasPendingRecords());
+
+        journal.flush(file);
+        assertEquals(1, BlockCacheJournal.replay(file, blocks, null));
+        assertNull(blocks.get("u33dc0").entries.get(1L));
+        assertNotNull(blocks.get("u33dc0").entries.get(2L));
+    }
+
+    private File copyTruncated(long length) throws IOException {
+        File truncated = new File(folder.getRoot(), "truncated-" + length);
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        RandomAccessFile out = new RandomAccessFile(truncated, "rw");
+        try {
+            byte[] bytes = new byte[(int) length];
+            in.readFully(bytes);
+            out.write(bytes);
+        } finally {
+            in.close();
+            out.close();
+        }
+        return truncated;
+    }
+}
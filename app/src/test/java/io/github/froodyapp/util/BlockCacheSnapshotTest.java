@@ -0,0 +1,179 @@
+package io.github.froodyapp.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static io.github.froodyapp.util.BlockCacheFixtures.assertBlockEquals;
+import static io.github.froodyapp.util.BlockCacheFixtures.block;
+import static io.github.froodyapp.util.BlockCacheFixtures.entry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for writing BlockCache snapshots and reading them memory-mapped
+ */
+public class BlockCacheSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Map<String, BlockCache.BlockCacheItem> blocks;
+    private File file;
+    private BlockCacheSnapshot.MappedReader reader;
+
+    @Before
+    public void setUp() throws Exception {
+        blocks = new HashMap<>();
+        blocks.put("u33dc0", block("u33dc0", entry(1, "u33dc0bcd"), entry(2, "u33dc0xyz")));
+        blocks.put("u33dc1", block("u33dc1", entry(5, "u33dc1000")));
+        blocks.put("u33dbz", block("u33dbz"));
+        blocks.put("s00000", block("s00000", entry(3, "s00000zzz"), entry(4, "s00000000")));
+        file = new File(folder.getRoot(), "blockcache.dat");
+        BlockCacheSnapshot.write(file, blocks, null);
+        reader = new BlockCacheSnapshot.MappedReader(file);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reader.close();
+    }
+
+    @Test
+    public void roundTripTest() throws Exception {
+        assertEquals(blocks.size(), reader.getBlockCount());
+        for (BlockCache.BlockCacheItem block : blocks.values()) {
+            assertBlockEquals(block, reader.readBlock(block.blockInfo.getGeohash()));
+        }
+        assertNull(reader.readBlock("u33dc2"));
+    }
+
+    @Test
+    public void indexSortedTest() {
+        assertEquals("s00000", reader.getBlockGeohash(0));
+        assertEquals("u33dbz", reader.getBlockGeohash(1));
+        assertEquals("u33dc0", reader.getBlockGeohash(2));
+        assertEquals("u33dc1", reader.getBlockGeohash(3));
+        for (int i = 0; i < reader.getBlockCount(); i++) {
+            assertEquals(i, reader.indexOf(reader.getBlockGeohash(i)));
+            assertEquals(GeohashCodec.toKey(reader.getBlockGeohash(i)), reader.getBlockKey(i));
+        }
+        assertEquals(-1, reader.indexOf("u33dc2"));
+        assertEquals(-1, reader.indexOf("u33dc"));
+        assertEquals(-1, reader.indexOf("zzzzzz"));
+    }
+
+    @Test
+    public void blockKeysWithPrefixTest() {
+        assertEquals(new HashSet<>(Arrays.asList(GeohashCodec.toKey("u33dc0"), GeohashCodec.toKey("u33dc1"))),
+                new HashSet<>(reader.getBlockKeysWithPrefix(GeohashCodec.toKey("u33dc"))));
+        assertEquals(3, reader.getBlockKeysWithPrefix(GeohashCodec.toKey("u")).size());
+        assertEquals(1, reader.getBlockKeysWithPrefix(GeohashCodec.toKey("s0000")).size());
+        assertTrue(reader.getBlockKeysWithPrefix(GeohashCodec.toKey("u33dd")).isEmpty());
+        assertTrue(reader.getBlockKeysWithPrefix(GeohashCodec.toKey("zz")).isEmpty());
+    }
+
+    @Test
+    public void findBlockOfEntryTest() {
+        assertEquals("u33dc0", reader.findBlockOfEntry(1));
+        assertEquals("u33dc0", reader.findBlockOfEntry(2));
+        assertEquals("s00000", reader.findBlockOfEntry(3));
+        assertEquals("s00000", reader.findBlockOfEntry(4));
+        assertEquals("u33dc1", reader.findBlockOfEntry(5));
+        assertNull(reader.findBlockOfEntry(0));
+        assertNull(reader.findBlockOfEntry(6));
+    }
+
+    @Test
+    public void writeWithBaseTest() throws Exception {
+        // Blocks missing in memory are taken from the base, the ones in memory replace theirs
+        Map<String, BlockCache.BlockCacheItem> changed = new HashMap<>();
+        changed.put("u33dc0", block("u33dc0", entry(1, "u33dc0bcd"), entry(7, "u33dc0bbb")));
+        changed.put("u33e00", block("u33e00", entry(8, "u33e00000")));
+        File next = new File(folder.getRoot(), "next.dat");
+        BlockCacheSnapshot.write(next, changed, reader);
+
+        BlockCacheSnapshot.MappedReader nextReader = new BlockCacheSnapshot.MappedReader(next);
+        try {
+            assertEquals(5, nextReader.getBlockCount());
+            assertBlockEquals(changed.get("u33dc0"), nextReader.readBlock("u33dc0"));
+            assertBlockEquals(changed.get("u33e00"), nextReader.readBlock("u33e00"));
+            assertBlockEquals(blocks.get("u33dc1"), nextReader.readBlock("u33dc1"));
+            assertBlockEquals(blocks.get("s00000"), nextReader.readBlock("s00000"));
+            assertNull(nextReader.findBlockOfEntry(2));
+            assertEquals("u33dc0", nextReader.findBlockOfEntry(7));
+        } finally {
+            nextReader.close();
+        }
+    }
+
+    @Test
+    public void packGeohashTest() {
+        String[] sorted = {"", "0", "00", "000000000000", "01", "u", "u33", "u33dc0", "zzzzzzzzzzzz"};
+        for (int i = 0; i < sorted.length; i++) {
+            long packed = BlockCacheSnapshot.packGeohash(sorted[i]);
+            assertTrue(packed >= 0);
+            assertEquals(sorted[i], BlockCacheSnapshot.unpackGeohash(packed, sorted[i].length()));
+            if (i > 0) {
+                assertTrue(BlockCacheSnapshot.packGeohash(sorted[i - 1]) <= packed);
+            }
+        }
+        long bits = GeohashCodec.toBits("u33dc0");
+        assertEquals(bits, BlockCacheSnapshot.unpackBits(BlockCacheSnapshot.packBits(bits, 6), 6));
+    }
+
+    @Test
+    public void versionMismatchTest() throws Exception {
+        writeInt(4, BlockCacheSnapshot.VERSION - 1);
+        try {
+            new BlockCacheSnapshot.MappedReader(file);
+            fail("Old snapshot version accepted");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("version"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void wrongMagicTest() throws Exception {
+        writeInt(0, BlockCacheSnapshot.MAGIC + 1);
+        new BlockCacheSnapshot.MappedReader(file);
+    }
+
+    @Test
+    public void emptySnapshotTest() throws Exception {
+        File empty = new File(folder.getRoot(), "empty.dat");
+        BlockCacheSnapshot.write(empty, new HashMap<String, BlockCache.BlockCacheItem>(), null);
+        BlockCacheSnapshot.MappedReader emptyReader = new BlockCacheSnapshot.MappedReader(empty);
+        try {
+            assertEquals(0, emptyReader.getBlockCount());
+            assertNull(emptyReader.readBlock("u33dc0"));
+            assertNull(emptyReader.findBlockOfEntry(1));
+            assertTrue(emptyReader.getBlockKeysWithPrefix(GeohashCodec.toKey("u")).isEmpty());
+        } finally {
+            emptyReader.close();
+        }
+        assertFalse(new File(folder.getRoot(), "empty.dat.tmp").exists());
+    }
+
+    private void writeInt(long position, int value) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(position);
+            raf.writeInt(value);
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package io.github.froodyapp.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.froodyapp.api.model_.BlockChanges;
+import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.model.CompactEntry;
+
+import static io.github.froodyapp.util.BlockCacheFixtures.NOW;
+import static io.github.froodyapp.util.BlockCacheFixtures.assertEntryEquals;
+import static io.github.froodyapp.util.BlockCacheFixtures.entry;
+import static io.github.froodyapp.util.BlockCacheFixtures.froodyEntry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for merging entries into the BlockCache, its view, persistence and LRU eviction
+ */
+public class BlockCacheTest {
+    private static final String[] BLOCKS = {"u33dc0", "u33dc1", "u33dbz"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BlockCache blockCache;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        blockCache = new BlockCache();
+        cacheDir = folder.getRoot();
+    }
+
+    @Test
+    public void processEntriesTest() {
+        List<CompactEntry> merged = blockCache.processEntries(entriesOfBlocks(), NOW);
+        assertEquals(6, merged.size());
+        assertEquals(3, blockCache.getBlocks().size());
+        for (int i = 0; i < BLOCKS.length; i++) {
+            BlockCache.BlockCacheItem item = blockCache.getBlockCacheItemAt(BLOCKS[i]);
+            assertNotNull(item);
+            assertEquals(BLOCKS[i], item.blockInfo.getGeohash());
+            assertEquals(2, item.entries.size());
+            assertEntryEquals(entry(2 * i, BLOCKS[i] + "000"), item.entries.get((long) 2 * i));
+        }
+        assertEquals(2, blockCache.getBlockCacheItemsWithPrefix(GeohashCodec.toKey("u33dc")).size());
+    }
+
+    @Test
+    public void processDeletedEntryTest() {
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+        FroodyEntry deleted = froodyEntry(0, "u33dc0000");
+        deleted.setWasDeleted(true);
+        List<CompactEntry> merged = blockCache.processEntries(Collections.singletonList(deleted), NOW);
+        assertEquals(1, merged.size());
+        assertTrue(merged.get(0).wasDeleted());
+        assertNull(blockCache.getBlockCacheItemAt("u33dc0").entries.get(0L));
+        assertEquals(1, blockCache.getBlockCacheItemAt("u33dc0").entries.size());
+    }
+
+    @Test
+    public void processEntryOutsideBlockTest() {
+        // Entries less precise than a block are skipped
+        List<CompactEntry> merged = blockCache.processEntries(Collections.singletonList(froodyEntry(1, "u33d")), NOW);
+        assertTrue(merged.isEmpty());
+        assertEquals(0, blockCache.getBlocks().size());
+    }
+
+    @Test
+    public void saveLoadTest() {
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+        blockCache.save(cacheDir);
+        assertBlocksLoaded(6);
+
+        // Compacted into the snapshot, then journaled on top of it
+        blockCache.compact(cacheDir);
+        FroodyEntry deleted = froodyEntry(1, "u33dc0zzz");
+        deleted.setWasDeleted(true);
+        blockCache.processEntries(Arrays.asList(froodyEntry(6, "u33dc0bbb"), deleted), NOW);
+        blockCache.save(cacheDir);
+        BlockCache loaded = assertBlocksLoaded(6);
+        assertNotNull(loaded.getBlockCacheItemAt("u33dc0").entries.get(6L));
+        assertNull(loaded.getBlockCacheItemAt("u33dc0").entries.get(1L));
+    }
+
+    @Test
+    public void loadPagesInTest() {
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+        blockCache.save(cacheDir);
+        blockCache.compact(cacheDir);
+
+        // Nothing journaled since the snapshot, so blocks are paged in on first access only
+        BlockCache loaded = new BlockCache();
+        loaded.load(cacheDir);
+        assertEquals(0, loaded.getBlocks().size());
+        assertEquals(2, loaded.getBlockCacheItemsWithPrefix(GeohashCodec.toKey("u33dc")).size());
+        assertEquals(2, loaded.getBlocks().size());
+        assertEquals(2, loaded.getBlockCacheItemAt("u33dbz").entries.size());
+        assertEquals(1, loaded.getMissCount());
+        assertSame(loaded.getBlockCacheItemAt("u33dbz"), loaded.getBlocks().get(GeohashCodec.toKey("u33dbz")));
+        assertEquals(1, loaded.getHitCount());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedTest() {
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+        blockCache.save(cacheDir);
+        blockCache.compact(cacheDir);
+        setLastAccess("u33dc0", 1);
+        setLastAccess("u33dc1", 3);
+        setLastAccess("u33dbz", 2);
+
+        blockCache.setLimits(2, Long.MAX_VALUE);
+        assertEquals(2, blockCache.getBlocks().size());
+        assertEquals(1, blockCache.getEvictionCount());
+        assertFalse(blockCache.getBlocks().containsKey(GeohashCodec.toKey("u33dc0")));
+
+        // Paged in again, which evicts the block now used least recently
+        BlockCache.BlockCacheItem item = blockCache.getBlockCacheItemAt("u33dc0");
+        assertEquals(2, item.entries.size());
+        assertEquals(2, blockCache.getBlocks().size());
+        assertEquals(2, blockCache.getEvictionCount());
+        assertSame(item, blockCache.getBlocks().get(GeohashCodec.toKey("u33dc0")));
+        assertFalse(blockCache.getBlocks().containsKey(GeohashCodec.toKey("u33dbz")));
+    }
+
+    @Test
+    public void evictByBytesTest() {
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+        blockCache.save(cacheDir);
+        blockCache.compact(cacheDir);
+        long bytes = blockCache.getEstimatedBytes();
+
+        blockCache.setLimits(Integer.MAX_VALUE, bytes - 1);
+        assertEquals(2, blockCache.getBlocks().size());
+        assertTrue(blockCache.getEstimatedBytes() < bytes);
+    }
+
+    @Test
+    public void dirtyBlocksNotEvictedTest() {
+        // Not compacted into a snapshot, so they could not be paged in again. Without a cache directory there is none
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+        blockCache.setLimits(1, 1);
+        assertEquals(3, blockCache.getBlocks().size());
+        assertEquals(0, blockCache.getEvictionCount());
+    }
+
+    @Test
+    public void evictDirtyBlocksAfterCompactionTest() throws Exception {
+        // A long session without save: Blocks are compacted into the snapshot to get evictable
+        blockCache.load(cacheDir);
+        blockCache.setLimits(2, Long.MAX_VALUE);
+        List<String> blocks = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            String block = GeohashCodec.encode(52.3 + i * 0.01, 13.1, BlockCache.BLOCK_PRECISION);
+            blocks.add(block);
+            blockCache.processEntries(Collections.singletonList(froodyEntry(i, block + "000")), NOW);
+            blockCache.awaitCompaction();
+            assertTrue(blockCache.getBlocks().size() <= 2);
+        }
+        assertTrue(blockCache.getEvictionCount() >= 14);
+
+        // Evicted blocks are paged in from the snapshot again
+        for (int i = 0; i < blocks.size(); i++) {
+            assertEntryEquals(entry(i, blocks.get(i) + "000"), blockCache.getCompactEntryById(i));
+            blockCache.awaitCompaction();
+            assertTrue(blockCache.getBlocks().size() <= 2);
+        }
+    }
+
+    @Test
+    public void entryIndexTest() {
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+        for (int i = 0; i < 2 * BLOCKS.length; i++) {
+            assertEquals(i, blockCache.getCompactEntryById(i).getEntryId());
+        }
+        assertNull(blockCache.getCompactEntryById(6));
+
+        FroodyEntry deleted = froodyEntry(3, "u33dc1zzz");
+        deleted.setWasDeleted(true);
+        blockCache.processEntries(Collections.singletonList(deleted), NOW);
+        assertNull(blockCache.getCompactEntryById(3));
+        assertEntryEquals(entry(2, "u33dc1000"), blockCache.getCompactEntryById(2));
+    }
+
+    @Test
+    public void entryIndexOfSnapshotTest() {
+        // Entries of evicted blocks are found by the index of the snapshot and paged in
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+        blockCache.save(cacheDir);
+        blockCache.compact(cacheDir);
+        setLastAccess("u33dc0", 1);
+        blockCache.setLimits(2, Long.MAX_VALUE);
+        assertFalse(blockCache.getBlocks().containsKey(GeohashCodec.toKey("u33dc0")));
+
+        assertEntryEquals(entry(1, "u33dc0zzz"), blockCache.getCompactEntryById(1));
+        assertTrue(blockCache.getBlocks().containsKey(GeohashCodec.toKey("u33dc0")));
+        assertNull(blockCache.getCompactEntryById(6));
+    }
+
+    @Test
+    public void syncCursorsTest() {
+        BlockChanges changes = new BlockChanges().cursor(42L).entries(entriesOfBlocks());
+        assertEquals(6, blockCache.processChanges(Arrays.asList("u33d", "s0"), changes, NOW).size());
+        assertEquals(42, blockCache.getSyncCursor("u33d"));
+        assertEquals(42, blockCache.getSyncCursor("u33dc0"));
+        assertEquals(0, blockCache.getSyncCursor("u33e"));
+
+        blockCache.processChanges(Collections.singletonList("u33dc0"), new BlockChanges().cursor(50L), NOW);
+        assertEquals(50, blockCache.getSyncCursor("u33dc0"));
+        assertEquals(42, blockCache.getSyncCursor("u33dc1"));
+
+        // Dropping a geohash drops the cursors of the ones containing it, but keeps other groups
+        blockCache.clearSyncCursors(Collections.singletonList("u33dc0"));
+        assertEquals(0, blockCache.getSyncCursor("u33dc0"));
+        assertEquals(0, blockCache.getSyncCursor("u33dc1"));
+        assertEquals(42, blockCache.getSyncCursor("s0"));
+
+        blockCache.clearSyncCursors();
+        assertEquals(0, blockCache.getSyncCursor("s0"));
+    }
+
+    @Test
+    public void syncCursorsSavedTest() {
+        blockCache.processChanges(Collections.singletonList("u33d"), new BlockChanges().cursor(42L).entries(entriesOfBlocks()), NOW);
+        blockCache.save(cacheDir);
+
+        BlockCache loaded = new BlockCache();
+        loaded.load(cacheDir);
+        assertEquals(42, loaded.getSyncCursor("u33dc0"));
+    }
+
+    @Test
+    public void invalidGeohashTest() {
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+        assertNull(blockCache.getBlockCacheItemAt("u33dca"));
+        assertNull(blockCache.getBlockCacheItemAt("U33DC0"));
+        assertNull(blockCache.getBlockCacheItemAt(""));
+        assertNull(blockCache.getBlockCacheItemAt((String) null));
+        assertNull(blockCache.getBlockCacheItemAt("u33dc2"));
+    }
+
+    @Test
+    public void concurrentProcessEntriesTest() throws Exception {
+        // Loaders merging into different blocks and the same ones at once
+        final int threadCount = 4;
+        final int entriesPerThread = 512;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final int offset = t;
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < entriesPerThread; i++) {
+                        long entryId = offset * entriesPerThread + i;
+                        String block = BLOCKS[(int) (entryId % BLOCKS.length)];
+                        blockCache.processEntries(Collections.singletonList(froodyEntry(entryId, block + "000")), NOW);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int count = 0;
+        for (String block : BLOCKS) {
+            count += blockCache.getBlockCacheItemAt(block).entries.size();
+        }
+        assertEquals(threadCount * entriesPerThread, count);
+        assertEquals(threadCount * entriesPerThread, blockCache.getView().getAllEntries().size());
+        for (long entryId = 0; entryId < threadCount * entriesPerThread; entryId++) {
+            assertNotNull(blockCache.getCompactEntryById(entryId));
+        }
+    }
+
+    @Test
+    public void viewTest() {
+        assertSame(BlockCacheView.EMPTY, blockCache.getView());
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+
+        // The view is published with the merge
+        BlockCacheView view = blockCache.getView();
+        assertEquals(3, view.getBlockCount());
+        assertEquals(2, view.getBlockEntries(GeohashCodec.toKey("u33dc0")).size());
+        assertEquals(6, view.getAllEntries().size());
+        assertEntryEquals(entry(2, "u33dc1000"), view.getEntry(GeohashCodec.toKey("u33dc1"), 2));
+        List<Long> cells = Collections.singletonList(GeohashCodec.toKey("u33dc"));
+        assertEquals(4, view.getEntriesWithin(cells, 90, 180, -90, -180).size());
+    }
+
+    @Test
+    public void viewUnchangedByMergeTest() {
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+        BlockCacheView before = blockCache.getView();
+
+        // Views read before stay unchanged
+        FroodyEntry deleted = froodyEntry(0, "u33dc0000");
+        deleted.setWasDeleted(true);
+        blockCache.processEntries(Arrays.asList(deleted, froodyEntry(6, "u33dc1bbb")), NOW);
+        assertEquals(2, before.getBlockEntries(GeohashCodec.toKey("u33dc0")).size());
+        assertEquals(2, before.getBlockEntries(GeohashCodec.toKey("u33dc1")).size());
+        BlockCacheView after = blockCache.getView();
+        assertEquals(1, after.getBlockEntries(GeohashCodec.toKey("u33dc0")).size());
+        assertEquals(3, after.getBlockEntries(GeohashCodec.toKey("u33dc1")).size());
+        assertTrue(after.getVersion() > before.getVersion());
+    }
+
+    @Test
+    public void viewOfEvictedBlocksTest() {
+        blockCache.processEntries(entriesOfBlocks(), NOW);
+        blockCache.save(cacheDir);
+        blockCache.compact(cacheDir);
+        setLastAccess("u33dc0", 1);
+        blockCache.setLimits(2, Long.MAX_VALUE);
+        assertFalse(blockCache.getView().containsBlock(GeohashCodec.toKey("u33dc0")));
+
+        // Paged in by the loaders, not by reading the view
+        assertTrue(blockCache.pageInBlocks(Collections.singletonList("u33dc")));
+        assertTrue(blockCache.getView().containsBlock(GeohashCodec.toKey("u33dc0")));
+        assertFalse(blockCache.pageInBlocks(Collections.singletonList("u33dc0")));
+    }
+
+    // Two entries in each of the blocks
+    private static List<FroodyEntry> entriesOfBlocks() {
+        List<FroodyEntry> entries = new ArrayList<>();
+        for (int i = 0; i < BLOCKS.length; i++) {
+            entries.add(froodyEntry(2 * i, BLOCKS[i] + "000"));
+            entries.add(froodyEntry(2 * i + 1, BLOCKS[i] + "zzz"));
+        }
+        return entries;
+    }
+
+    private BlockCache assertBlocksLoaded(int entryCount) {
+        BlockCache loaded = new BlockCache();
+        loaded.load(cacheDir);
+        int count = 0;
+        for (String block : BLOCKS) {
+            BlockCache.BlockCacheItem item = loaded.getBlockCacheItemAt(block);
+            assertNotNull(item);
+            for (CompactEntry entry : item.entries.values()) {
+                assertEntryEquals(blockCache.getBlockCacheItemAt(block).entries.get(entry.getEntryId()), entry);
+            }
+            count += item.entries.size();
+        }
+        assertEquals(entryCount, count);
+        return loaded;
+    }
+
+    private void setLastAccess(String blockGeohash, long lastAccess) {
+        blockCache.getBlocks().get(GeohashCodec.toKey(blockGeohash)).lastAccess = lastAccess;
+    }
+}
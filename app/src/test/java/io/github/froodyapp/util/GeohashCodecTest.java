@@ -0,0 +1,97 @@
+package io.github.froodyapp.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import ch.hsr.geohash.GeoHash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for encoding and decoding geohashes and their keys
+ */
+public class GeohashCodecTest {
+
+    @Test
+    public void encodeLikeGeoHashTest() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            double lat = random.nextDouble() * 180 - 90;
+            double lng = random.nextDouble() * 360 - 180;
+            for (int precision = 1; precision <= GeohashCodec.MAX_PRECISION; precision++) {
+                assertEquals(GeoHash.withCharacterPrecision(lat, lng, precision).toBase32(),
+                        GeohashCodec.encode(lat, lng, precision));
+            }
+        }
+    }
+
+    @Test
+    public void decodeRoundTripTest() {
+        String geohash = GeohashCodec.encode(52.5200, 13.4050, 9);
+        double[] center = GeohashCodec.decodeCenter(geohash);
+        assertEquals(52.5200, center[0], 1e-4);
+        assertEquals(13.4050, center[1], 1e-4);
+        assertEquals(geohash, GeohashCodec.encode(center[0], center[1], 9));
+        assertSame(center, GeohashCodec.decodeCenter(geohash));
+        assertEquals(center[0], GeohashCodec.decodeLatitude(geohash), 0);
+        assertEquals(center[1], GeohashCodec.decodeLongitude(geohash), 0);
+    }
+
+    @Test
+    public void keyRoundTripTest() {
+        String[] geohashes = {"0", "z", "u33", "u33dc0", "zzzzzzzzzzzz", "000000000000"};
+        for (String geohash : geohashes) {
+            long key = GeohashCodec.toKey(geohash);
+            assertEquals(geohash.length(), GeohashCodec.keyPrecision(key));
+            assertEquals(geohash, GeohashCodec.keyToString(key));
+            assertEquals(GeohashCodec.toBits(geohash), GeohashCodec.keyBits(key));
+        }
+        assertEquals(GeohashCodec.toKey("u33"), GeohashCodec.toKey("u33dc0", 3));
+        assertEquals(GeohashCodec.toKey("u33dc0"), GeohashCodec.toKey(GeohashCodec.toBits("u33dc0"), 6));
+        assertEquals(26, GeohashCodec.keyCharValue(GeohashCodec.toKey("u33"), 0));
+        assertEquals(3, GeohashCodec.keyCharValue(GeohashCodec.toKey("u33"), 2));
+    }
+
+    @Test
+    public void keysOfPrecisionsDifferTest() {
+        // "0" and "00" have the same bits, the marker bit tells them apart
+        assertEquals(GeohashCodec.toBits("0"), GeohashCodec.toBits("00"));
+        assertFalse(GeohashCodec.toKey("0") == GeohashCodec.toKey("00"));
+    }
+
+    @Test
+    public void isValidTest() {
+        assertTrue(GeohashCodec.isValid("u33dc0"));
+        assertTrue(GeohashCodec.isValid("zzzzzzzzzzzz"));
+        assertFalse(GeohashCodec.isValid(null));
+        assertFalse(GeohashCodec.isValid(""));
+        assertFalse(GeohashCodec.isValid("zzzzzzzzzzzzz"));
+        assertFalse(GeohashCodec.isValid("u33a"));
+        assertFalse(GeohashCodec.isValid("U33"));
+        assertFalse(GeohashCodec.isValid("u3ä"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCharacterTest() {
+        GeohashCodec.toKey("u3i");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonAsciiCharacterTest() {
+        GeohashCodec.toBits("u3ä");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLongTest() {
+        GeohashCodec.toKey("0123456789bcd");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyTest() {
+        GeohashCodec.toKey("");
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.froodyapp.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for covering bounding boxes with geohash cells
+ */
+public class GeohashCoverageTest {
+
+    @Test
+    public void coverTest() {
+        // The 4 cells of precision 1 around 0/0
+        List<String> cells = GeohashCoverage.cover(10, 10, -10, -10, 1);
+        assertEquals(new HashSet<>(Arrays.asList("7", "k", "e", "s")), new HashSet<>(cells));
+        assertEquals(cells.size(), GeohashCoverage.countCells(10, 10, -10, -10, 1));
+    }
+
+    @Test
+    public void coverContainsCornersTest() {
+        double north = 52.56, east = 13.52, south = 52.45, west = 13.28;
+        for (int precision = 1; precision <= 6; precision++) {
+            List<String> cells = GeohashCoverage.cover(north, east, south, west, precision);
+            assertEquals(cells.size(), GeohashCoverage.countCells(north, east, south, west, precision));
+            assertEquals(cells.size(), new HashSet<>(cells).size());
+            assertTrue(cells.contains(GeohashCodec.encode(north, east, precision)));
+            assertTrue(cells.contains(GeohashCodec.encode(north, west, precision)));
+            assertTrue(cells.contains(GeohashCodec.encode(south, east, precision)));
+            assertTrue(cells.contains(GeohashCodec.encode(south, west, precision)));
+        }
+    }
+
+    @Test
+    public void coverAcrossAntimeridianTest() {
+        // West > east: 170 to 180 and -180 to -170
+        List<String> cells = GeohashCoverage.cover(10, -170, 0, 170, 2);
+        assertEquals(new HashSet<>(Arrays.asList("xb", "xc", "80", "81")), new HashSet<>(cells));
+        assertEquals(cells.size(), GeohashCoverage.countCells(10, -170, 0, 170, 2));
+    }
+
+    @Test
+    public void coverWrapsLongitudesTest() {
+        // A box widened beyond 180 is the same as one crossing the antimeridian
+        assertEquals(new HashSet<>(GeohashCoverage.cover(10, -170, 0, 170, 2)),
+                new HashSet<>(GeohashCoverage.cover(10, 190, 0, 170, 2)));
+    }
+
+    @Test
+    public void coverWholeWorldTest() {
+        List<String> cells = GeohashCoverage.cover(90, 180, -90, -180, 1);
+        assertEquals(32, cells.size());
+        assertEquals(32, new HashSet<>(cells).size());
+        assertEquals(32, GeohashCoverage.countCells(90, 540, -90, -540, 1));
+    }
+
+    @Test
+    public void choosePrecisionTest() {
+        double north = 52.56, east = 13.52, south = 52.45, west = 13.28;
+        int precision = GeohashCoverage.choosePrecision(north, east, south, west, 9, 64);
+        assertTrue(GeohashCoverage.countCells(north, east, south, west, precision) <= 64);
+        assertTrue(GeohashCoverage.countCells(north, east, south, west, precision + 1) > 64);
+    }
+}
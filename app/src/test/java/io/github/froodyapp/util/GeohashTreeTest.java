@@ -0,0 +1,141 @@
+package io.github.froodyapp.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the concurrent and the persistent geohash trees
+ */
+public class GeohashTreeTest {
+    private static final String[] GEOHASHES = {"u33dc0", "u33dc1", "u33dbz", "u33e00", "u3", "u", "s00000"};
+
+    @Test
+    public void putGetRemoveTest() {
+        GeohashTree<String> tree = new GeohashTree<>();
+        for (String geohash : GEOHASHES) {
+            assertNull(tree.put(GeohashCodec.toKey(geohash), geohash));
+        }
+        assertEquals(GEOHASHES.length, tree.size());
+        for (String geohash : GEOHASHES) {
+            assertEquals(geohash, tree.get(GeohashCodec.toKey(geohash)));
+        }
+        assertFalse(tree.containsKey(GeohashCodec.toKey("u33")));
+
+        assertEquals("u3", tree.put(GeohashCodec.toKey("u3"), "u3 again"));
+        assertEquals("u3 again", tree.putIfAbsent(GeohashCodec.toKey("u3"), "ignored"));
+        assertEquals(GEOHASHES.length, tree.size());
+
+        assertFalse(tree.remove(GeohashCodec.toKey("u3"), "u3"));
+        assertTrue(tree.remove(GeohashCodec.toKey("u3"), "u3 again"));
+        assertEquals("u", tree.remove(GeohashCodec.toKey("u")));
+        assertNull(tree.remove(GeohashCodec.toKey("u")));
+        assertEquals(GEOHASHES.length - 2, tree.size());
+        assertNull(tree.get(GeohashCodec.toKey("u")));
+        assertEquals("u33dc0", tree.get(GeohashCodec.toKey("u33dc0")));
+    }
+
+    @Test
+    public void valuesWithPrefixTest() {
+        GeohashTree<String> tree = new GeohashTree<>();
+        for (String geohash : GEOHASHES) {
+            tree.put(GeohashCodec.toKey(geohash), geohash);
+        }
+        assertEquals(set("u33dc0", "u33dc1"), new HashSet<>(tree.valuesWithPrefix(GeohashCodec.toKey("u33dc"))));
+        assertEquals(set("u33dc0", "u33dc1", "u33dbz", "u33e00"), new HashSet<>(tree.valuesWithPrefix(GeohashCodec.toKey("u33"))));
+        assertEquals(set("u33dc0", "u33dc1", "u33dbz", "u33e00", "u3", "u"), new HashSet<>(tree.valuesWithPrefix(GeohashCodec.toKey("u"))));
+        assertTrue(tree.valuesWithPrefix(GeohashCodec.toKey("v")).isEmpty());
+        assertEquals(set(GEOHASHES), new HashSet<>(tree.values()));
+    }
+
+    @Test
+    public void visitKeysTest() {
+        GeohashTree<String> tree = new GeohashTree<>();
+        for (String geohash : GEOHASHES) {
+            tree.put(GeohashCodec.toKey(geohash), geohash);
+        }
+        final List<String> visited = new ArrayList<>();
+        tree.visitAll(new GeohashTree.Visitor<String>() {
+            public void visit(long key, String value) {
+                assertEquals(value, GeohashCodec.keyToString(key));
+                visited.add(value);
+            }
+        });
+        assertEquals(GEOHASHES.length, visited.size());
+    }
+
+    @Test
+    public void concurrentPutTest() throws Exception {
+        final GeohashTree<Integer> tree = new GeohashTree<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    for (int i = offset; i < 4096; i += 4) {
+                        tree.put(GeohashCodec.toKey(i, 3), i);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4096, tree.size());
+        for (int i = 0; i < 4096; i++) {
+            assertEquals(Integer.valueOf(i), tree.get(GeohashCodec.toKey(i, 3)));
+        }
+    }
+
+    @Test
+    public void persistentWithWithoutTest() {
+        PersistentGeohashTree<String> empty = PersistentGeohashTree.empty();
+        PersistentGeohashTree<String> tree = empty;
+        for (String geohash : GEOHASHES) {
+            tree = tree.with(GeohashCodec.toKey(geohash), geohash);
+        }
+        assertEquals(0, empty.size());
+        assertEquals(GEOHASHES.length, tree.size());
+        for (String geohash : GEOHASHES) {
+            assertEquals(geohash, tree.get(GeohashCodec.toKey(geohash)));
+        }
+
+        // Older versions stay unchanged
+        PersistentGeohashTree<String> replaced = tree.with(GeohashCodec.toKey("u3"), "u3 again");
+        PersistentGeohashTree<String> removed = replaced.without(GeohashCodec.toKey("u33dc0"));
+        assertEquals("u3", tree.get(GeohashCodec.toKey("u3")));
+        assertEquals("u3 again", replaced.get(GeohashCodec.toKey("u3")));
+        assertEquals(GEOHASHES.length, replaced.size());
+        assertTrue(replaced.containsKey(GeohashCodec.toKey("u33dc0")));
+        assertFalse(removed.containsKey(GeohashCodec.toKey("u33dc0")));
+        assertEquals(GEOHASHES.length - 1, removed.size());
+        assertSame(removed, removed.without(GeohashCodec.toKey("v")));
+    }
+
+    @Test
+    public void persistentValuesWithPrefixTest() {
+        PersistentGeohashTree<String> tree = PersistentGeohashTree.empty();
+        for (String geohash : GEOHASHES) {
+            tree = tree.with(GeohashCodec.toKey(geohash), geohash);
+        }
+        assertEquals(set("u33dc0", "u33dc1"), new HashSet<>(tree.valuesWithPrefix(GeohashCodec.toKey("u33dc"))));
+        assertEquals(set("u33dc0", "u33dc1", "u33dbz", "u33e00"), new HashSet<>(tree.valuesWithPrefix(GeohashCodec.toKey("u33"))));
+        assertTrue(tree.without(GeohashCodec.toKey("u33e00")).valuesWithPrefix(GeohashCodec.toKey("u33e")).isEmpty());
+    }
+
+    private static HashSet<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.froodyapp.api.invoker;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request building and date parsing in ApiClient: buildUrl, parameterToPairs and parseDatetime
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiClientBenchmark {
+    /**
+     * Date-times in some of the forms accepted by parseDatetime
+     */
+    @State(Scope.Benchmark)
+    public static class DateTimes {
+        @Param({"2015-08-16T08:20:05.376Z", "2015-08-16T08:20:05+00:00", "2015-08-16T08:20:05.376+0200"})
+        public String datetime;
+    }
+
+    private ApiClient apiClient;
+    private DateTime minModificationDate;
+    private List<String> geohashes;
+    private List<Pair> blockGetParams;
+
+    @Setup
+    public void setUp() {
+        apiClient = new ApiClient();
+        minModificationDate = new DateTime(2017, 1, 3, 16, 49, 39, 823, DateTimeZone.UTC);
+        geohashes = Arrays.asList("u0yjjd", "u0yjje", "u0yjj9", "u0yjjf", "u0yjjc", "u0yjjg", "u0yjj3", "u0yjj6", "u0yjj7");
+        blockGetParams = new ArrayList<Pair>();
+        blockGetParams.addAll(apiClient.parameterToPairs("", "geohash", "u0yjjd"));
+        blockGetParams.addAll(apiClient.parameterToPairs("", "minModificationDate", minModificationDate));
+    }
+
+    // Query of a /block/get call, as built by BlockApi
+    @Benchmark
+    public List<Pair> parameterToPairs() {
+        List<Pair> params = new ArrayList<Pair>();
+        params.addAll(apiClient.parameterToPairs("", "geohash", "u0yjjd"));
+        params.addAll(apiClient.parameterToPairs("", "minModificationDate", minModificationDate));
+        return params;
+    }
+
+    @Benchmark
+    public List<Pair> parameterToPairsCsv() {
+        return apiClient.parameterToPairs("csv", "geohash", geohashes);
+    }
+
+    @Benchmark
+    public String buildUrl() {
+        return apiClient.buildUrl("/block/get", blockGetParams);
+    }
+
+    @Benchmark
+    public Date parseDatetime(DateTimes dateTimes) {
+        return apiClient.parseDatetime(dateTimes.datetime);
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.froodyapp.api.invoker;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.github.froodyapp.api.model_.BlockInfo;
+import io.github.froodyapp.api.model_.FroodyEntry;
+
+/**
+ * Realistic model data for the benchmarks, generated with a fixed seed
+ */
+final class BenchmarkPayloads {
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final String[] WORDS = {"Äpfel", "Birnen", "Kirschen", "frisch", "vom", "Baum", "gerne",
+            "abholen", "Garten", "Hof", "bio", "kostenlos", "Zwetschgen", "Walnüsse", "bitte", "klingeln"};
+
+    private BenchmarkPayloads() {
+    }
+
+    /**
+     * Entries as returned by /block/get for a block, about a third with extended info loaded
+     */
+    static List<FroodyEntry> entries(int count) {
+        Random random = new Random(42);
+        List<FroodyEntry> entries = new ArrayList<FroodyEntry>(count);
+        for (int i = 0; i < count; i++) {
+            FroodyEntry entry = new FroodyEntry();
+            entry.setEntryId(1000000L + i);
+            entry.setUserId((long) random.nextInt(10000));
+            entry.setGeohash("u0yjjd" + geohash(random, 6));
+            entry.setCreationDate(new DateTime(1483228800000L + random.nextInt(), DateTimeZone.UTC));
+            entry.setModificationDate(new DateTime(1483228800000L + random.nextInt(), DateTimeZone.UTC));
+            entry.setEntryType(random.nextInt(50));
+            entry.setCertificationType(random.nextInt(3));
+            entry.setDistributionType(random.nextInt(3));
+            if (i % 3 == 0) {
+                entry.setDescription(text(random, 20));
+                entry.setContact(text(random, 4));
+                entry.setAddress(text(random, 5));
+            }
+            entry.setWasDeleted(i % 20 == 0);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Block infos as returned by /block/info, for a block and its neighbours
+     */
+    static List<BlockInfo> blockInfos(int count) {
+        Random random = new Random(7);
+        List<BlockInfo> infos = new ArrayList<BlockInfo>(count);
+        for (int i = 0; i < count; i++) {
+            BlockInfo info = new BlockInfo();
+            info.setGeohash("u0yj" + geohash(random, 2));
+            info.setModificationDate(new DateTime(1483228800000L + random.nextInt(), DateTimeZone.UTC));
+            info.setHasBlockBeenModified(random.nextBoolean());
+            infos.add(info);
+        }
+        return infos;
+    }
+
+    private static String geohash(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(BASE32.charAt(random.nextInt(BASE32.length())));
+        }
+        return sb.toString();
+    }
+
+    private static String text(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(i % 7 == 0 ? ".\n" : " ");
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.froodyapp.api.invoker;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.froodyapp.api.api.BlockApi;
+import io.github.froodyapp.api.mock.MockFroodyServer;
+import io.github.froodyapp.api.model_.FroodyEntry;
+
+/**
+ * A burst of asynchronous /block/get calls, as sent for the blocks of the map viewport,
+ * against the MockFroodyServer with latency for each response and for each new connection
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectionBenchmark {
+    private static final String[] BLOCKS = {
+            "u0yjj3", "u0yjj6", "u0yjj7", "u0yjjk", "u0yjj9", "u0yjjd", "u0yjje", "u0yjjs",
+            "u0yjjc", "u0yjjf", "u0yjjg", "u0yjju", "u0yjm1", "u0yjm4", "u0yjm5", "u0yjmh"};
+
+    /**
+     * noPool: no idle connections are kept, every call opens a new one;
+     * default: OkHttp's defaults (5 idle connections, 5 concurrent calls per host);
+     * tuned: idle connections and concurrent calls for a whole burst
+     */
+    @Param({"noPool", "default", "tuned"})
+    public String settings;
+
+    private MockFroodyServer server;
+    private BlockApi api;
+    private DateTime since;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new MockFroodyServer().setEntriesPerBlock(20).setLatency(10, 10).setConnectionLatency(50).start();
+        ApiClient apiClient = server.createApiClient();
+        if ("noPool".equals(settings)) {
+            apiClient.setConnectionPool(0, 1);
+        } else if ("tuned".equals(settings)) {
+            apiClient.setConnectionPool(BLOCKS.length, TimeUnit.MINUTES.toMillis(5))
+                    .setMaxRequestsPerHost(BLOCKS.length);
+        }
+        api = new BlockApi(apiClient);
+        since = new DateTime(DateTimeZone.UTC).minusWeeks(4);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Benchmark
+    public int blockGetBurst() throws Exception {
+        final CountDownLatch done = new CountDownLatch(BLOCKS.length);
+        final AtomicInteger entryCount = new AtomicInteger();
+        for (String block : BLOCKS) {
+            api.blockGetGetAsync(block, since, new ApiCallback<List<FroodyEntry>>() {
+                @Override
+                public void onFailure(ApiException e, int statusCode, Map<String, List<String>> responseHeaders) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onSuccess(List<FroodyEntry> result, int statusCode, Map<String, List<String>> responseHeaders) {
+                    entryCount.addAndGet(result.size());
+                    done.countDown();
+                }
+
+                @Override
+                public void onUploadProgress(long bytesWritten, long contentLength, boolean done) {
+                }
+
+                @Override
+                public void onDownloadProgress(long bytesRead, long contentLength, boolean done) {
+                }
+            });
+        }
+        done.await();
+        return entryCount.get();
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.froodyapp.api.invoker;
+
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.github.froodyapp.api.model_.BlockInfo;
+import io.github.froodyapp.api.model_.FroodyEntry;
+
+/**
+ * JSON.deserialize of the API responses and DateTimeTypeAdapter.read
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+    private static final Type ENTRY_LIST_TYPE = new TypeToken<List<FroodyEntry>>() {}.getType();
+    private static final Type BLOCK_INFO_LIST_TYPE = new TypeToken<List<BlockInfo>>() {}.getType();
+
+    /**
+     * A /block/get response of entryCount entries
+     */
+    @State(Scope.Benchmark)
+    public static class EntriesResponse {
+        @Param({"1", "50", "500"})
+        public int entryCount;
+
+        JSON json;
+        String body;
+
+        @Setup
+        public void setUp() {
+            json = new JSON(new ApiClient());
+            body = json.serialize(BenchmarkPayloads.entries(entryCount));
+        }
+    }
+
+    /**
+     * A /block/info response, for a block and its neighbours
+     */
+    @State(Scope.Benchmark)
+    public static class BlockInfosResponse {
+        JSON json;
+        String body;
+
+        @Setup
+        public void setUp() {
+            json = new JSON(new ApiClient());
+            body = json.serialize(BenchmarkPayloads.blockInfos(9));
+        }
+    }
+
+    /**
+     * Date-times as JSON strings, in the form sent by the server and in a form needing the formatter
+     */
+    @State(Scope.Benchmark)
+    public static class DateTimes {
+        @Param({"\"2017-01-03T16:49:39.823Z\"", "\"2017-01-03T16:49:39.823+01:00\"", "\"2017-01-03T16:49:39.8234+0100\""})
+        public String dateTime;
+
+        DateTimeTypeAdapter adapter;
+
+        @Setup
+        public void setUp() {
+            adapter = new DateTimeTypeAdapter();
+        }
+    }
+
+    @Benchmark
+    public List<FroodyEntry> deserializeEntries(EntriesResponse response) {
+        return response.json.deserialize(response.body, ENTRY_LIST_TYPE);
+    }
+
+    @Benchmark
+    public List<BlockInfo> deserializeBlockInfos(BlockInfosResponse response) {
+        return response.json.deserialize(response.body, BLOCK_INFO_LIST_TYPE);
+    }
+
+    @Benchmark
+    public DateTime dateTimeTypeAdapterRead(DateTimes dateTimes) throws IOException {
+        return dateTimes.adapter.read(new JsonReader(new StringReader(dateTimes.dateTime)));
+    }
+}
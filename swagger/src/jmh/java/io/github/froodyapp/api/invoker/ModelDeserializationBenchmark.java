@@ -0,0 +1,105 @@
+package io.github.froodyapp.api.invoker;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.github.froodyapp.api.model_.FroodyEntry;
+
+/**
+ * Deserialization of a /block/get response, hand-written TypeAdapters against the reflective baseline
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelDeserializationBenchmark {
+    private static final Type ENTRY_LIST_TYPE = new TypeToken<List<FroodyEntry>>() {}.getType();
+
+    @Param({"10", "500"})
+    public int entryCount;
+
+    private Gson adapters;
+    private Gson reflective;
+    private String payload;
+    private String dateTime;
+
+    @Setup
+    public void setUp() {
+        adapters = new JSON(new ApiClient()).getGson();
+        reflective = new GsonBuilder().registerTypeAdapter(DateTime.class, new JodaDateTimeTypeAdapter()).create();
+
+        List<FroodyEntry> entries = BenchmarkPayloads.entries(entryCount);
+        payload = reflective.toJson(entries, ENTRY_LIST_TYPE);
+        dateTime = "2017-01-03T16:49:39.823Z";
+    }
+
+    @Benchmark
+    public List<FroodyEntry> entriesReflective() {
+        return reflective.fromJson(payload, ENTRY_LIST_TYPE);
+    }
+
+    @Benchmark
+    public List<FroodyEntry> entriesTypeAdapters() {
+        return adapters.fromJson(payload, ENTRY_LIST_TYPE);
+    }
+
+    @Benchmark
+    public DateTime dateTimeJoda() {
+        return JodaDateTimeTypeAdapter.FORMATTER.parseDateTime(dateTime);
+    }
+
+    @Benchmark
+    public DateTime dateTimeFastPath() {
+        return IsoDateTimeParser.parse(dateTime);
+    }
+
+    // DateTime adapter as before the fast path
+    static class JodaDateTimeTypeAdapter extends TypeAdapter<DateTime> {
+        static final DateTimeFormatter FORMATTER = ISODateTimeFormat.dateTime();
+
+        @Override
+        public void write(JsonWriter out, DateTime date) throws IOException {
+            if (date == null) {
+                out.nullValue();
+            } else {
+                out.value(FORMATTER.print(date));
+            }
+        }
+
+        @Override
+        public DateTime read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return FORMATTER.parseDateTime(in.nextString());
+        }
+    }
+}
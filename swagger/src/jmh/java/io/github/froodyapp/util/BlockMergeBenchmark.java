@@ -0,0 +1,106 @@
+package io.github.froodyapp.util;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import io.github.froodyapp.api.model_.FroodyEntry;
+
+/**
+ * Concurrent BlockCache.processEntries calls, as loaders merging /block/get chunks of different blocks do:
+ * Behind one global monitor, the way the BlockCache was locked before, against its own striped locks per block
+ * Each iteration starts with an empty cache, so the journal it keeps in memory doesn't grow across iterations
+ * Run with -t 1,2,4,8 to see how both scale with the amount of loader threads
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class BlockMergeBenchmark {
+    private static final int BLOCK_COUNT = 1024;
+    private static final int CHUNKS_PER_BLOCK = 4;
+    private static final int ENTRIES_PER_CHUNK = 16;
+    private static final int ENTRIES_PER_BLOCK = 64;
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    @Param({"global", "striped"})
+    public String locking;
+
+    private final List<List<FroodyEntry>> chunks = new ArrayList<>();
+    private final Object globalLock = new Object();
+    private final DateTime requestedAt = DateTime.now(DateTimeZone.UTC);
+    private volatile BlockCache blockCache;
+
+    @Setup
+    public void setUp() {
+        // Blocks around Berlin, as loaded for a few viewports
+        Random random = new Random(42);
+        for (int block = 0; block < BLOCK_COUNT; block++) {
+            String blockGeohash = GeohashCodec.encode(52.3 + random.nextDouble() * 0.4, 13.1 + random.nextDouble() * 0.6, 6);
+            for (int c = 0; c < CHUNKS_PER_BLOCK; c++) {
+                List<FroodyEntry> chunk = new ArrayList<>(ENTRIES_PER_CHUNK);
+                for (int i = 0; i < ENTRIES_PER_CHUNK; i++) {
+                    chunk.add(createEntry(block * ENTRIES_PER_BLOCK + random.nextInt(ENTRIES_PER_BLOCK), blockGeohash, random));
+                }
+                chunks.add(chunk);
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createCache() {
+        blockCache = new BlockCache();
+        // Nothing was saved, so no block could be evicted anyway
+        blockCache.setLimits(Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int merge() {
+        List<FroodyEntry> chunk = chunks.get(ThreadLocalRandom.current().nextInt(chunks.size()));
+        if ("global".equals(locking)) {
+            synchronized (globalLock) {
+                return blockCache.processEntries(chunk, requestedAt).size();
+            }
+        }
+        return blockCache.processEntries(chunk, requestedAt).size();
+    }
+
+    private FroodyEntry createEntry(long entryId, String blockGeohash, Random random) {
+        StringBuilder geohash = new StringBuilder(blockGeohash);
+        for (int i = geohash.length(); i < 9; i++) {
+            geohash.append(BASE32[random.nextInt(BASE32.length)]);
+        }
+        FroodyEntry entry = new FroodyEntry();
+        entry.setEntryId(entryId);
+        entry.setUserId(1L + random.nextInt(100));
+        entry.setGeohash(geohash.toString());
+        entry.setCreationDate(requestedAt);
+        entry.setModificationDate(requestedAt);
+        entry.setEntryType(random.nextInt(40));
+        entry.setCertificationType(0);
+        entry.setDistributionType(0);
+        entry.setWasDeleted(false);
+        return entry;
+    }
+}
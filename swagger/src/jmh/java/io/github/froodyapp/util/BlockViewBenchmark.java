@@ -0,0 +1,139 @@
+package io.github.froodyapp.util;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.model.CompactEntry;
+
+/**
+ * Reading the entries of a viewport from the BlockCache while a loader merges, as the map does:
+ * Walking the live blocks against reading the published BlockCacheView, which needs no locking.
+ * The writer merges /block/get chunks via processEntries in both groups, the reader scores are the interesting ones
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class BlockViewBenchmark {
+    private static final int BLOCK_COUNT = 1024;
+    private static final int ENTRIES_PER_BLOCK = 16;
+    private static final int ENTRIES_PER_CHUNK = 4;
+    private static final int PREFIX_PRECISION = 4;
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private final String[] blockGeohashes = new String[BLOCK_COUNT];
+    private final DateTime requestedAt = DateTime.now(DateTimeZone.UTC);
+    private BlockCache blockCache;
+    private long prefixKey;
+    private List<Long> viewportKeys;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // Blocks around Berlin, the viewport is the 4 char cell of the first one
+        Random random = new Random(42);
+        blockCache = new BlockCache();
+        blockCache.setLimits(Integer.MAX_VALUE, Long.MAX_VALUE);
+        List<FroodyEntry> entries = new ArrayList<>();
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            blockGeohashes[i] = GeohashCodec.encode(52.3 + random.nextDouble() * 0.4, 13.1 + random.nextDouble() * 0.6, 6);
+            for (int id = 0; id < ENTRIES_PER_BLOCK; id++) {
+                entries.add(createEntry(i * ENTRIES_PER_BLOCK + id, blockGeohashes[i], random));
+            }
+        }
+        blockCache.processEntries(entries, requestedAt);
+        prefixKey = GeohashCodec.toKey(blockGeohashes[0], PREFIX_PRECISION);
+        viewportKeys = Collections.singletonList(prefixKey);
+    }
+
+    @Benchmark
+    @Group("live")
+    @GroupThreads(2)
+    public void readLive(Blackhole blackhole) {
+        // Like queryEntries before the view
+        List<CompactEntry> result = new ArrayList<>();
+        for (BlockCache.BlockCacheItem item : blockCache.getBlockCacheItemsWithPrefix(prefixKey)) {
+            for (CompactEntry entry : item.entries.values()) {
+                if (entry.hasPosition() && entry.isWithin(90, 180, -90, -180)) {
+                    result.add(entry);
+                }
+            }
+        }
+        for (CompactEntry entry : result) {
+            blackhole.consume(entry);
+        }
+    }
+
+    @Benchmark
+    @Group("live")
+    @GroupThreads(1)
+    public int mergeLive() {
+        return merge();
+    }
+
+    @Benchmark
+    @Group("view")
+    @GroupThreads(2)
+    public void readView(Blackhole blackhole) {
+        for (CompactEntry entry : blockCache.getView().getEntriesWithin(viewportKeys, 90, 180, -90, -180)) {
+            blackhole.consume(entry);
+        }
+    }
+
+    @Benchmark
+    @Group("view")
+    @GroupThreads(1)
+    public int mergeView() {
+        return merge();
+    }
+
+    // Replace a few entries of a random block, like a chunk of a /block/get response does
+    private int merge() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int block = random.nextInt(BLOCK_COUNT);
+        List<FroodyEntry> chunk = new ArrayList<>(ENTRIES_PER_CHUNK);
+        for (int i = 0; i < ENTRIES_PER_CHUNK; i++) {
+            chunk.add(createEntry(block * ENTRIES_PER_BLOCK + random.nextInt(ENTRIES_PER_BLOCK), blockGeohashes[block], random));
+        }
+        return blockCache.processEntries(chunk, requestedAt).size();
+    }
+
+    private FroodyEntry createEntry(long entryId, String blockGeohash, Random random) {
+        StringBuilder geohash = new StringBuilder(blockGeohash);
+        for (int i = geohash.length(); i < 9; i++) {
+            geohash.append(BASE32[random.nextInt(BASE32.length)]);
+        }
+        FroodyEntry entry = new FroodyEntry();
+        entry.setEntryId(entryId);
+        entry.setUserId(1L);
+        entry.setGeohash(geohash.toString());
+        entry.setCreationDate(requestedAt);
+        entry.setModificationDate(requestedAt);
+        entry.setEntryType(random.nextInt(40));
+        entry.setWasDeleted(false);
+        return entry;
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.froodyapp.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ch.hsr.geohash.GeoHash;
+import ch.hsr.geohash.WGS84Point;
+
+/**
+ * GeohashCodec of the app against ch.hsr.geohash.GeoHash, for a batch of entry positions
+ * Run with -prof gc to compare the allocations
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeohashCodecBenchmark {
+    private static final int COUNT = 256;
+    private static final int PRECISION = 9;
+
+    private final double[] latitudes = new double[COUNT];
+    private final double[] longitudes = new double[COUNT];
+    private final String[] geohashes = new String[COUNT];
+    private final char[] buffer = new char[PRECISION];
+
+    @Setup
+    public void setUp() {
+        // Entries around Berlin, as in the blocks of a viewport
+        Random random = new Random(42);
+        for (int i = 0; i < COUNT; i++) {
+            latitudes[i] = 52.3 + random.nextDouble() * 0.4;
+            longitudes[i] = 13.1 + random.nextDouble() * 0.6;
+            geohashes[i] = GeoHash.withCharacterPrecision(latitudes[i], longitudes[i], PRECISION).toBase32();
+            if (!geohashes[i].equals(GeohashCodec.encode(latitudes[i], longitudes[i], PRECISION))) {
+                throw new IllegalStateException("GeohashCodec differs from GeoHash for " + geohashes[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void encodeLibrary(Blackhole blackhole) {
+        for (int i = 0; i < COUNT; i++) {
+            blackhole.consume(GeoHash.withCharacterPrecision(latitudes[i], longitudes[i], PRECISION).toBase32());
+        }
+    }
+
+    @Benchmark
+    public void encodeCodec(Blackhole blackhole) {
+        for (int i = 0; i < COUNT; i++) {
+            blackhole.consume(GeohashCodec.encode(latitudes[i], longitudes[i], PRECISION));
+        }
+    }
+
+    @Benchmark
+    public void encodeCodecIntoBuffer(Blackhole blackhole) {
+        for (int i = 0; i < COUNT; i++) {
+            GeohashCodec.encode(latitudes[i], longitudes[i], PRECISION, buffer, 0);
+            blackhole.consume(buffer);
+        }
+    }
+
+    @Benchmark
+    public void decodeLibrary(Blackhole blackhole) {
+        for (int i = 0; i < COUNT; i++) {
+            WGS84Point point = GeoHash.fromGeohashString(geohashes[i]).getPoint();
+            blackhole.consume(point.getLatitude());
+            blackhole.consume(point.getLongitude());
+        }
+    }
+
+    @Benchmark
+    public void decodeCodec(Blackhole blackhole) {
+        for (int i = 0; i < COUNT; i++) {
+            long bits = GeohashCodec.toBits(geohashes[i]);
+            blackhole.consume(GeohashCodec.latitudeOf(bits, PRECISION));
+            blackhole.consume(GeohashCodec.longitudeOf(bits, PRECISION));
+        }
+    }
+
+    @Benchmark
+    public void decodeCodecCached(Blackhole blackhole) {
+        for (int i = 0; i < COUNT; i++) {
+            double[] center = GeohashCodec.decodeCenter(geohashes[i]);
+            blackhole.consume(center[0]);
+            blackhole.consume(center[1]);
+        }
+    }
+}
@@ -18,6 +18,7 @@ import io.github.froodyapp.api.invoker.ApiClient;
 import io.github.froodyapp.api.invoker.ApiException;
 import io.github.froodyapp.api.invoker.ApiResponse;
 import io.github.froodyapp.api.invoker.Configuration;
+import io.github.froodyapp.api.invoker.ItemConsumer;
 import io.github.froodyapp.api.invoker.Pair;
 import io.github.froodyapp.api.invoker.ProgressRequestBody;
 import io.github.froodyapp.api.invoker.ProgressResponseBody;
@@ -27,6 +28,7 @@ import com.google.gson.reflect.TypeToken;
 import java.io.IOException;
 
 
+import io.github.froodyapp.api.model_.BlockChanges;
 import io.github.froodyapp.api.model_.BlockInfo;
 import org.joda.time.DateTime;
 import io.github.froodyapp.api.model_.FroodyEntry;
@@ -57,6 +59,119 @@ public class BlockApi {
         this.apiClient = apiClient;
     }
 
+    /* Build call for blockChangesGet */
+    private com.squareup.okhttp.Call blockChangesGetCall(List<String> geohash, Long cursor, final ProgressResponseBody.ProgressListener progressListener, final ProgressRequestBody.ProgressRequestListener progressRequestListener) throws ApiException {
+        Object localVarPostBody = null;
+        
+        // create path and map variables
+        String localVarPath = "/block/changes".replaceAll("\\{format\\}","json");
+
+        List<Pair> localVarQueryParams = new ArrayList<Pair>();
+        if (geohash != null)
+        localVarQueryParams.addAll(apiClient.parameterToPairs("multi", "geohash", geohash));
+        if (cursor != null)
+        localVarQueryParams.addAll(apiClient.parameterToPairs("", "cursor", cursor));
+
+        Map<String, String> localVarHeaderParams = new HashMap<String, String>();
+
+        Map<String, Object> localVarFormParams = new HashMap<String, Object>();
+
+        final String[] localVarAccepts = {
+            "application/json"
+        };
+        final String localVarAccept = apiClient.selectHeaderAccept(localVarAccepts);
+        if (localVarAccept != null) localVarHeaderParams.put("Accept", localVarAccept);
+
+        final String[] localVarContentTypes = {
+            
+        };
+        final String localVarContentType = apiClient.selectHeaderContentType(localVarContentTypes);
+        localVarHeaderParams.put("Content-Type", localVarContentType);
+
+        String[] localVarAuthNames = new String[] {  };
+        return apiClient.buildCall(localVarPath, "GET", localVarQueryParams, localVarPostBody, localVarHeaderParams, localVarFormParams, localVarAuthNames, progressRequestListener, progressListener);
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private com.squareup.okhttp.Call blockChangesGetValidateBeforeCall(List<String> geohash, Long cursor, final ProgressResponseBody.ProgressListener progressListener, final ProgressRequestBody.ProgressRequestListener progressRequestListener) throws ApiException {
+        
+        // verify the required parameter 'geohash' is set
+        if (geohash == null || geohash.isEmpty()) {
+            throw new ApiException("Missing the required parameter 'geohash' when calling blockChangesGet(Async)");
+        }
+        
+        
+        com.squareup.okhttp.Call call = blockChangesGetCall(geohash, cursor, progressListener, progressRequestListener);
+        return call;
+
+        
+        
+        
+        
+    }
+
+    /**
+     * 
+     * Entry[ ] ** Get the entries changed within several blocks since a cursor, in one request
+     * @param geohash Entry.geohash ** Geohash prefixes of the blocks to sync (required)
+     * @param cursor BlockChanges.cursor ** Cursor returned by the last sync of these blocks. Omit or pass 0 to get all entries. A cursor the server does not know anymore is answered with 410 (optional)
+     * @return BlockChanges
+     * @throws ApiException If fail to call the API, e.g. server error or cannot deserialize the response body
+     */
+    public BlockChanges blockChangesGet(List<String> geohash, Long cursor) throws ApiException {
+        ApiResponse<BlockChanges> resp = blockChangesGetWithHttpInfo(geohash, cursor);
+        return resp.getData();
+    }
+
+    /**
+     * 
+     * Entry[ ] ** Get the entries changed within several blocks since a cursor, in one request
+     * @param geohash Entry.geohash ** Geohash prefixes of the blocks to sync (required)
+     * @param cursor BlockChanges.cursor ** Cursor returned by the last sync of these blocks. Omit or pass 0 to get all entries. A cursor the server does not know anymore is answered with 410 (optional)
+     * @return ApiResponse&lt;BlockChanges&gt;
+     * @throws ApiException If fail to call the API, e.g. server error or cannot deserialize the response body
+     */
+    public ApiResponse<BlockChanges> blockChangesGetWithHttpInfo(List<String> geohash, Long cursor) throws ApiException {
+        com.squareup.okhttp.Call call = blockChangesGetValidateBeforeCall(geohash, cursor, null, null);
+        Type localVarReturnType = new TypeToken<BlockChanges>(){}.getType();
+        return apiClient.execute(call, localVarReturnType);
+    }
+
+    /**
+     *  (asynchronously)
+     * Entry[ ] ** Get the entries changed within several blocks since a cursor, in one request
+     * @param geohash Entry.geohash ** Geohash prefixes of the blocks to sync (required)
+     * @param cursor BlockChanges.cursor ** Cursor returned by the last sync of these blocks. Omit or pass 0 to get all entries. A cursor the server does not know anymore is answered with 410 (optional)
+     * @param callback The callback to be executed when the API call finishes
+     * @return The request call
+     * @throws ApiException If fail to process the API call, e.g. serializing the request body object
+     */
+    public com.squareup.okhttp.Call blockChangesGetAsync(List<String> geohash, Long cursor, final ApiCallback<BlockChanges> callback) throws ApiException {
+
+        ProgressResponseBody.ProgressListener progressListener = null;
+        ProgressRequestBody.ProgressRequestListener progressRequestListener = null;
+
+        if (callback != null) {
+            progressListener = new ProgressResponseBody.ProgressListener() {
+                @Override
+                public void update(long bytesRead, long contentLength, boolean done) {
+                    callback.onDownloadProgress(bytesRead, contentLength, done);
+                }
+            };
+
+            progressRequestListener = new ProgressRequestBody.ProgressRequestListener() {
+                @Override
+                public void onRequestProgress(long bytesWritten, long contentLength, boolean done) {
+                    callback.onUploadProgress(bytesWritten, contentLength, done);
+                }
+            };
+        }
+
+        com.squareup.okhttp.Call call = blockChangesGetValidateBeforeCall(geohash, cursor, progressListener, progressRequestListener);
+        Type localVarReturnType = new TypeToken<BlockChanges>(){}.getType();
+        apiClient.executeAsync(call, localVarReturnType, callback);
+        return call;
+    }
     /* Build call for blockGetGet */
     private com.squareup.okhttp.Call blockGetGetCall(String geohash, DateTime minModificationDate, final ProgressResponseBody.ProgressListener progressListener, final ProgressRequestBody.ProgressRequestListener progressRequestListener) throws ApiException {
         Object localVarPostBody = null;
@@ -86,20 +201,8 @@ public class BlockApi {
         final String localVarContentType = apiClient.selectHeaderContentType(localVarContentTypes);
         localVarHeaderParams.put("Content-Type", localVarContentType);
 
-        if(progressListener != null) {
-            apiClient.getHttpClient().networkInterceptors().add(new com.squareup.okhttp.Interceptor() {
-                @Override
-                public com.squareup.okhttp.Response intercept(com.squareup.okhttp.Interceptor.Chain chain) throws IOException {
-                    com.squareup.okhttp.Response originalResponse = chain.proceed(chain.request());
-                    return originalResponse.newBuilder()
-                    .body(new ProgressResponseBody(originalResponse.body(), progressListener))
-                    .build();
-                }
-            });
-        }
-
         String[] localVarAuthNames = new String[] {  };
-        return apiClient.buildCall(localVarPath, "GET", localVarQueryParams, localVarPostBody, localVarHeaderParams, localVarFormParams, localVarAuthNames, progressRequestListener);
+        return apiClient.buildCall(localVarPath, "GET", localVarQueryParams, localVarPostBody, localVarHeaderParams, localVarFormParams, localVarAuthNames, progressRequestListener, progressListener);
     }
     
     @SuppressWarnings("rawtypes")
@@ -152,6 +255,34 @@ public class BlockApi {
         return apiClient.execute(call, localVarReturnType);
     }
 
+    /**
+     * 
+     * Entry[ ] ** Get entries contained in block, passing each entry to the consumer while the response is read
+     * @param geohash Entry.geohash ** Geohash which should be matched (required)
+     * @param minModificationDate BlockInfo.modificationDate ** Timestamp of last known block modification (required)
+     * @param consumer The consumer receiving each entry (required)
+     * @return The count of entries passed to the consumer
+     * @throws ApiException If fail to call the API, e.g. server error or cannot deserialize the response body
+     */
+    public int blockGetGetStream(String geohash, DateTime minModificationDate, ItemConsumer<FroodyEntry> consumer) throws ApiException {
+        ApiResponse<Integer> resp = blockGetGetStreamWithHttpInfo(geohash, minModificationDate, consumer);
+        return resp.getData();
+    }
+
+    /**
+     * 
+     * Entry[ ] ** Get entries contained in block, passing each entry to the consumer while the response is read
+     * @param geohash Entry.geohash ** Geohash which should be matched (required)
+     * @param minModificationDate BlockInfo.modificationDate ** Timestamp of last known block modification (required)
+     * @param consumer The consumer receiving each entry (required)
+     * @return ApiResponse&lt;Integer&gt; with the count of entries passed to the consumer
+     * @throws ApiException If fail to call the API, e.g. server error or cannot deserialize the response body
+     */
+    public ApiResponse<Integer> blockGetGetStreamWithHttpInfo(String geohash, DateTime minModificationDate, ItemConsumer<FroodyEntry> consumer) throws ApiException {
+        com.squareup.okhttp.Call call = blockGetGetValidateBeforeCall(geohash, minModificationDate, null, null);
+        return apiClient.executeStream(call, FroodyEntry.class, consumer);
+    }
+
     /**
      *  (asynchronously)
      * Entry[ ] ** Get entries contained in block
@@ -216,20 +347,8 @@ public class BlockApi {
         final String localVarContentType = apiClient.selectHeaderContentType(localVarContentTypes);
         localVarHeaderParams.put("Content-Type", localVarContentType);
 
-        if(progressListener != null) {
-            apiClient.getHttpClient().networkInterceptors().add(new com.squareup.okhttp.Interceptor() {
-                @Override
-                public com.squareup.okhttp.Response intercept(com.squareup.okhttp.Interceptor.Chain chain) throws IOException {
-                    com.squareup.okhttp.Response originalResponse = chain.proceed(chain.request());
-                    return originalResponse.newBuilder()
-                    .body(new ProgressResponseBody(originalResponse.body(), progressListener))
-                    .build();
-                }
-            });
-        }
-
         String[] localVarAuthNames = new String[] {  };
-        return apiClient.buildCall(localVarPath, "GET", localVarQueryParams, localVarPostBody, localVarHeaderParams, localVarFormParams, localVarAuthNames, progressRequestListener);
+        return apiClient.buildCall(localVarPath, "GET", localVarQueryParams, localVarPostBody, localVarHeaderParams, localVarFormParams, localVarAuthNames, progressRequestListener, progressListener);
     }
     
     @SuppressWarnings("rawtypes")
@@ -13,8 +13,10 @@
 
 package io.github.froodyapp.api.invoker;
 
+import com.squareup.okhttp.Cache;
 import com.squareup.okhttp.Call;
 import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.ConnectionPool;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
 import com.squareup.okhttp.Response;
@@ -22,13 +24,18 @@ import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.FormEncodingBuilder;
 import com.squareup.okhttp.MultipartBuilder;
 import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
 import com.squareup.okhttp.Headers;
+import com.squareup.okhttp.HttpUrl;
 import com.squareup.okhttp.internal.http.HttpMethod;
 import com.squareup.okhttp.logging.HttpLoggingInterceptor;
 import com.squareup.okhttp.logging.HttpLoggingInterceptor.Level;
 
+import com.google.gson.JsonParseException;
+
 import java.lang.reflect.Type;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -38,6 +45,7 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -48,6 +56,7 @@ import java.net.URLConnection;
 import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 
 import java.security.GeneralSecurityException;
@@ -133,11 +142,31 @@ public class ApiClient {
 
     private HttpLoggingInterceptor loggingInterceptor;
 
+    private ApiMetrics metrics;
+    private MetricsInterceptor metricsInterceptor;
+
+    private boolean requestCompression = false;
+
+    private Map<String, Integer> callTimeouts = new ConcurrentHashMap<String, Integer>();
+
+    private RetryPolicy retryPolicy;
+    private Map<String, RetryPolicy> retryPolicies = new ConcurrentHashMap<String, RetryPolicy>();
+    private int circuitBreakerThreshold = 0;
+    private long circuitBreakerOpenMillis = 0;
+    private ResilienceInterceptor resilienceInterceptor;
+
+    private Map<String, CachePolicy> cachePolicies = new ConcurrentHashMap<String, CachePolicy>();
+    private CachePolicyInterceptor cachePolicyInterceptor;
+    private StaleWhileRevalidateInterceptor staleWhileRevalidateInterceptor;
+
     /*
      * Constructor for ApiClient
      */
     public ApiClient() {
         httpClient = new OkHttpClient();
+        resilienceInterceptor = new ResilienceInterceptor(this);
+        httpClient.interceptors().add(resilienceInterceptor);
+        httpClient.interceptors().add(new CompressionInterceptor(this));
 
         verifyingSsl = true;
 
@@ -566,7 +595,8 @@ public class ApiClient {
             if (debugging) {
                 loggingInterceptor = new HttpLoggingInterceptor();
                 loggingInterceptor.setLevel(Level.BODY);
-                httpClient.interceptors().add(loggingInterceptor);
+                // Outermost, to log the inflated response bodies
+                httpClient.interceptors().add(0, loggingInterceptor);
             } else {
                 httpClient.interceptors().remove(loggingInterceptor);
                 loggingInterceptor = null;
@@ -576,6 +606,46 @@ public class ApiClient {
         return this;
     }
 
+    /**
+     * Check whether request metrics are recorded.
+     *
+     * @return True if metrics are enabled
+     */
+    public boolean isMetricsEnabled() {
+        return metricsInterceptor != null;
+    }
+
+    /**
+     * Enable/disable recording request metrics per endpoint, see {@link #getMetrics()}.
+     *
+     * @param metricsEnabled To enable (true) or disable (false) metrics
+     * @return ApiClient
+     */
+    public ApiClient setMetricsEnabled(boolean metricsEnabled) {
+        if (metricsEnabled && metricsInterceptor == null) {
+            metrics = new ApiMetrics();
+            metricsInterceptor = new MetricsInterceptor(this, metrics);
+            // Outermost, to time the calls including cache and retries
+            httpClient.interceptors().add(0, metricsInterceptor);
+            httpClient.networkInterceptors().add(metricsInterceptor.networkInterceptor);
+        } else if (!metricsEnabled && metricsInterceptor != null) {
+            httpClient.interceptors().remove(metricsInterceptor);
+            httpClient.networkInterceptors().remove(metricsInterceptor.networkInterceptor);
+            metricsInterceptor = null;
+        }
+        return this;
+    }
+
+    /**
+     * Get the request metrics recorded since they were enabled.
+     * They are kept after disabling them, until they are enabled again.
+     *
+     * @return The metrics, or null if they were never enabled
+     */
+    public ApiMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * The path of temporary folder used to store downloaded files from endpoints
      * with file response. The default value is <code>null</code>, i.e. using
@@ -620,6 +690,379 @@ public class ApiClient {
         return this;
     }
 
+    /**
+     * Get read timeout (in milliseconds).
+     *
+     * @return Timeout in milliseconds
+     */
+    public int getReadTimeout() {
+        return httpClient.getReadTimeout();
+    }
+
+    /**
+     * Sets the read timeout (in milliseconds), the maximum time between two reads of a response.
+     * A value of 0 means no timeout.
+     *
+     * @param readTimeout read timeout in milliseconds
+     * @return Api client
+     */
+    public ApiClient setReadTimeout(int readTimeout) {
+        httpClient.setReadTimeout(readTimeout, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Get write timeout (in milliseconds).
+     *
+     * @return Timeout in milliseconds
+     */
+    public int getWriteTimeout() {
+        return httpClient.getWriteTimeout();
+    }
+
+    /**
+     * Sets the write timeout (in milliseconds), the maximum time between two writes of a request.
+     * A value of 0 means no timeout.
+     *
+     * @param writeTimeout write timeout in milliseconds
+     * @return Api client
+     */
+    public ApiClient setWriteTimeout(int writeTimeout) {
+        httpClient.setWriteTimeout(writeTimeout, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Get the read and write timeout of the calls to an endpoint.
+     *
+     * @param path Path of the endpoint, e.g. "/block/get"
+     * @return Timeout in milliseconds, or null if the client's timeouts are used
+     */
+    public Integer getCallTimeout(String path) {
+        return callTimeouts.get(path);
+    }
+
+    /**
+     * Sets the read and write timeout of the calls to an endpoint (in milliseconds),
+     * e.g. a longer one for big responses. The connect timeout stays the one of the client.
+     *
+     * @param path Path of the endpoint, e.g. "/block/get"
+     * @param timeout Timeout in milliseconds, or null to use the client's timeouts
+     * @return Api client
+     */
+    public ApiClient setCallTimeout(String path, Integer timeout) {
+        if (timeout == null) {
+            callTimeouts.remove(path);
+        } else {
+            callTimeouts.put(path, timeout);
+        }
+        return this;
+    }
+
+    /**
+     * Replace the connection pool. Connections to the server are kept alive and reused
+     * by later calls, saving the TCP and TLS handshakes.
+     *
+     * @param maxIdleConnections Maximum count of idle connections kept alive
+     * @param keepAliveDuration How long an idle connection is kept alive (in milliseconds)
+     * @return Api client
+     */
+    public ApiClient setConnectionPool(int maxIdleConnections, long keepAliveDuration) {
+        httpClient.setConnectionPool(new ConnectionPool(maxIdleConnections, keepAliveDuration));
+        return this;
+    }
+
+    /**
+     * Get the maximum count of asynchronous calls executing concurrently.
+     *
+     * @return Maximum count of calls
+     */
+    public int getMaxRequests() {
+        return httpClient.getDispatcher().getMaxRequests();
+    }
+
+    /**
+     * Sets the maximum count of asynchronous calls executing concurrently, further calls are queued.
+     * Synchronous calls are not limited.
+     *
+     * @param maxRequests Maximum count of calls
+     * @return Api client
+     */
+    public ApiClient setMaxRequests(int maxRequests) {
+        httpClient.getDispatcher().setMaxRequests(maxRequests);
+        return this;
+    }
+
+    /**
+     * Get the maximum count of asynchronous calls executing concurrently per host.
+     *
+     * @return Maximum count of calls
+     */
+    public int getMaxRequestsPerHost() {
+        return httpClient.getDispatcher().getMaxRequestsPerHost();
+    }
+
+    /**
+     * Sets the maximum count of asynchronous calls executing concurrently per host, further calls are queued.
+     * Synchronous calls are not limited.
+     *
+     * @param maxRequestsPerHost Maximum count of calls
+     * @return Api client
+     */
+    public ApiClient setMaxRequestsPerHost(int maxRequestsPerHost) {
+        httpClient.getDispatcher().setMaxRequestsPerHost(maxRequestsPerHost);
+        return this;
+    }
+
+    /**
+     * Check whether HTTP/2 may be negotiated with the server.
+     *
+     * @return True if HTTP/2 is enabled
+     */
+    public boolean isHttp2Enabled() {
+        // No protocols set means OkHttp's defaults, which include HTTP/2
+        List<Protocol> protocols = httpClient.getProtocols();
+        return protocols == null || protocols.contains(Protocol.HTTP_2);
+    }
+
+    /**
+     * Enable/disable HTTP/2, which multiplexes concurrent calls over one connection.
+     * It is negotiated with ALPN on HTTPS connections, so it needs server and platform support.
+     *
+     * @param http2Enabled To enable (true) or disable (false) HTTP/2
+     * @return Api client
+     */
+    public ApiClient setHttp2Enabled(boolean http2Enabled) {
+        if (http2Enabled) {
+            httpClient.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        } else {
+            httpClient.setProtocols(Arrays.asList(Protocol.HTTP_1_1));
+        }
+        return this;
+    }
+
+    /**
+     * Get the retry policy of failed idempotent calls.
+     *
+     * @return Retry policy, or null if calls are not retried
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Set the retry policy of failed idempotent calls (GET, HEAD). They are retried on network errors
+     * and on the status codes 408, 429 and 5xx (except 501 and 505), after a jittered exponential backoff.
+     *
+     * @param retryPolicy Retry policy, or null to not retry calls
+     * @return ApiClient
+     */
+    public ApiClient setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * Get the retry policy of an endpoint.
+     *
+     * @param path Path of the endpoint, e.g. "/block/get"
+     * @return Retry policy, or null if the client's retry policy is used
+     */
+    public RetryPolicy getRetryPolicy(String path) {
+        return retryPolicies.get(path);
+    }
+
+    /**
+     * Set the retry policy of an endpoint instead of the client's one, e.g. RetryPolicy.NONE
+     * for calls whose failures are retried by the caller, so they are not retried twice.
+     *
+     * @param path Path of the endpoint, e.g. "/block/get"
+     * @param retryPolicy Retry policy, or null to use the client's retry policy
+     * @return ApiClient
+     */
+    public ApiClient setRetryPolicy(String path, RetryPolicy retryPolicy) {
+        if (retryPolicy == null) {
+            retryPolicies.remove(path);
+        } else {
+            retryPolicies.put(path, retryPolicy);
+        }
+        return this;
+    }
+
+    /**
+     * Get the retry policy of the endpoint of an URL below the base path.
+     *
+     * @param url URL of a request
+     * @return The endpoint's retry policy, else the client's one, null if calls are not retried
+     */
+    RetryPolicy getRetryPolicy(HttpUrl url) {
+        if (!retryPolicies.isEmpty()) {
+            String path = url.encodedPath();
+            for (Entry<String, RetryPolicy> policy : retryPolicies.entrySet()) {
+                if (path.endsWith(policy.getKey())) {
+                    return policy.getValue();
+                }
+            }
+        }
+        return retryPolicy;
+    }
+
+    /**
+     * Enable/disable a circuit breaker per host. After failureThreshold consecutive failures
+     * (network errors, status codes 408, 429 and 5xx except 501 and 505) calls to the host fail immediately
+     * with a CircuitOpenException for openMillis, then a single probe call is let through.
+     * Resets the state of the existing breakers.
+     *
+     * @param failureThreshold Count of consecutive failures opening a breaker, 0 to disable circuit breakers
+     * @param openMillis Time a breaker stays open
+     * @return ApiClient
+     */
+    public ApiClient setCircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold < 0 || openMillis < 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.circuitBreakerThreshold = failureThreshold;
+        this.circuitBreakerOpenMillis = openMillis;
+        resilienceInterceptor.resetCircuitBreakers();
+        return this;
+    }
+
+    /**
+     * @return Count of consecutive failures opening a circuit breaker, 0 if they are disabled
+     */
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    /**
+     * @return Time a circuit breaker stays open (in milliseconds)
+     */
+    public long getCircuitBreakerOpenMillis() {
+        return circuitBreakerOpenMillis;
+    }
+
+    /**
+     * Get the circuit breaker of a host, e.g. to check its state.
+     *
+     * @param host Host, with ":port" if it is not the default port of the scheme
+     * @return The circuit breaker, or null if circuit breakers are disabled or the host was not called yet
+     */
+    public CircuitBreaker getCircuitBreaker(String host) {
+        return resilienceInterceptor.getCircuitBreaker(host, false);
+    }
+
+    /**
+     * Check whether request bodies are gzipped when the server accepts it.
+     *
+     * @return True if request compression is enabled
+     */
+    public boolean isRequestCompression() {
+        return requestCompression;
+    }
+
+    /**
+     * Enable/disable gzipping request bodies. They are only compressed once the server announced
+     * it accepts gzip with an Accept-Encoding response header, and when they are big enough to gain from it.
+     * Responses are always requested and inflated with gzip or deflate.
+     *
+     * @param requestCompression To enable (true) or disable (false) request compression
+     * @return ApiClient
+     */
+    public ApiClient setRequestCompression(boolean requestCompression) {
+        this.requestCompression = requestCompression;
+        return this;
+    }
+
+    /**
+     * Enable the HTTP response cache, stored in the given directory.
+     * Only responses of endpoints with a cache policy, or with caching headers sent by the server, are cached.
+     *
+     * @see #setCachePolicy(String, CachePolicy)
+     * @param directory Directory of the cache, used exclusively by it
+     * @param maxSizeBytes Maximum size of the cache, least recently used responses are evicted
+     * @return ApiClient
+     */
+    public ApiClient enableCache(File directory, long maxSizeBytes) {
+        httpClient.setCache(new Cache(directory, maxSizeBytes));
+        if (cachePolicyInterceptor == null) {
+            cachePolicyInterceptor = new CachePolicyInterceptor(this);
+            staleWhileRevalidateInterceptor = new StaleWhileRevalidateInterceptor(this);
+            httpClient.networkInterceptors().add(cachePolicyInterceptor);
+            httpClient.interceptors().add(staleWhileRevalidateInterceptor);
+        }
+        return this;
+    }
+
+    /**
+     * Disable the HTTP response cache. The cached responses stay on disk.
+     *
+     * @return ApiClient
+     */
+    public ApiClient disableCache() {
+        httpClient.setCache(null);
+        if (cachePolicyInterceptor != null) {
+            httpClient.networkInterceptors().remove(cachePolicyInterceptor);
+            httpClient.interceptors().remove(staleWhileRevalidateInterceptor);
+            cachePolicyInterceptor = null;
+            staleWhileRevalidateInterceptor = null;
+        }
+        return this;
+    }
+
+    /**
+     * Get the HTTP response cache, e.g. for its hit counts.
+     *
+     * @return The cache, or null if it is disabled
+     */
+    public Cache getCache() {
+        return httpClient.getCache();
+    }
+
+    /**
+     * Set the cache policy of an endpoint, which overrides the caching headers of its GET responses.
+     *
+     * @param path Path of the endpoint, e.g. "/block/info"
+     * @param policy Cache policy, or null to remove it
+     * @return ApiClient
+     */
+    public ApiClient setCachePolicy(String path, CachePolicy policy) {
+        if (policy == null) {
+            cachePolicies.remove(path);
+        } else {
+            cachePolicies.put(path, policy);
+        }
+        return this;
+    }
+
+    /**
+     * Get the cache policy of an endpoint.
+     *
+     * @param path Path of the endpoint, e.g. "/block/info"
+     * @return Cache policy, or null if none is set
+     */
+    public CachePolicy getCachePolicy(String path) {
+        return cachePolicies.get(path);
+    }
+
+    /**
+     * Get the cache policy of the endpoint of an URL below the base path.
+     *
+     * @param url URL of a request
+     * @return Cache policy, or null if none is set
+     */
+    CachePolicy getCachePolicy(HttpUrl url) {
+        if (cachePolicies.isEmpty()) {
+            return null;
+        }
+        String path = url.encodedPath();
+        for (Entry<String, CachePolicy> policy : cachePolicies.entrySet()) {
+            if (path.endsWith(policy.getKey())) {
+                return policy.getValue();
+            }
+        }
+        return null;
+    }
+
     /**
      * Format the given parameter object into string.
      *
@@ -1047,6 +1490,101 @@ public class ApiClient {
         }
     }
 
+    /**
+     * Execute HTTP call and deserialize the JSON array in the response body item by item,
+     * passing each item to the consumer while the body is still being read.
+     *
+     * @param <T> The item type corresponding to (same with) itemType
+     * @param call Call
+     * @param itemType The type of each item of the JSON array
+     * @param consumer The consumer receiving each item
+     * @return ApiResponse object containing response status, headers and
+     *   the count of items passed to the consumer
+     * @throws ApiException If fail to execute the call or to deserialize the response body
+     */
+    public <T> ApiResponse<Integer> executeStream(Call call, Type itemType, ItemConsumer<T> consumer) throws ApiException {
+        try {
+            Response response = call.execute();
+            int count = handleStreamResponse(response, itemType, consumer);
+            return new ApiResponse<Integer>(response.code(), response.headers().toMultimap(), count);
+        } catch (IOException e) {
+            throw new ApiException(e);
+        }
+    }
+
+    /**
+     * Handle the given response, pass the items of the JSON array to the consumer when the response is successful.
+     *
+     * @param <T> Type
+     * @param response Response
+     * @param itemType The type of each item of the JSON array
+     * @param consumer The consumer receiving each item
+     * @throws ApiException If the response has a unsuccessful status code or
+     *   fail to deserialize the response body
+     * @return The count of items passed to the consumer
+     */
+    public <T> int handleStreamResponse(Response response, Type itemType, ItemConsumer<T> consumer) throws ApiException {
+        if (!response.isSuccessful()) {
+            // Throws with the error body
+            handleResponse(response, null);
+        }
+        if (response.code() == 204) {
+            return 0;
+        }
+        return deserializeStream(response, itemType, consumer);
+    }
+
+    /**
+     * Deserialize the JSON array in the response body item by item, reading the body as a stream
+     * instead of as a whole string.
+     *
+     * @param <T> Type
+     * @param response HTTP response
+     * @param itemType The type of each item of the JSON array
+     * @param consumer The consumer receiving each item
+     * @return The count of items passed to the consumer
+     * @throws ApiException If fail to deserialize response body, i.e. cannot read response body
+     *   or the Content-Type of the response is not JSON.
+     */
+    public <T> int deserializeStream(Response response, Type itemType, ItemConsumer<T> consumer) throws ApiException {
+        if (response == null || response.body() == null) {
+            return 0;
+        }
+
+        String contentType = response.headers().get("Content-Type");
+        if (contentType == null) {
+            // ensuring a default content type
+            contentType = "application/json";
+        }
+        if (!isJsonMime(contentType)) {
+            throw new ApiException(
+                    "Content type \"" + contentType + "\" is not supported for streaming",
+                    response.code(),
+                    response.headers().toMultimap(),
+                    null);
+        }
+
+        Reader reader = null;
+        try {
+            reader = response.body().charStream();
+            return json.deserializeStream(reader, itemType, consumer);
+        } catch (IOException e) {
+            throw new ApiException(e);
+        } catch (JsonParseException e) {
+            throw new ApiException(e);
+        } catch (IllegalStateException e) {
+            // Thrown by the JsonReader, if the body is not a JSON array
+            throw new ApiException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
     /**
      * Build HTTP call with the given options.
      *
@@ -1062,6 +1600,25 @@ public class ApiClient {
      * @throws ApiException If fail to serialize the request body object
      */
     public Call buildCall(String path, String method, List<Pair> queryParams, Object body, Map<String, String> headerParams, Map<String, Object> formParams, String[] authNames, ProgressRequestBody.ProgressRequestListener progressRequestListener) throws ApiException {
+        return buildCall(path, method, queryParams, body, headerParams, formParams, authNames, progressRequestListener, null);
+    }
+
+    /**
+     * Build HTTP call with the given options.
+     *
+     * @param path The sub-path of the HTTP URL
+     * @param method The request method, one of "GET", "HEAD", "OPTIONS", "POST", "PUT", "PATCH" and "DELETE"
+     * @param queryParams The query parameters
+     * @param body The request body object
+     * @param headerParams The header parameters
+     * @param formParams The form parameters
+     * @param authNames The authentications to apply
+     * @param progressRequestListener Progress request listener
+     * @param progressListener Progress listener of the response, only applied to this call
+     * @return The HTTP call
+     * @throws ApiException If fail to serialize the request body object
+     */
+    public Call buildCall(String path, String method, List<Pair> queryParams, Object body, Map<String, String> headerParams, Map<String, Object> formParams, String[] authNames, ProgressRequestBody.ProgressRequestListener progressRequestListener, final ProgressResponseBody.ProgressListener progressListener) throws ApiException {
         updateParamsForAuth(authNames, queryParams, headerParams);
 
         final String url = buildUrl(path, queryParams);
@@ -1102,7 +1659,39 @@ public class ApiClient {
             request = reqBuilder.method(method, reqBody).build();
         }
 
-        return httpClient.newCall(request);
+        return getHttpClient(path, progressListener).newCall(request);
+    }
+
+    /**
+     * The HTTP client for a call to the given endpoint, with its call timeout and progress listener if it has them.
+     *
+     * @param path The sub-path of the HTTP URL
+     * @param progressListener Progress listener of the response, or null
+     * @return The HTTP client
+     */
+    private OkHttpClient getHttpClient(String path, final ProgressResponseBody.ProgressListener progressListener) {
+        Integer timeout = callTimeouts.isEmpty() ? null : callTimeouts.get(path);
+        if (timeout == null && progressListener == null) {
+            return httpClient;
+        }
+        // Shares pool, dispatcher, cache and interceptors with the original
+        OkHttpClient client = httpClient.clone();
+        if (timeout != null) {
+            client.setReadTimeout(timeout, TimeUnit.MILLISECONDS);
+            client.setWriteTimeout(timeout, TimeUnit.MILLISECONDS);
+        }
+        if (progressListener != null) {
+            client.networkInterceptors().add(new com.squareup.okhttp.Interceptor() {
+                @Override
+                public Response intercept(com.squareup.okhttp.Interceptor.Chain chain) throws IOException {
+                    Response originalResponse = chain.proceed(chain.request());
+                    return originalResponse.newBuilder()
+                            .body(new ProgressResponseBody(originalResponse.body(), progressListener))
+                            .build();
+                }
+            });
+        }
+        return client;
     }
 
     /**
@@ -0,0 +1,292 @@
+package io.github.froodyapp.api.invoker;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Request metrics of an ApiClient per endpoint ("GET /block/get"): call count, latency histogram,
+ * bytes in and out on the wire, retries, cache hits and error codes.
+ * Recorded by the MetricsInterceptor, enabled with {@link ApiClient#setMetricsEnabled(boolean)}.
+ */
+public final class ApiMetrics {
+    /**
+     * Upper bounds of the latency histogram buckets in milliseconds, the last bucket is unbounded
+     */
+    static final long[] LATENCY_BUCKETS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, Long.MAX_VALUE};
+
+    /**
+     * Error code recorded for calls failing without response, e.g. on timeouts
+     */
+    public static final int NETWORK_ERROR = 0;
+
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+
+    Endpoint endpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            Endpoint created = new Endpoint();
+            endpoint = endpoints.putIfAbsent(name, created);
+            if (endpoint == null) {
+                endpoint = created;
+            }
+        }
+        return endpoint;
+    }
+
+    /**
+     * Current metrics of all endpoints which were called
+     *
+     * @return Snapshots by endpoint, sorted by endpoint
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> snapshots = new TreeMap<String, Snapshot>();
+        for (Map.Entry<String, Endpoint> endpoint : endpoints.entrySet()) {
+            snapshots.put(endpoint.getKey(), endpoint.getValue().snapshot());
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    /**
+     * Forget all recorded metrics
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * Human readable table of the metrics, for logs
+     *
+     * @return Multi-line text
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder("endpoint: calls, p50/p90/p99/max ms, in/out bytes, cache hits/304s, retries, errors\n");
+        for (Map.Entry<String, Snapshot> endpoint : snapshot().entrySet()) {
+            Snapshot s = endpoint.getValue();
+            sb.append(endpoint.getKey()).append(": ")
+                    .append(s.getCallCount()).append(", ")
+                    .append(s.getLatencyPercentileMillis(50)).append('/')
+                    .append(s.getLatencyPercentileMillis(90)).append('/')
+                    .append(s.getLatencyPercentileMillis(99)).append('/')
+                    .append(s.getMaxLatencyMillis()).append(", ")
+                    .append(s.getBytesIn()).append('/').append(s.getBytesOut()).append(", ")
+                    .append(s.getCacheHits()).append('/').append(s.getConditionalCacheHits()).append(", ")
+                    .append(s.getRetries()).append(", ")
+                    .append(s.getErrorCounts()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+
+    /**
+     * Recorder of the metrics of an endpoint
+     */
+    static final class Endpoint {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLongArray latencyBuckets = new AtomicLongArray(LATENCY_BUCKETS_MILLIS.length);
+        private final AtomicLong latencySumMillis = new AtomicLong();
+        private final AtomicLong maxLatencyMillis = new AtomicLong();
+        private final AtomicLong bytesIn = new AtomicLong();
+        private final AtomicLong bytesOut = new AtomicLong();
+        private final AtomicLong cacheHits = new AtomicLong();
+        private final AtomicLong conditionalCacheHits = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final ConcurrentHashMap<Integer, AtomicLong> errorCounts = new ConcurrentHashMap<Integer, AtomicLong>();
+
+        void recordCall(long latencyMillis, int retryCount) {
+            calls.incrementAndGet();
+            int bucket = 0;
+            while (latencyMillis > LATENCY_BUCKETS_MILLIS[bucket]) {
+                bucket++;
+            }
+            latencyBuckets.incrementAndGet(bucket);
+            latencySumMillis.addAndGet(latencyMillis);
+            long max;
+            do {
+                max = maxLatencyMillis.get();
+            } while (latencyMillis > max && !maxLatencyMillis.compareAndSet(max, latencyMillis));
+            if (retryCount > 0) {
+                retries.addAndGet(retryCount);
+            }
+        }
+
+        void recordError(int code) {
+            AtomicLong count = errorCounts.putIfAbsent(code, new AtomicLong(1));
+            if (count != null) {
+                count.incrementAndGet();
+            }
+        }
+
+        void recordCacheHit(boolean conditional) {
+            (conditional ? conditionalCacheHits : cacheHits).incrementAndGet();
+        }
+
+        void addBytesIn(long bytes) {
+            bytesIn.addAndGet(bytes);
+        }
+
+        void addBytesOut(long bytes) {
+            bytesOut.addAndGet(bytes);
+        }
+
+        Snapshot snapshot() {
+            long[] buckets = new long[latencyBuckets.length()];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = latencyBuckets.get(i);
+            }
+            Map<Integer, Long> errors = new TreeMap<Integer, Long>();
+            for (Map.Entry<Integer, AtomicLong> error : errorCounts.entrySet()) {
+                errors.put(error.getKey(), error.getValue().get());
+            }
+            return new Snapshot(calls.get(), buckets, latencySumMillis.get(), maxLatencyMillis.get(),
+                    bytesIn.get(), bytesOut.get(), cacheHits.get(), conditionalCacheHits.get(), retries.get(), errors);
+        }
+    }
+
+    /**
+     * Metrics of an endpoint at the time of the snapshot
+     */
+    public static final class Snapshot {
+        private final long callCount;
+        private final long[] latencyBuckets;
+        private final long latencySumMillis;
+        private final long maxLatencyMillis;
+        private final long bytesIn;
+        private final long bytesOut;
+        private final long cacheHits;
+        private final long conditionalCacheHits;
+        private final long retries;
+        private final Map<Integer, Long> errorCounts;
+
+        Snapshot(long callCount, long[] latencyBuckets, long latencySumMillis, long maxLatencyMillis,
+                 long bytesIn, long bytesOut, long cacheHits, long conditionalCacheHits, long retries,
+                 Map<Integer, Long> errorCounts) {
+            this.callCount = callCount;
+            this.latencyBuckets = latencyBuckets;
+            this.latencySumMillis = latencySumMillis;
+            this.maxLatencyMillis = maxLatencyMillis;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            this.cacheHits = cacheHits;
+            this.conditionalCacheHits = conditionalCacheHits;
+            this.retries = retries;
+            this.errorCounts = Collections.unmodifiableMap(errorCounts);
+        }
+
+        /**
+         * @return Count of calls, including failed ones
+         */
+        public long getCallCount() {
+            return callCount;
+        }
+
+        /**
+         * Latency histogram, the count of calls per bucket of {@link #getLatencyBucketBoundsMillis()}
+         *
+         * @return Counts of calls
+         */
+        public long[] getLatencyBuckets() {
+            return latencyBuckets.clone();
+        }
+
+        /**
+         * @return Upper bounds of the latency histogram buckets in milliseconds
+         */
+        public long[] getLatencyBucketBoundsMillis() {
+            return LATENCY_BUCKETS_MILLIS.clone();
+        }
+
+        /**
+         * Latency below which the given percentage of calls completed, as upper bound of its histogram bucket.
+         * Latency is the time until the response headers were received.
+         *
+         * @param percent Percentage from 0 to 100
+         * @return Latency in milliseconds, the maximum for the unbounded bucket, 0 without calls
+         */
+        public long getLatencyPercentileMillis(double percent) {
+            long total = 0;
+            for (long count : latencyBuckets) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percent / 100 * total);
+            long seen = 0;
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                seen += latencyBuckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(LATENCY_BUCKETS_MILLIS[i], maxLatencyMillis);
+                }
+            }
+            return maxLatencyMillis;
+        }
+
+        /**
+         * @return Average latency in milliseconds, 0 without calls
+         */
+        public double getMeanLatencyMillis() {
+            return callCount == 0 ? 0 : (double) latencySumMillis / callCount;
+        }
+
+        public long getMaxLatencyMillis() {
+            return maxLatencyMillis;
+        }
+
+        /**
+         * @return Bytes of response bodies received from the network, as transferred (e.g. gzipped)
+         */
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        /**
+         * @return Bytes of request bodies sent to the network, as transferred
+         */
+        public long getBytesOut() {
+            return bytesOut;
+        }
+
+        /**
+         * @return Count of calls answered from the cache without network
+         */
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        /**
+         * @return Count of calls answered from the cache after a 304 revalidation
+         */
+        public long getConditionalCacheHits() {
+            return conditionalCacheHits;
+        }
+
+        /**
+         * @return Count of additional network requests of calls, e.g. retries after connection failures
+         */
+        public long getRetries() {
+            return retries;
+        }
+
+        /**
+         * @return Count of failed calls by HTTP status code, {@link ApiMetrics#NETWORK_ERROR} for calls without response
+         */
+        public Map<Integer, Long> getErrorCounts() {
+            return errorCounts;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{calls=" + callCount + ", p50=" + getLatencyPercentileMillis(50) + "ms, max=" + maxLatencyMillis
+                    + "ms, in=" + bytesIn + ", out=" + bytesOut + ", cacheHits=" + cacheHits + "/" + conditionalCacheHits
+                    + ", retries=" + retries + ", errors=" + errorCounts + "}";
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.froodyapp.api.invoker;
+
+/**
+ * Cache policy of an endpoint, used when the HTTP cache of the ApiClient is enabled.
+ * Responses of the endpoint are fresh for maxAgeSeconds, after that they are revalidated
+ * with the server (If-None-Match / If-Modified-Since), which costs a 304 when unchanged.
+ * With staleWhileRevalidateSeconds &gt; 0, a stale response is returned immediately from the cache
+ * for that long after it expired, while it is revalidated in the background.
+ */
+public final class CachePolicy {
+    /**
+     * Always revalidate cached responses with the server
+     */
+    public static final CachePolicy REVALIDATE = new CachePolicy(0, 0);
+
+    private final int maxAgeSeconds;
+    private final int staleWhileRevalidateSeconds;
+
+    /**
+     * @param maxAgeSeconds Seconds a response is fresh and served from the cache without asking the server
+     * @param staleWhileRevalidateSeconds Seconds a stale response is still served while being revalidated, 0 to disable
+     */
+    public CachePolicy(int maxAgeSeconds, int staleWhileRevalidateSeconds) {
+        if (maxAgeSeconds < 0 || staleWhileRevalidateSeconds < 0) {
+            throw new IllegalArgumentException("Negative cache durations");
+        }
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.staleWhileRevalidateSeconds = staleWhileRevalidateSeconds;
+    }
+
+    public int getMaxAgeSeconds() {
+        return maxAgeSeconds;
+    }
+
+    public int getStaleWhileRevalidateSeconds() {
+        return staleWhileRevalidateSeconds;
+    }
+
+    /**
+     * Value of the Cache-Control header to store responses with
+     *
+     * @return Cache-Control header value
+     */
+    public String toCacheControl() {
+        if (staleWhileRevalidateSeconds > 0) {
+            return "max-age=" + maxAgeSeconds + ", stale-while-revalidate=" + staleWhileRevalidateSeconds;
+        }
+        return "max-age=" + maxAgeSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return "CachePolicy{" + toCacheControl() + "}";
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.froodyapp.api.invoker;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+
+/**
+ * Network interceptor applying the CachePolicy of the endpoint to its responses,
+ * by replacing their Cache-Control header before they are stored in the cache.
+ * Responses marked no-store by the server are left untouched.
+ */
+class CachePolicyInterceptor implements Interceptor {
+    private final ApiClient apiClient;
+
+    CachePolicyInterceptor(ApiClient apiClient) {
+        this.apiClient = apiClient;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (!"GET".equals(request.method()) || (response.code() != 200 && response.code() != 304)) {
+            return response;
+        }
+        CachePolicy policy = apiClient.getCachePolicy(request.httpUrl());
+        if (policy == null || response.cacheControl().noStore()) {
+            return response;
+        }
+        return response.newBuilder()
+                .removeHeader("Pragma")
+                .removeHeader("Expires")
+                .header("Cache-Control", policy.toCacheControl())
+                .build();
+    }
+}
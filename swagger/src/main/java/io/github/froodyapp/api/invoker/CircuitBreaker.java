@@ -0,0 +1,102 @@
+package io.github.froodyapp.api.invoker;
+
+/**
+ * Circuit breaker of a host. After failureThreshold consecutive failed calls it opens,
+ * and calls fail immediately with a CircuitOpenException instead of loading the struggling server.
+ * After openMillis a single probe call is let through (half open): if it succeeds the breaker closes,
+ * otherwise it opens again.
+ */
+public final class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    /**
+     * @param failureThreshold Count of consecutive failures opening the breaker
+     * @param openMillis Time the breaker stays open before letting a probe call through
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold < 1 || openMillis < 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Check whether a call may be made now, the caller has to record its outcome then
+     *
+     * @return True if the call may be made
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (getRemainingOpenMillis() > 0) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            default:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    /**
+     * Record a successful call, closes the breaker
+     */
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    /**
+     * Record a failed call, opens the breaker at the threshold or if the probe call failed
+     */
+    public synchronized void recordFailure() {
+        failures++;
+        probing = false;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = now();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return Milliseconds until a probe call is let through, 0 if the breaker is not open
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openedAt + openMillis - now());
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CircuitBreaker{" + state + ", failures=" + failures + "}";
+    }
+}
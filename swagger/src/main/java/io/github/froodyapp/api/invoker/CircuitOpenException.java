@@ -0,0 +1,30 @@
+package io.github.froodyapp.api.invoker;
+
+import java.io.IOException;
+
+/**
+ * Thrown for calls which were not made because the circuit breaker of their host is open
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+    private final long remainingOpenMillis;
+
+    public CircuitOpenException(String host, long remainingOpenMillis) {
+        super("Circuit breaker open for " + host + ", retry in " + remainingOpenMillis + " ms");
+        this.host = host;
+        this.remainingOpenMillis = remainingOpenMillis;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return Milliseconds until the breaker lets a probe call through
+     */
+    public long getRemainingOpenMillis() {
+        return remainingOpenMillis;
+    }
+}
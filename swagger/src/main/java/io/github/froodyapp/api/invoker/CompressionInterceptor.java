@@ -0,0 +1,141 @@
+package io.github.froodyapp.api.invoker;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+import java.util.zip.Inflater;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Application interceptor handling content encodings, in place of OkHttp's gzip-only handling.
+ * Responses: requests gzip or deflate and inflates the response body while it is read,
+ * so the (streaming) deserializer works on the inflated stream.
+ * Requests: when enabled in the ApiClient, gzips request bodies of at least
+ * MIN_COMPRESSED_REQUEST_BYTES once the server announced it accepts them with an
+ * Accept-Encoding response header (RFC 7694). A 415 response disables this again.
+ */
+class CompressionInterceptor implements Interceptor {
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+    static final long MIN_COMPRESSED_REQUEST_BYTES = 256;
+
+    private final ApiClient apiClient;
+    private volatile boolean serverAcceptsGzip;
+
+    CompressionInterceptor(ApiClient apiClient) {
+        this.apiClient = apiClient;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        // Leave requests alone which handle the encoding themselves
+        boolean transparent = request.header("Accept-Encoding") == null && request.header("Range") == null;
+        if (transparent) {
+            request = request.newBuilder().header("Accept-Encoding", ACCEPT_ENCODING).build();
+        }
+
+        Request compressedRequest = null;
+        if (apiClient.isRequestCompression() && serverAcceptsGzip && request.body() != null
+                && request.header("Content-Encoding") == null
+                && request.body().contentLength() >= MIN_COMPRESSED_REQUEST_BYTES) {
+            compressedRequest = request.newBuilder()
+                    .header("Content-Encoding", "gzip")
+                    .method(request.method(), gzip(request.body()))
+                    .build();
+        }
+
+        Response response = chain.proceed(compressedRequest != null ? compressedRequest : request);
+        if (compressedRequest != null && response.code() == 415) {
+            // Unsupported Media Type: The server does not accept gzip (anymore)
+            serverAcceptsGzip = false;
+            response.body().close();
+            response = chain.proceed(request);
+        }
+        String acceptEncoding = response.header("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip")) {
+            serverAcceptsGzip = true;
+        }
+        return transparent ? inflate(request, response) : response;
+    }
+
+    private static RequestBody gzip(RequestBody body) throws IOException {
+        Buffer buffer = new Buffer();
+        BufferedSink sink = Okio.buffer(new GzipSink(buffer));
+        body.writeTo(sink);
+        sink.close();
+        return RequestBody.create(body.contentType(), buffer.readByteArray());
+    }
+
+    private static Response inflate(Request request, Response response) throws IOException {
+        String encoding = response.header("Content-Encoding");
+        if (encoding == null || response.body() == null || "HEAD".equals(request.method())
+                || response.code() == 204 || response.code() == 304) {
+            return response;
+        }
+
+        BufferedSource source = response.body().source();
+        Source inflated;
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            inflated = new GzipSource(source);
+        } else if ("deflate".equalsIgnoreCase(encoding)) {
+            inflated = new InflaterSource(source, new Inflater(!isZlibHeader(source)));
+        } else {
+            return response;
+        }
+        return response.newBuilder()
+                .removeHeader("Content-Encoding")
+                .removeHeader("Content-Length")
+                .body(new InflatedResponseBody(response.body().contentType(), Okio.buffer(inflated)))
+                .build();
+    }
+
+    /**
+     * "deflate" should be zlib-wrapped (RFC 7230), but some servers send raw deflate data
+     */
+    private static boolean isZlibHeader(BufferedSource source) throws IOException {
+        if (!source.request(2)) {
+            return true;
+        }
+        int cmf = source.buffer().getByte(0) & 0xff;
+        int flg = source.buffer().getByte(1) & 0xff;
+        return (cmf & 0x0f) == 8 && (cmf * 256 + flg) % 31 == 0;
+    }
+
+    private static class InflatedResponseBody extends ResponseBody {
+        private final MediaType contentType;
+        private final BufferedSource source;
+
+        InflatedResponseBody(MediaType contentType, BufferedSource source) {
+            this.contentType = contentType;
+            this.source = source;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return contentType;
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.froodyapp.api.invoker;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * Parser for ISO-8601 date-times as sent by the server, e.g. 2017-01-03T16:49:39.823Z or
+ * 2017-01-03T16:49:39.823+01:00.
+ * These are parsed by a fast path without the Joda formatter machinery. Any other form is passed to
+ * {@link ISODateTimeFormat#dateTime()}, so results and errors are the same as with the formatter.
+ */
+final class IsoDateTimeParser {
+    private static final DateTimeFormatter FALLBACK = ISODateTimeFormat.dateTime();
+
+    private static final int LENGTH_UTC = 24;     // yyyy-MM-ddTHH:mm:ss.SSSZ
+    private static final int LENGTH_OFFSET = 29;  // yyyy-MM-ddTHH:mm:ss.SSS+HH:mm
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    private IsoDateTimeParser() {
+    }
+
+    /**
+     * Parse the date-time, in the default time zone like {@link DateTimeFormatter#parseDateTime(String)}.
+     *
+     * @param text The date-time text
+     * @return The date-time
+     * @throws IllegalArgumentException If the text is not a valid date-time
+     */
+    static DateTime parse(String text) {
+        long millis = parseMillis(text);
+        if (millis == Long.MIN_VALUE) {
+            return FALLBACK.parseDateTime(text);
+        }
+        return new DateTime(millis);
+    }
+
+    // Milliseconds since epoch, or Long.MIN_VALUE if the text is not in the fast path form
+    private static long parseMillis(String text) {
+        int length = text.length();
+        if ((length != LENGTH_UTC && length != LENGTH_OFFSET)
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':' || text.charAt(19) != '.') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        int millis = digits(text, 20, 3);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || millis < 0) {
+            return Long.MIN_VALUE;
+        }
+
+        int offsetMinutes;
+        char sign = text.charAt(23);
+        if (length == LENGTH_UTC) {
+            if (sign != 'Z') {
+                return Long.MIN_VALUE;
+            }
+            offsetMinutes = 0;
+        } else {
+            if ((sign != '+' && sign != '-') || text.charAt(26) != ':') {
+                return Long.MIN_VALUE;
+            }
+            int offsetHours = digits(text, 24, 2);
+            int offsetMins = digits(text, 27, 2);
+            if (offsetHours < 0 || offsetHours > 23 || offsetMins < 0 || offsetMins > 59) {
+                return Long.MIN_VALUE;
+            }
+            offsetMinutes = (offsetHours * 60 + offsetMins) * (sign == '-' ? -1 : 1);
+        }
+
+        return daysSinceEpoch(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60L + minute - offsetMinutes) * 60 + second) * 1000 + millis;
+    }
+
+    // Value of count decimal digits, -1 if any is not a digit
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Days since 1970-01-01 in the proleptic gregorian calendar, for years 0 to 9999
+    private static long daysSinceEpoch(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.froodyapp.api.invoker;
+
+/**
+ * Consumer for the items of a JSON array response, which is deserialized while being read.
+ *
+ * @param <T> The item type
+ */
+public interface ItemConsumer<T> {
+    /**
+     * This is called for every item of the array, in order, as soon as it is deserialized.
+     *
+     * @param item The deserialized item
+     */
+    void accept(T item);
+}
@@ -24,14 +24,25 @@ import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.lang.reflect.Type;
 import java.util.Date;
 
+import io.github.froodyapp.api.model_.BlockChanges;
+import io.github.froodyapp.api.model_.BlockInfo;
+import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.api.model_.FroodyUser;
+import io.github.froodyapp.api.model_.ResponseEntryAdd;
+import io.github.froodyapp.api.model_.ResponseOk;
+
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.joda.time.format.DateTimeFormatter;
@@ -48,10 +59,18 @@ public class JSON {
      */
     public JSON(ApiClient apiClient) {
         this.apiClient = apiClient;
+        DateTimeTypeAdapter dateTimeTypeAdapter = new DateTimeTypeAdapter();
+        ModelTypeAdapters.FroodyEntryAdapter entryAdapter = new ModelTypeAdapters.FroodyEntryAdapter(dateTimeTypeAdapter);
         gson = new GsonBuilder()
             .registerTypeAdapter(Date.class, new DateAdapter(apiClient))
-            .registerTypeAdapter(DateTime.class, new DateTimeTypeAdapter())
+            .registerTypeAdapter(DateTime.class, dateTimeTypeAdapter)
             .registerTypeAdapter(LocalDate.class, new LocalDateTypeAdapter())
+            .registerTypeAdapter(FroodyEntry.class, entryAdapter)
+            .registerTypeAdapter(BlockInfo.class, new ModelTypeAdapters.BlockInfoAdapter(dateTimeTypeAdapter))
+            .registerTypeAdapter(BlockChanges.class, new ModelTypeAdapters.BlockChangesAdapter(entryAdapter))
+            .registerTypeAdapter(FroodyUser.class, new ModelTypeAdapters.FroodyUserAdapter())
+            .registerTypeAdapter(ResponseEntryAdd.class, new ModelTypeAdapters.ResponseEntryAddAdapter(dateTimeTypeAdapter))
+            .registerTypeAdapter(ResponseOk.class, new ModelTypeAdapters.ResponseOkAdapter())
             .create();
     }
 
@@ -113,6 +132,45 @@ public class JSON {
             else throw(e);
         }
     }
+
+    /**
+     * Deserialize the JSON array read from the given reader item by item,
+     * without holding the whole body or array in memory.
+     * An empty body or JSON null is treated as an empty array.
+     *
+     * @param <T> Type
+     * @param reader The reader of the JSON body
+     * @param itemType The type to deserialize each array item into
+     * @param consumer The consumer receiving each item
+     * @return The count of items passed to the consumer
+     * @throws IOException If fail to read the body
+     */
+    @SuppressWarnings("unchecked")
+    public <T> int deserializeStream(Reader reader, Type itemType, ItemConsumer<T> consumer) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(apiClient.isLenientOnJson());
+        TypeAdapter<T> adapter = (TypeAdapter<T>) gson.getAdapter(TypeToken.get(itemType));
+
+        JsonToken token;
+        try {
+            token = jsonReader.peek();
+        } catch (EOFException e) {
+            return 0;
+        }
+        if (token == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return 0;
+        }
+
+        int count = 0;
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            consumer.accept(adapter.read(jsonReader));
+            count++;
+        }
+        jsonReader.endArray();
+        return count;
+    }
 }
 
 class DateAdapter implements JsonSerializer<Date>, JsonDeserializer<Date> {
@@ -189,7 +247,7 @@ class DateTimeTypeAdapter extends TypeAdapter<DateTime> {
                 return null;
             default:
                 String date = in.nextString();
-                return formatter.parseDateTime(date);
+                return IsoDateTimeParser.parse(date);
         }
     }
 }
@@ -0,0 +1,140 @@
+package io.github.froodyapp.api.invoker;
+
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Records the ApiMetrics of the calls of an ApiClient.
+ * As application interceptor it records latency, cache hits and errors per call,
+ * its network interceptor records the network requests of the call with their bytes on the wire.
+ */
+class MetricsInterceptor implements Interceptor {
+    private final ApiClient apiClient;
+    private final ApiMetrics metrics;
+    // Network requests of the call running on this thread
+    private final ThreadLocal<int[]> networkRequests = new ThreadLocal<int[]>();
+
+    final Interceptor networkInterceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            int[] count = networkRequests.get();
+            if (count != null) {
+                count[0]++;
+            }
+            final ApiMetrics.Endpoint endpoint = metrics.endpoint(endpointName(request));
+            if (request.body() != null && request.body().contentLength() > 0) {
+                endpoint.addBytesOut(request.body().contentLength());
+            }
+            Response response = chain.proceed(request);
+            if (response.body() == null) {
+                return response;
+            }
+            return response.newBuilder()
+                    .body(new CountingResponseBody(response.body(), endpoint))
+                    .build();
+        }
+    };
+
+    MetricsInterceptor(ApiClient apiClient, ApiMetrics metrics) {
+        this.apiClient = apiClient;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        ApiMetrics.Endpoint endpoint = metrics.endpoint(endpointName(request));
+        int[] previousCount = networkRequests.get();
+        int[] count = new int[1];
+        networkRequests.set(count);
+        long start = System.nanoTime();
+        try {
+            Response response = chain.proceed(request);
+            endpoint.recordCall((System.nanoTime() - start) / 1000000, Math.max(0, count[0] - 1));
+            if (response.cacheResponse() != null) {
+                if (response.networkResponse() == null) {
+                    endpoint.recordCacheHit(false);
+                } else if (response.networkResponse().code() == 304) {
+                    endpoint.recordCacheHit(true);
+                }
+            }
+            if (!response.isSuccessful()) {
+                endpoint.recordError(response.code());
+            }
+            return response;
+        } catch (IOException e) {
+            endpoint.recordCall((System.nanoTime() - start) / 1000000, Math.max(0, count[0] - 1));
+            endpoint.recordError(ApiMetrics.NETWORK_ERROR);
+            throw e;
+        } finally {
+            networkRequests.set(previousCount);
+        }
+    }
+
+    /**
+     * Method and path of the request below the base path, e.g. "GET /block/get"
+     */
+    private String endpointName(Request request) {
+        String path = request.httpUrl().encodedPath();
+        HttpUrl basePath = HttpUrl.parse(apiClient.getBasePath());
+        if (basePath != null) {
+            String prefix = basePath.encodedPath();
+            if (prefix.endsWith("/")) {
+                prefix = prefix.substring(0, prefix.length() - 1);
+            }
+            if (path.startsWith(prefix)) {
+                path = path.substring(prefix.length());
+            }
+        }
+        return request.method() + " " + path;
+    }
+
+    /**
+     * Response body adding the bytes read from it to the endpoint's bytes in
+     */
+    private static class CountingResponseBody extends ResponseBody {
+        private final ResponseBody body;
+        private final BufferedSource source;
+
+        CountingResponseBody(ResponseBody body, final ApiMetrics.Endpoint endpoint) throws IOException {
+            this.body = body;
+            this.source = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        endpoint.addBytesIn(read);
+                    }
+                    return read;
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return body.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
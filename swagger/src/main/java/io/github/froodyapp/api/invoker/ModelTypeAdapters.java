@@ -0,0 +1,404 @@
+package io.github.froodyapp.api.invoker;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import io.github.froodyapp.api.model_.BlockChanges;
+import io.github.froodyapp.api.model_.BlockInfo;
+import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.api.model_.FroodyUser;
+import io.github.froodyapp.api.model_.ResponseEntryAdd;
+import io.github.froodyapp.api.model_.ResponseOk;
+
+/**
+ * Streaming Gson TypeAdapters for the models, replacing the reflective ones.
+ * They produce and accept the same JSON as reflection does: fields in declaration order, null fields omitted,
+ * missing fields keep their default, JSON null sets null and unknown fields are skipped.
+ */
+final class ModelTypeAdapters {
+    private ModelTypeAdapters() {
+    }
+
+    /**
+     * Gson TypeAdapter for FroodyEntry
+     */
+    static class FroodyEntryAdapter extends TypeAdapter<FroodyEntry> {
+        private final TypeAdapter<DateTime> dateTimeAdapter;
+
+        FroodyEntryAdapter(TypeAdapter<DateTime> dateTimeAdapter) {
+            this.dateTimeAdapter = dateTimeAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, FroodyEntry entry) throws IOException {
+            if (entry == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("entryId").value(entry.getEntryId());
+            out.name("userId").value(entry.getUserId());
+            out.name("geohash").value(entry.getGeohash());
+            out.name("creationDate");
+            dateTimeAdapter.write(out, entry.getCreationDate());
+            out.name("modificationDate");
+            dateTimeAdapter.write(out, entry.getModificationDate());
+            out.name("entryType").value(entry.getEntryType());
+            out.name("certificationType").value(entry.getCertificationType());
+            out.name("distributionType").value(entry.getDistributionType());
+            out.name("description").value(entry.getDescription());
+            out.name("contact").value(entry.getContact());
+            out.name("address").value(entry.getAddress());
+            writeBoolean(out.name("wasDeleted"), entry.getWasDeleted());
+            out.name("managementCode").value(entry.getManagementCode());
+            out.endObject();
+        }
+
+        @Override
+        public FroodyEntry read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            FroodyEntry entry = new FroodyEntry();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("entryId".equals(name)) {
+                    entry.setEntryId(readLong(in));
+                } else if ("userId".equals(name)) {
+                    entry.setUserId(readLong(in));
+                } else if ("geohash".equals(name)) {
+                    entry.setGeohash(readString(in));
+                } else if ("creationDate".equals(name)) {
+                    entry.setCreationDate(dateTimeAdapter.read(in));
+                } else if ("modificationDate".equals(name)) {
+                    entry.setModificationDate(dateTimeAdapter.read(in));
+                } else if ("entryType".equals(name)) {
+                    entry.setEntryType(readInteger(in));
+                } else if ("certificationType".equals(name)) {
+                    entry.setCertificationType(readInteger(in));
+                } else if ("distributionType".equals(name)) {
+                    entry.setDistributionType(readInteger(in));
+                } else if ("description".equals(name)) {
+                    entry.setDescription(readString(in));
+                } else if ("contact".equals(name)) {
+                    entry.setContact(readString(in));
+                } else if ("address".equals(name)) {
+                    entry.setAddress(readString(in));
+                } else if ("wasDeleted".equals(name)) {
+                    entry.setWasDeleted(readBoolean(in));
+                } else if ("managementCode".equals(name)) {
+                    entry.setManagementCode(readInteger(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return entry;
+        }
+    }
+
+    /**
+     * Gson TypeAdapter for BlockInfo
+     */
+    static class BlockInfoAdapter extends TypeAdapter<BlockInfo> {
+        private final TypeAdapter<DateTime> dateTimeAdapter;
+
+        BlockInfoAdapter(TypeAdapter<DateTime> dateTimeAdapter) {
+            this.dateTimeAdapter = dateTimeAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, BlockInfo info) throws IOException {
+            if (info == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("geohash").value(info.getGeohash());
+            out.name("modificationDate");
+            dateTimeAdapter.write(out, info.getModificationDate());
+            writeBoolean(out.name("hasBlockBeenModified"), info.getHasBlockBeenModified());
+            out.endObject();
+        }
+
+        @Override
+        public BlockInfo read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            BlockInfo info = new BlockInfo();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("geohash".equals(name)) {
+                    info.setGeohash(readString(in));
+                } else if ("modificationDate".equals(name)) {
+                    info.setModificationDate(dateTimeAdapter.read(in));
+                } else if ("hasBlockBeenModified".equals(name)) {
+                    info.setHasBlockBeenModified(readBoolean(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return info;
+        }
+    }
+
+    /**
+     * Gson TypeAdapter for BlockChanges
+     */
+    static class BlockChangesAdapter extends TypeAdapter<BlockChanges> {
+        private final TypeAdapter<FroodyEntry> entryAdapter;
+
+        BlockChangesAdapter(TypeAdapter<FroodyEntry> entryAdapter) {
+            this.entryAdapter = entryAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, BlockChanges changes) throws IOException {
+            if (changes == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("cursor").value(changes.getCursor());
+            out.name("entries");
+            if (changes.getEntries() == null) {
+                out.nullValue();
+            } else {
+                out.beginArray();
+                for (FroodyEntry entry : changes.getEntries()) {
+                    entryAdapter.write(out, entry);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public BlockChanges read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            BlockChanges changes = new BlockChanges();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("cursor".equals(name)) {
+                    changes.setCursor(readLong(in));
+                } else if ("entries".equals(name)) {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        changes.setEntries(null);
+                    } else {
+                        List<FroodyEntry> entries = new ArrayList<FroodyEntry>();
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            entries.add(entryAdapter.read(in));
+                        }
+                        in.endArray();
+                        changes.setEntries(entries);
+                    }
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return changes;
+        }
+    }
+
+    /**
+     * Gson TypeAdapter for FroodyUser
+     */
+    static class FroodyUserAdapter extends TypeAdapter<FroodyUser> {
+        @Override
+        public void write(JsonWriter out, FroodyUser user) throws IOException {
+            if (user == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("userId").value(user.getUserId());
+            out.endObject();
+        }
+
+        @Override
+        public FroodyUser read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            FroodyUser user = new FroodyUser();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("userId".equals(name)) {
+                    user.setUserId(readLong(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return user;
+        }
+    }
+
+    /**
+     * Gson TypeAdapter for ResponseEntryAdd
+     */
+    static class ResponseEntryAddAdapter extends TypeAdapter<ResponseEntryAdd> {
+        private final TypeAdapter<DateTime> dateTimeAdapter;
+
+        ResponseEntryAddAdapter(TypeAdapter<DateTime> dateTimeAdapter) {
+            this.dateTimeAdapter = dateTimeAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, ResponseEntryAdd response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("entryId").value(response.getEntryId());
+            out.name("managementCode").value(response.getManagementCode());
+            out.name("creationDate");
+            dateTimeAdapter.write(out, response.getCreationDate());
+            out.endObject();
+        }
+
+        @Override
+        public ResponseEntryAdd read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ResponseEntryAdd response = new ResponseEntryAdd();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("entryId".equals(name)) {
+                    response.setEntryId(readLong(in));
+                } else if ("managementCode".equals(name)) {
+                    response.setManagementCode(readInteger(in));
+                } else if ("creationDate".equals(name)) {
+                    response.setCreationDate(dateTimeAdapter.read(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
+
+    /**
+     * Gson TypeAdapter for ResponseOk
+     */
+    static class ResponseOkAdapter extends TypeAdapter<ResponseOk> {
+        @Override
+        public void write(JsonWriter out, ResponseOk response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeBoolean(out.name("success"), response.getSuccess());
+            out.endObject();
+        }
+
+        @Override
+        public ResponseOk read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ResponseOk response = new ResponseOk();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("success".equals(name)) {
+                    response.setSuccess(readBoolean(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
+
+    //
+    // Field readers and writers, with the same coercions as the Gson built-in adapters
+    //
+    private static Long readLong(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return in.nextLong();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static Integer readInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    private static Boolean readBoolean(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.STRING) {
+            return Boolean.parseBoolean(in.nextString());
+        }
+        return in.nextBoolean();
+    }
+
+    private static void writeBoolean(JsonWriter out, Boolean value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value.booleanValue());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.froodyapp.api.invoker;
+
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Application interceptor applying the RetryPolicy and the per host CircuitBreakers of the ApiClient.
+ * Only idempotent calls (GET, HEAD) are retried, but all calls count for the circuit breaker.
+ */
+class ResilienceInterceptor implements Interceptor {
+    private final ApiClient apiClient;
+    private final Random random = new Random();
+    private final ConcurrentHashMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+    ResilienceInterceptor(ApiClient apiClient) {
+        this.apiClient = apiClient;
+    }
+
+    /**
+     * The circuit breaker of a host
+     *
+     * @param host Host, with port if not the default one
+     * @param create True to create it if it doesn't exist yet
+     * @return The breaker, null if circuit breakers are disabled or it doesn't exist
+     */
+    CircuitBreaker getCircuitBreaker(String host, boolean create) {
+        if (apiClient.getCircuitBreakerThreshold() == 0) {
+            return null;
+        }
+        CircuitBreaker breaker = circuitBreakers.get(host);
+        if (breaker == null && create) {
+            CircuitBreaker created = new CircuitBreaker(apiClient.getCircuitBreakerThreshold(), apiClient.getCircuitBreakerOpenMillis());
+            breaker = circuitBreakers.putIfAbsent(host, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    void resetCircuitBreakers() {
+        circuitBreakers.clear();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RetryPolicy policy = apiClient.getRetryPolicy(request.httpUrl());
+        int maxAttempts = policy != null && isIdempotent(request) ? policy.getMaxAttempts() : 1;
+        String host = hostOf(request.httpUrl());
+        CircuitBreaker breaker = getCircuitBreaker(host, true);
+
+        for (int attempt = 1; ; attempt++) {
+            if (breaker != null && !breaker.allowRequest()) {
+                throw new CircuitOpenException(host, breaker.getRemainingOpenMillis());
+            }
+
+            Response response = null;
+            IOException failure = null;
+            boolean succeeded = false;
+            try {
+                response = chain.proceed(request);
+                succeeded = !RetryPolicy.isRetryableStatus(response.code());
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                // Any other outcome, e.g. a RuntimeException, fails too. Otherwise a probe call would never be released
+                if (breaker != null) {
+                    if (succeeded) {
+                        breaker.recordSuccess();
+                    } else {
+                        breaker.recordFailure();
+                    }
+                }
+            }
+
+            if (failure != null) {
+                if (attempt >= maxAttempts) {
+                    throw failure;
+                }
+                sleep(policy.getDelayMillis(attempt, random));
+                continue;
+            }
+            if (succeeded) {
+                return response;
+            }
+            if (attempt >= maxAttempts) {
+                return response;
+            }
+            long delay = policy.getDelayMillis(attempt, random);
+            Long retryAfter = getRetryAfterMillis(response);
+            if (retryAfter != null) {
+                delay = Math.min(retryAfter, policy.getMaxDelayMillis());
+            }
+            response.body().close();
+            sleep(delay);
+        }
+    }
+
+    private static boolean isIdempotent(Request request) {
+        return "GET".equals(request.method()) || "HEAD".equals(request.method());
+    }
+
+    static String hostOf(HttpUrl url) {
+        return url.port() == HttpUrl.defaultPort(url.scheme()) ? url.host() : url.host() + ":" + url.port();
+    }
+
+    // Retry-After in seconds, the HTTP-date form is not used by the API
+    private static Long getRetryAfterMillis(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return null;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.froodyapp.api.invoker;
+
+import java.util.Random;
+
+/**
+ * Retries of failed idempotent calls with jittered exponential backoff.
+ * Calls are retried on network errors and on the status codes 408, 429 and 5xx, except 501 and 505.
+ * The delay before retry n is random between half and all of min(maxDelay, baseDelay * 2^(n-1)),
+ * so clients failing together don't retry together. A Retry-After header of the response is respected up to maxDelay.
+ */
+public final class RetryPolicy {
+    /**
+     * Makes a single attempt, e.g. for endpoints whose failures are retried by the caller
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param maxAttempts Maximum count of attempts of a call, including the first one
+     * @param baseDelayMillis Delay before the first retry, doubled for each further one
+     * @param maxDelayMillis Upper bound of the delays
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Invalid retry policy");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Jittered delay before a retry
+     *
+     * @param retry Number of the retry, starting at 1
+     * @param random Source of the jitter
+     * @return Delay in milliseconds
+     */
+    public long getDelayMillis(int retry, Random random) {
+        long delay = baseDelayMillis << Math.min(Math.max(retry - 1, 0), 30);
+        if (delay > maxDelayMillis || delay < 0) {
+            delay = maxDelayMillis;
+        }
+        return delay / 2 + (long) (random.nextDouble() * (delay - delay / 2));
+    }
+
+    /**
+     * Check whether a response status means a temporary failure of the server
+     *
+     * @param code HTTP status code
+     * @return True for 408, 429 and 5xx, but not for 501 (Not Implemented) and 505 (HTTP Version Not Supported),
+     * which a retry doesn't change
+     */
+    public static boolean isRetryableStatus(int code) {
+        return code == 408 || code == 429 || (code >= 500 && code != 501 && code != 505);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{maxAttempts=" + maxAttempts + ", baseDelay=" + baseDelayMillis + "ms, maxDelay=" + maxDelayMillis + "ms}";
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.froodyapp.api.invoker;
+
+import com.squareup.okhttp.CacheControl;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application interceptor serving stale cached responses of endpoints whose CachePolicy allows
+ * stale-while-revalidate, and revalidating them in the background with a conditional request.
+ * Requests with an explicit Cache-Control header are passed through.
+ */
+class StaleWhileRevalidateInterceptor implements Interceptor {
+    // OkHttp marks cached responses served after they expired with this warning
+    private static final String STALE_WARNING = "110";
+
+    private final ApiClient apiClient;
+    private final Set<String> revalidating = Collections.synchronizedSet(new HashSet<String>());
+
+    StaleWhileRevalidateInterceptor(ApiClient apiClient) {
+        this.apiClient = apiClient;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method()) || request.header("Cache-Control") != null) {
+            return chain.proceed(request);
+        }
+        CachePolicy policy = apiClient.getCachePolicy(request.httpUrl());
+        if (policy == null || policy.getStaleWhileRevalidateSeconds() == 0) {
+            return chain.proceed(request);
+        }
+
+        Request cacheOnly = request.newBuilder()
+                .cacheControl(new CacheControl.Builder()
+                        .onlyIfCached()
+                        .maxStale(policy.getStaleWhileRevalidateSeconds(), TimeUnit.SECONDS)
+                        .build())
+                .build();
+        Response cached = chain.proceed(cacheOnly);
+        if (cached.cacheResponse() == null) {
+            // Not cached or too stale
+            if (cached.body() != null) {
+                cached.body().close();
+            }
+            return chain.proceed(request);
+        }
+
+        String warning = cached.header("Warning");
+        if (warning != null && warning.startsWith(STALE_WARNING)) {
+            revalidate(request);
+        }
+        return cached;
+    }
+
+    /**
+     * Update the cached response of the request in the background, at most once at a time per URL
+     */
+    private void revalidate(Request request) {
+        final String url = request.urlString();
+        if (!revalidating.add(url)) {
+            return;
+        }
+        // max-age=0 makes the cache send a conditional request, and skips this interceptor
+        Request revalidation = request.newBuilder()
+                .cacheControl(new CacheControl.Builder().maxAge(0, TimeUnit.SECONDS).build())
+                .build();
+        apiClient.getHttpClient().newCall(revalidation).enqueue(new Callback() {
+            @Override
+            public void onFailure(Request request, IOException e) {
+                revalidating.remove(url);
+            }
+
+            @Override
+            public void onResponse(Response response) throws IOException {
+                try {
+                    // Reading the body completes the cache update
+                    response.body().bytes();
+                } finally {
+                    response.body().close();
+                    revalidating.remove(url);
+                }
+            }
+        });
+    }
+}
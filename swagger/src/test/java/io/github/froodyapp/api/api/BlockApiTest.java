@@ -14,6 +14,7 @@
 package io.github.froodyapp.api.api;
 
 import io.github.froodyapp.api.invoker.ApiException;
+import io.github.froodyapp.api.model_.BlockChanges;
 import io.github.froodyapp.api.model_.BlockInfo;
 import org.joda.time.DateTime;
 import io.github.froodyapp.api.model_.FroodyEntry;
@@ -35,6 +36,23 @@ public class BlockApiTest {
     private final BlockApi api = new BlockApi();
 
     
+    /**
+     * 
+     *
+     * Entry[ ] ** Get the entries changed within several blocks since a cursor, in one request
+     *
+     * @throws ApiException
+     *          if the Api call fails
+     */
+    @Test
+    public void blockChangesGetTest() throws ApiException {
+        List<String> geohash = null;
+        Long cursor = null;
+        BlockChanges response = api.blockChangesGet(geohash, cursor);
+
+        // TODO: test validations
+    }
+    
     /**
      * 
      *
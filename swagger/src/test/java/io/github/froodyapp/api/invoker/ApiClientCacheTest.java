@@ -0,0 +1,122 @@
+package io.github.froodyapp.api.invoker;
+
+import io.github.froodyapp.api.api.BlockApi;
+import io.github.froodyapp.api.api.EntryApi;
+import io.github.froodyapp.api.mock.MockFroodyServer;
+import io.github.froodyapp.api.model_.BlockInfo;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the HTTP response cache and the per endpoint cache policies
+ */
+public class ApiClientCacheTest {
+    private static final long CACHE_SIZE = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockFroodyServer server;
+    private ApiClient apiClient;
+    private BlockApi blockApi;
+    private DateTime since;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockFroodyServer().start();
+        apiClient = server.createApiClient();
+        blockApi = new BlockApi(apiClient);
+        since = new DateTime(2017, 1, 1, 0, 0, DateTimeZone.UTC);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void cacheDisabledByDefaultTest() throws Exception {
+        assertNull(apiClient.getCache());
+        apiClient.setCachePolicy("/block/info", new CachePolicy(60, 0));
+        blockApi.blockInfoGet("u0yjjd", since);
+        blockApi.blockInfoGet("u0yjjd", since);
+        assertEquals(2, server.getRequestCount("/block/info"));
+    }
+
+    @Test
+    public void freshResponseFromCacheTest() throws Exception {
+        apiClient.enableCache(folder.newFolder(), CACHE_SIZE).setCachePolicy("/block/info", new CachePolicy(60, 0));
+        List<BlockInfo> first = blockApi.blockInfoGet("u0yjjd", since);
+        List<BlockInfo> second = blockApi.blockInfoGet("u0yjjd", since);
+        assertEquals(first, second);
+        assertEquals(1, server.getRequestCount("/block/info"));
+        assertEquals(1, apiClient.getCache().getHitCount());
+
+        // Other query, other cache entry
+        blockApi.blockInfoGet("u0yjje", since);
+        assertEquals(2, server.getRequestCount("/block/info"));
+
+        // Endpoints without policy are not cached
+        blockApi.blockGetGet("u0yjjd", since);
+        blockApi.blockGetGet("u0yjjd", since);
+        assertEquals(2, server.getRequestCount("/block/get"));
+    }
+
+    @Test
+    public void revalidateTest() throws Exception {
+        apiClient.enableCache(folder.newFolder(), CACHE_SIZE).setCachePolicy("/block/info", CachePolicy.REVALIDATE);
+        List<BlockInfo> first = blockApi.blockInfoGet("u0yjjd", since);
+        List<BlockInfo> second = blockApi.blockInfoGet("u0yjjd", since);
+        assertEquals(first, second);
+        assertEquals(2, server.getRequestCount("/block/info"));
+        assertEquals(1, server.getNotModifiedCount());
+        assertEquals(1, apiClient.getCache().getHitCount());
+    }
+
+    @Test
+    public void staleWhileRevalidateTest() throws Exception {
+        EntryApi entryApi = new EntryApi(apiClient);
+        apiClient.enableCache(folder.newFolder(), CACHE_SIZE)
+                .setCachePolicy("/entry/popularEntryTypes", new CachePolicy(0, 3600));
+        List<Integer> first = entryApi.entryPopularEntryTypesGet("u0yjjd");
+        assertNotNull(first);
+
+        // The stale response is returned without waiting for the server
+        server.setLatency(500, 500);
+        long start = System.nanoTime();
+        List<Integer> second = entryApi.entryPopularEntryTypesGet("u0yjjd");
+        long millis = (System.nanoTime() - start) / 1000000;
+        assertEquals(first, second);
+        assertTrue("Took " + millis + " ms", millis < 500);
+
+        // ... and revalidated in the background
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getNotModifiedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, server.getRequestCount("/entry/popularEntryTypes"));
+        assertEquals(1, server.getNotModifiedCount());
+    }
+
+    @Test
+    public void disableCacheTest() throws Exception {
+        apiClient.enableCache(folder.newFolder(), CACHE_SIZE).setCachePolicy("/block/info", new CachePolicy(60, 0));
+        blockApi.blockInfoGet("u0yjjd", since);
+        apiClient.disableCache();
+        assertNull(apiClient.getCache());
+        blockApi.blockInfoGet("u0yjjd", since);
+        assertEquals(2, server.getRequestCount("/block/info"));
+    }
+}
@@ -0,0 +1,197 @@
+package io.github.froodyapp.api.invoker;
+
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import io.github.froodyapp.api.api.BlockApi;
+import io.github.froodyapp.api.mock.MockFroodyServer;
+import io.github.froodyapp.api.model_.FroodyEntry;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import okio.Buffer;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the gzip/deflate handling of responses and the compression of request bodies
+ */
+public class ApiClientCompressionTest {
+    private static final String ENTRIES = "[{\"entryId\":1,\"geohash\":\"u0yjjd6jk0zj\",\"description\":\"Äpfel\"},"
+            + "{\"entryId\":2,\"geohash\":\"u0yjjd6jk0zk\",\"description\":\"Birnen\"}]";
+
+    private MockWebServer server;
+    private ApiClient apiClient;
+    private BlockApi api;
+    private DateTime since;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        apiClient = new ApiClient();
+        apiClient.setBasePath(server.url("/").toString().replaceAll("/$", ""));
+        api = new BlockApi(apiClient);
+        since = new DateTime(2017, 1, 1, 0, 0, DateTimeZone.UTC);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private static Buffer gzip(String text) throws IOException {
+        Buffer buffer = new Buffer();
+        GzipSink sink = new GzipSink(buffer);
+        Buffer source = new Buffer().writeUtf8(text);
+        sink.write(source, source.size());
+        sink.close();
+        return buffer;
+    }
+
+    private static Buffer deflate(String text, boolean zlib) throws IOException {
+        Buffer buffer = new Buffer();
+        DeflaterOutputStream out = new DeflaterOutputStream(buffer.outputStream(), new Deflater(Deflater.DEFAULT_COMPRESSION, !zlib));
+        out.write(text.getBytes("UTF-8"));
+        out.close();
+        return buffer;
+    }
+
+    private static String gunzip(Buffer body) throws IOException {
+        return Okio.buffer(new GzipSource(body)).readUtf8();
+    }
+
+    private static MockResponse json(Buffer body, String encoding) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setHeader("Content-Encoding", encoding)
+                .setBody(body);
+    }
+
+    private Call postCall(String body) throws ApiException {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Content-Type", "application/json");
+        return apiClient.buildCall("/entry/add", "POST", new ArrayList<Pair>(), body, headers,
+                new HashMap<String, Object>(), new String[0], null);
+    }
+
+    private static String bigJson() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("Äpfel und Birnen ");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void gzipResponseTest() throws Exception {
+        server.enqueue(json(gzip(ENTRIES), "gzip"));
+        List<FroodyEntry> entries = api.blockGetGet("u0yjjd", since);
+        assertEquals(2, entries.size());
+        assertEquals("Äpfel", entries.get(0).getDescription());
+        assertEquals(CompressionInterceptor.ACCEPT_ENCODING, server.takeRequest().getHeader("Accept-Encoding"));
+    }
+
+    @Test
+    public void gzipStreamResponseTest() throws Exception {
+        server.enqueue(json(gzip(ENTRIES), "gzip"));
+        final List<FroodyEntry> entries = new ArrayList<FroodyEntry>();
+        int count = api.blockGetGetStream("u0yjjd", since, new ItemConsumer<FroodyEntry>() {
+            @Override
+            public void accept(FroodyEntry item) {
+                entries.add(item);
+            }
+        });
+        assertEquals(2, count);
+        assertEquals("Birnen", entries.get(1).getDescription());
+    }
+
+    @Test
+    public void deflateResponseTest() throws Exception {
+        server.enqueue(json(deflate(ENTRIES, true), "deflate"));
+        server.enqueue(json(deflate(ENTRIES, false), "deflate"));
+        assertEquals(2, api.blockGetGet("u0yjjd", since).size());
+        assertEquals(2, api.blockGetGet("u0yjjd", since).size());
+    }
+
+    @Test
+    public void requestCompressionTest() throws Exception {
+        String body = bigJson();
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setHeader("Accept-Encoding", "gzip"));
+        }
+
+        // Disabled by default
+        postCall(body).execute();
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+
+        apiClient.setRequestCompression(true);
+        postCall(body).execute();
+        RecordedRequest compressed = server.takeRequest();
+        assertEquals("gzip", compressed.getHeader("Content-Encoding"));
+        assertTrue(compressed.getBodySize() < body.length());
+        assertEquals(apiClient.getJSON().serialize(body), gunzip(compressed.getBody()));
+
+        // Too small to gain from it
+        postCall("Äpfel").execute();
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void requestCompressionNeedsServerSupportTest() throws Exception {
+        apiClient.setRequestCompression(true);
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse().setHeader("Accept-Encoding", "gzip"));
+        server.enqueue(new MockResponse().setResponseCode(415));
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+
+        // Not announced yet
+        postCall(bigJson()).execute();
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+        postCall(bigJson()).execute();
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+
+        // Rejected and sent again uncompressed
+        assertEquals(200, postCall(bigJson()).execute().code());
+        assertEquals("gzip", server.takeRequest().getHeader("Content-Encoding"));
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+
+        postCall(bigJson()).execute();
+        assertNull(server.takeRequest().getHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void mockServerTest() throws Exception {
+        MockFroodyServer mock = new MockFroodyServer().setEntriesPerBlock(200).start();
+        try {
+            BlockApi mockApi = new BlockApi(mock.createApiClient());
+            List<FroodyEntry> gzipped = mockApi.blockGetGet("u0yjj", since);
+            assertEquals(CompressionInterceptor.ACCEPT_ENCODING,
+                    mock.getMockWebServer().takeRequest().getHeader("Accept-Encoding"));
+            mock.setGzipResponses(false);
+            List<FroodyEntry> plain = mockApi.blockGetGet("u0yjj", since);
+            assertEquals(plain, gzipped);
+        } finally {
+            mock.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.froodyapp.api.invoker;
+
+import io.github.froodyapp.api.api.BlockApi;
+import io.github.froodyapp.api.mock.MockFroodyServer;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.froodyapp.api.model_.BlockInfo;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the connection, timeout and dispatcher settings of the ApiClient
+ */
+public class ApiClientConnectionTest {
+    private MockFroodyServer server;
+    private ApiClient apiClient;
+    private BlockApi api;
+    private DateTime since;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockFroodyServer().start();
+        apiClient = server.createApiClient();
+        api = new BlockApi(apiClient);
+        since = new DateTime(2017, 1, 1, 0, 0, DateTimeZone.UTC);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void settingsTest() {
+        apiClient.setReadTimeout(1234).setWriteTimeout(2345).setMaxRequests(32).setMaxRequestsPerHost(12);
+        assertEquals(1234, apiClient.getReadTimeout());
+        assertEquals(2345, apiClient.getWriteTimeout());
+        assertEquals(32, apiClient.getMaxRequests());
+        assertEquals(12, apiClient.getMaxRequestsPerHost());
+
+        assertTrue(apiClient.isHttp2Enabled());
+        assertFalse(apiClient.setHttp2Enabled(false).isHttp2Enabled());
+        assertTrue(apiClient.setHttp2Enabled(true).isHttp2Enabled());
+    }
+
+    @Test
+    public void callTimeoutTest() throws Exception {
+        server.setLatency(300, 300);
+        apiClient.setCallTimeout("/block/get", 100);
+        try {
+            api.blockGetGet("u0yjjd", since);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertTrue(e.getCause() instanceof SocketTimeoutException);
+        }
+        // Other endpoints keep the client's timeouts
+        api.blockInfoGet("u0yjjd", since);
+
+        apiClient.setCallTimeout("/block/get", null);
+        assertNull(apiClient.getCallTimeout("/block/get"));
+        api.blockGetGet("u0yjjd", since);
+    }
+
+    @Test
+    public void connectionReuseTest() throws Exception {
+        apiClient.setConnectionPool(4, 60000);
+        api.blockInfoGet("u0yjjd", since);
+        api.blockInfoGet("u0yjjd", since);
+        server.getMockWebServer().takeRequest();
+        assertEquals(1, server.getMockWebServer().takeRequest().getSequenceNumber());
+
+        // Without idle connections every call opens a new one
+        apiClient.setConnectionPool(0, 60000);
+        api.blockInfoGet("u0yjjd", since);
+        api.blockInfoGet("u0yjjd", since);
+        assertEquals(0, server.getMockWebServer().takeRequest().getSequenceNumber());
+        assertEquals(0, server.getMockWebServer().takeRequest().getSequenceNumber());
+    }
+
+    @Test
+    public void asyncProgressListenerTest() throws Exception {
+        int interceptorCount = apiClient.getHttpClient().networkInterceptors().size();
+        final CountDownLatch done = new CountDownLatch(3);
+        final AtomicBoolean downloadDone = new AtomicBoolean();
+        for (int i = 0; i < 3; i++) {
+            api.blockInfoGetAsync("u0yjjd", since, new ApiCallback<List<BlockInfo>>() {
+                @Override
+                public void onFailure(ApiException e, int statusCode, Map<String, List<String>> responseHeaders) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onSuccess(List<BlockInfo> result, int statusCode, Map<String, List<String>> responseHeaders) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onUploadProgress(long bytesWritten, long contentLength, boolean done) {
+                }
+
+                @Override
+                public void onDownloadProgress(long bytesRead, long contentLength, boolean done) {
+                    if (done) {
+                        downloadDone.set(true);
+                    }
+                }
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(downloadDone.get());
+        // The progress listeners are only applied to their calls, not added to the shared client
+        assertEquals(interceptorCount, apiClient.getHttpClient().networkInterceptors().size());
+    }
+}
@@ -0,0 +1,313 @@
+package io.github.froodyapp.api.invoker;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.SocketPolicy;
+
+import io.github.froodyapp.api.api.BlockApi;
+import io.github.froodyapp.api.api.EntryApi;
+import io.github.froodyapp.api.mock.MockFroodyServer;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the retries and circuit breakers of the ApiClient
+ */
+public class ApiClientResilienceTest {
+    private static final String BLOCK_INFO = "[{\"geohash\":\"u0yjjd\",\"hasBlockBeenModified\":false}]";
+
+    private MockWebServer server;
+    private ApiClient apiClient;
+    private BlockApi api;
+    private DateTime since;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        apiClient = new ApiClient();
+        apiClient.setBasePath(server.url("/").toString().replaceAll("/$", ""));
+        api = new BlockApi(apiClient);
+        since = new DateTime(2017, 1, 1, 0, 0, DateTimeZone.UTC);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+
+    private String host() {
+        return server.getHostName() + ":" + server.getPort();
+    }
+
+    @Test
+    public void noRetriesByDefaultTest() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        try {
+            api.blockInfoGet("u0yjjd", since);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(503, e.getCode());
+        }
+        assertEquals(1, server.getRequestCount());
+        assertNull(apiClient.getCircuitBreaker(host()));
+    }
+
+    @Test
+    public void retryTest() throws Exception {
+        apiClient.setRetryPolicy(new RetryPolicy(4, 1, 10));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+        server.enqueue(json(BLOCK_INFO));
+        assertEquals("u0yjjd", api.blockInfoGet("u0yjjd", since).get(0).getGeohash());
+        assertTrue(server.getRequestCount() >= 4);
+    }
+
+    @Test
+    public void retriesExhaustedTest() throws Exception {
+        apiClient.setRetryPolicy(new RetryPolicy(2, 1, 10));
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(502));
+        }
+        try {
+            api.blockInfoGet("u0yjjd", since);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(502, e.getCode());
+        }
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void noRetryOfClientErrorsAndPostsTest() throws Exception {
+        apiClient.setRetryPolicy(new RetryPolicy(3, 1, 10));
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        try {
+            api.blockInfoGet("u0yjjd", since);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(404, e.getCode());
+        }
+        try {
+            new EntryApi(apiClient).entryAddPost(1L, "u0yjjd6jk0zj", 1, 0, 0, "", "", "");
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(503, e.getCode());
+        }
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void endpointRetryPolicyTest() throws Exception {
+        apiClient.setRetryPolicy(new RetryPolicy(3, 1, 10));
+        apiClient.setRetryPolicy("/block/info", RetryPolicy.NONE);
+        server.enqueue(new MockResponse().setResponseCode(503));
+        try {
+            api.blockInfoGet("u0yjjd", since);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(503, e.getCode());
+        }
+        assertEquals(1, server.getRequestCount());
+
+        // Back to the client's policy
+        apiClient.setRetryPolicy("/block/info", null);
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(json(BLOCK_INFO));
+        assertEquals("u0yjjd", api.blockInfoGet("u0yjjd", since).get(0).getGeohash());
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void noRetryOfUnsupportedTest() throws Exception {
+        apiClient.setRetryPolicy(new RetryPolicy(3, 1, 10));
+        server.enqueue(new MockResponse().setResponseCode(501));
+        server.enqueue(new MockResponse().setResponseCode(505));
+        for (int code : new int[]{501, 505}) {
+            try {
+                api.blockInfoGet("u0yjjd", since);
+                fail("ApiException expected");
+            } catch (ApiException e) {
+                assertEquals(code, e.getCode());
+            }
+        }
+        assertEquals(2, server.getRequestCount());
+        assertFalse(RetryPolicy.isRetryableStatus(501));
+        assertFalse(RetryPolicy.isRetryableStatus(505));
+        assertTrue(RetryPolicy.isRetryableStatus(500));
+        assertTrue(RetryPolicy.isRetryableStatus(503));
+    }
+
+    @Test
+    public void retryAfterTest() throws Exception {
+        apiClient.setRetryPolicy(new RetryPolicy(2, 1, 300));
+        server.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "1"));
+        server.enqueue(json(BLOCK_INFO));
+        long start = System.nanoTime();
+        api.blockInfoGet("u0yjjd", since);
+        long millis = (System.nanoTime() - start) / 1000000;
+        // Waited for Retry-After, but at most the maximum delay
+        assertTrue("Took " + millis + " ms", millis >= 300 && millis < 1000);
+    }
+
+    @Test
+    public void backoffTest() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000);
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            long first = policy.getDelayMillis(1, random);
+            assertTrue(first >= 50 && first <= 100);
+            long third = policy.getDelayMillis(3, random);
+            assertTrue(third >= 200 && third <= 400);
+            long capped = policy.getDelayMillis(40, random);
+            assertTrue(capped >= 500 && capped <= 1000);
+        }
+    }
+
+    @Test
+    public void circuitBreakerTest() throws Exception {
+        MockFroodyServer mock = new MockFroodyServer().setErrorRate(1).start();
+        try {
+            ApiClient mockClient = mock.createApiClient().setCircuitBreaker(3, 200);
+            BlockApi mockApi = new BlockApi(mockClient);
+            for (int i = 0; i < 3; i++) {
+                try {
+                    mockApi.blockInfoGet("u0yjjd", since);
+                    fail("ApiException expected");
+                } catch (ApiException e) {
+                    assertEquals(503, e.getCode());
+                }
+            }
+            String host = "localhost:" + mock.getMockWebServer().getPort();
+            CircuitBreaker breaker = mockClient.getCircuitBreaker(host);
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+            // Fails without loading the server
+            try {
+                mockApi.blockInfoGet("u0yjjd", since);
+                fail("ApiException expected");
+            } catch (ApiException e) {
+                assertTrue(e.getCause() instanceof CircuitOpenException);
+            }
+            assertEquals(3, mock.getRequestCount());
+
+            // Failing probe opens it again
+            Thread.sleep(250);
+            try {
+                mockApi.blockInfoGet("u0yjjd", since);
+                fail("ApiException expected");
+            } catch (ApiException e) {
+                assertEquals(503, e.getCode());
+            }
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+            assertEquals(4, mock.getRequestCount());
+
+            // Successful probe closes it
+            mock.setErrorRate(0);
+            Thread.sleep(250);
+            mockApi.blockInfoGet("u0yjjd", since);
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        } finally {
+            mock.close();
+        }
+    }
+
+    @Test
+    public void probeEndingInRuntimeExceptionTest() throws Exception {
+        apiClient.setCircuitBreaker(1, 0);
+        server.enqueue(new MockResponse().setResponseCode(503));
+        try {
+            api.blockInfoGet("u0yjjd", since);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(503, e.getCode());
+        }
+        CircuitBreaker breaker = apiClient.getCircuitBreaker(host());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // The probe call ends without a response or an IOException
+        final AtomicBoolean throwOnce = new AtomicBoolean(true);
+        apiClient.getHttpClient().networkInterceptors().add(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                if (throwOnce.getAndSet(false)) {
+                    throw new IllegalStateException("Broken probe");
+                }
+                return chain.proceed(chain.request());
+            }
+        });
+        server.enqueue(json(BLOCK_INFO));
+        try {
+            api.blockInfoGet("u0yjjd", since);
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            assertEquals("Broken probe", e.getMessage());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // The next probe is let through
+        assertEquals(1, api.blockInfoGet("u0yjjd", since).size());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void circuitBreakerStatesTest() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 0);
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // Only one probe at a time
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void retriesWithCircuitBreakerTest() throws Exception {
+        MockFroodyServer mock = new MockFroodyServer().setErrorRate(0.3).start();
+        try {
+            ApiClient mockClient = mock.createApiClient()
+                    .setRetryPolicy(new RetryPolicy(12, 1, 5))
+                    .setCircuitBreaker(20, 1000);
+            BlockApi mockApi = new BlockApi(mockClient);
+            for (int i = 0; i < 20; i++) {
+                mockApi.blockInfoGet("u0yjjd", since);
+            }
+            assertTrue(mock.getRequestCount() > 20);
+            assertEquals(CircuitBreaker.State.CLOSED,
+                    mockClient.getCircuitBreaker("localhost:" + mock.getMockWebServer().getPort()).getState());
+        } finally {
+            mock.close();
+        }
+    }
+}
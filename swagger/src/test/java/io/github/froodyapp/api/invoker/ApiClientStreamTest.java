@@ -0,0 +1,184 @@
+package io.github.froodyapp.api.invoker;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import io.github.froodyapp.api.api.BlockApi;
+import io.github.froodyapp.api.model_.FroodyEntry;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the streaming deserialization of JSON array responses
+ */
+public class ApiClientStreamTest {
+
+    private MockWebServer server;
+    private BlockApi api;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        ApiClient apiClient = new ApiClient();
+        apiClient.setBasePath(server.url("/").toString().replaceAll("/$", ""));
+        api = new BlockApi(apiClient);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private static String entriesJson(int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"entryId\":").append(i + 1)
+                    .append(",\"geohash\":\"u0yjjd6jk0zj\",\"entryType\":").append(i % 7)
+                    .append(",\"modificationDate\":\"2017-03-01T12:00:00.000Z\",\"wasDeleted\":false}");
+        }
+        return sb.append("]").toString();
+    }
+
+    private static DateTime since() {
+        return new DateTime(2017, 1, 1, 0, 0, DateTimeZone.UTC);
+    }
+
+    /**
+     * All entries arrive at the consumer, in order and equal to the ones of the buffered call
+     */
+    @Test
+    public void blockGetGetStreamTest() throws Exception {
+        String body = entriesJson(500);
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(body));
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(body));
+
+        final List<FroodyEntry> streamed = new ArrayList<FroodyEntry>();
+        int count = api.blockGetGetStream("u0yjjd", since(), new ItemConsumer<FroodyEntry>() {
+            @Override
+            public void accept(FroodyEntry item) {
+                streamed.add(item);
+            }
+        });
+        List<FroodyEntry> buffered = api.blockGetGet("u0yjjd", since());
+
+        assertEquals(500, count);
+        assertEquals(buffered, streamed);
+        assertEquals(Long.valueOf(1), streamed.get(0).getEntryId());
+        assertEquals(Long.valueOf(500), streamed.get(499).getEntryId());
+
+        RecordedRequest request = server.takeRequest();
+        assertTrue(request.getPath().startsWith("/block/get?geohash=u0yjjd"));
+    }
+
+    /**
+     * Items are handed out while the body is still being received
+     */
+    @Test
+    public void itemsBeforeBodyCompleteTest() throws Exception {
+        final String body = entriesJson(2000);
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json")
+                .setBody(body).throttleBody(16 * 1024, 50, TimeUnit.MILLISECONDS));
+
+        final long start = System.nanoTime();
+        final long[] firstItemAt = {-1};
+        int count = api.blockGetGetStream("u0yjjd", since(), new ItemConsumer<FroodyEntry>() {
+            @Override
+            public void accept(FroodyEntry item) {
+                if (firstItemAt[0] < 0) {
+                    firstItemAt[0] = System.nanoTime() - start;
+                }
+            }
+        });
+        long total = System.nanoTime() - start;
+
+        assertEquals(2000, count);
+        assertTrue("First item should arrive before the whole body", firstItemAt[0] < total / 2);
+    }
+
+    /**
+     * Empty and null bodies are empty lists, no content is no items
+     */
+    @Test
+    public void emptyResponsesTest() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("[]"));
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("null"));
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(""));
+        server.enqueue(new MockResponse().setResponseCode(204));
+
+        ItemConsumer<FroodyEntry> failing = new ItemConsumer<FroodyEntry>() {
+            @Override
+            public void accept(FroodyEntry item) {
+                fail("No item expected");
+            }
+        };
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, api.blockGetGetStream("u0yjjd", since(), failing));
+        }
+    }
+
+    /**
+     * Error status codes keep their body, like for buffered calls
+     */
+    @Test
+    public void errorResponseTest() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500).setBody("{\"message\":\"down\"}"));
+        try {
+            api.blockGetGetStream("u0yjjd", since(), new ItemConsumer<FroodyEntry>() {
+                @Override
+                public void accept(FroodyEntry item) {
+                }
+            });
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(500, e.getCode());
+            assertEquals("{\"message\":\"down\"}", e.getResponseBody());
+        }
+    }
+
+    /**
+     * Items before malformed JSON are handed out, then the call fails
+     */
+    @Test
+    public void malformedResponseTest() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json")
+                .setBody("[{\"entryId\":1},{\"entryId\":2},{\"entryId\":"));
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json")
+                .setBody("{\"entryId\":1}"));
+
+        final List<FroodyEntry> streamed = new ArrayList<FroodyEntry>();
+        ItemConsumer<FroodyEntry> consumer = new ItemConsumer<FroodyEntry>() {
+            @Override
+            public void accept(FroodyEntry item) {
+                streamed.add(item);
+            }
+        };
+        try {
+            api.blockGetGetStream("u0yjjd", since(), consumer);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(2, streamed.size());
+        }
+        try {
+            api.blockGetGetStream("u0yjjd", since(), consumer);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(2, streamed.size());
+        }
+    }
+}
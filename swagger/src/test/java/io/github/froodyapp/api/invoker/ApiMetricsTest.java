@@ -0,0 +1,167 @@
+package io.github.froodyapp.api.invoker;
+
+import io.github.froodyapp.api.api.BlockApi;
+import io.github.froodyapp.api.api.EntryApi;
+import io.github.froodyapp.api.mock.MockFroodyServer;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the request metrics of the ApiClient
+ */
+public class ApiMetricsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockFroodyServer server;
+    private ApiClient apiClient;
+    private BlockApi blockApi;
+    private DateTime since;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockFroodyServer().start();
+        apiClient = server.createApiClient();
+        blockApi = new BlockApi(apiClient);
+        since = new DateTime(2017, 1, 1, 0, 0, DateTimeZone.UTC);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void disabledByDefaultTest() throws Exception {
+        assertFalse(apiClient.isMetricsEnabled());
+        assertNull(apiClient.getMetrics());
+    }
+
+    @Test
+    public void callsTest() throws Exception {
+        ApiMetrics metrics = apiClient.setMetricsEnabled(true).getMetrics();
+        server.setLatency(50, 60);
+        blockApi.blockGetGet("u0yjjd", since);
+        blockApi.blockGetGet("u0yjje", since);
+        blockApi.blockInfoGet("u0yjjd", since);
+
+        Map<String, ApiMetrics.Snapshot> snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.size());
+        ApiMetrics.Snapshot blockGet = snapshot.get("GET /block/get");
+        assertEquals(2, blockGet.getCallCount());
+        assertTrue(blockGet.getLatencyPercentileMillis(50) >= 50);
+        assertTrue(blockGet.getMaxLatencyMillis() >= 50);
+        assertTrue(blockGet.getMeanLatencyMillis() >= 50);
+        assertEquals(2, sum(blockGet.getLatencyBuckets()));
+        assertTrue(blockGet.getBytesIn() > 0);
+        assertEquals(0, blockGet.getBytesOut());
+        assertTrue(blockGet.getErrorCounts().isEmpty());
+        assertEquals(1, snapshot.get("GET /block/info").getCallCount());
+
+        // Snapshots don't change
+        blockApi.blockGetGet("u0yjjd", since);
+        assertEquals(2, blockGet.getCallCount());
+        assertEquals(3, metrics.snapshot().get("GET /block/get").getCallCount());
+
+        assertTrue(metrics.dump().contains("GET /block/get: 3, "));
+        metrics.reset();
+        assertTrue(metrics.snapshot().isEmpty());
+    }
+
+    @Test
+    public void bytesTest() throws Exception {
+        ApiMetrics metrics = apiClient.setMetricsEnabled(true).getMetrics();
+        blockApi.blockGetGet("u0yjj", since);
+        long gzipped = metrics.snapshot().get("GET /block/get").getBytesIn();
+        server.setGzipResponses(false);
+        blockApi.blockGetGet("u0yjj", since);
+        long plain = metrics.snapshot().get("GET /block/get").getBytesIn() - gzipped;
+        assertTrue(gzipped + " < " + plain, gzipped < plain);
+
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Content-Type", "application/json");
+        apiClient.buildCall("/admin/cleanup", "POST", new ArrayList<Pair>(), "body", headers,
+                new HashMap<String, Object>(), new String[0], null).execute();
+        assertEquals("\"body\"".length(), metrics.snapshot().get("POST /admin/cleanup").getBytesOut());
+    }
+
+    @Test
+    public void errorsTest() throws Exception {
+        ApiMetrics metrics = apiClient.setMetricsEnabled(true).getMetrics();
+        EntryApi entryApi = new EntryApi(apiClient);
+        try {
+            entryApi.entryByIdGet(Long.MAX_VALUE);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(404, e.getCode());
+        }
+        server.setDisconnectRate(1);
+        try {
+            entryApi.entryByIdGet(Long.MAX_VALUE);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(0, e.getCode());
+        }
+
+        ApiMetrics.Snapshot byId = metrics.snapshot().get("GET /entry/byId");
+        assertEquals(2, byId.getCallCount());
+        assertEquals(Long.valueOf(1), byId.getErrorCounts().get(404));
+        assertEquals(Long.valueOf(1), byId.getErrorCounts().get(ApiMetrics.NETWORK_ERROR));
+        // OkHttp retries the request after the connection failure
+        assertEquals(server.getRequestCount("/entry/byId") - 2, byId.getRetries());
+    }
+
+    @Test
+    public void cacheHitsTest() throws Exception {
+        ApiMetrics metrics = apiClient.setMetricsEnabled(true).getMetrics();
+        apiClient.enableCache(folder.newFolder(), 1024 * 1024)
+                .setCachePolicy("/block/info", new CachePolicy(60, 0))
+                .setCachePolicy("/block/get", CachePolicy.REVALIDATE);
+        blockApi.blockInfoGet("u0yjjd", since);
+        blockApi.blockInfoGet("u0yjjd", since);
+        blockApi.blockGetGet("u0yjjd", since);
+        blockApi.blockGetGet("u0yjjd", since);
+
+        ApiMetrics.Snapshot blockInfo = metrics.snapshot().get("GET /block/info");
+        assertEquals(1, blockInfo.getCacheHits());
+        assertEquals(0, blockInfo.getConditionalCacheHits());
+        ApiMetrics.Snapshot blockGet = metrics.snapshot().get("GET /block/get");
+        assertEquals(0, blockGet.getCacheHits());
+        assertEquals(1, blockGet.getConditionalCacheHits());
+    }
+
+    @Test
+    public void disableTest() throws Exception {
+        int interceptorCount = apiClient.getHttpClient().interceptors().size();
+        ApiMetrics metrics = apiClient.setMetricsEnabled(true).getMetrics();
+        blockApi.blockInfoGet("u0yjjd", since);
+        apiClient.setMetricsEnabled(false);
+        blockApi.blockInfoGet("u0yjjd", since);
+        assertEquals(1, metrics.snapshot().get("GET /block/info").getCallCount());
+        assertEquals(interceptorCount, apiClient.getHttpClient().interceptors().size());
+        assertTrue(apiClient.getHttpClient().networkInterceptors().isEmpty());
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.froodyapp.api.invoker;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import io.github.froodyapp.api.model_.BlockChanges;
+import io.github.froodyapp.api.model_.BlockInfo;
+import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.api.model_.FroodyUser;
+import io.github.froodyapp.api.model_.ResponseEntryAdd;
+import io.github.froodyapp.api.model_.ResponseOk;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the model TypeAdapters and the ISO-8601 parser behave like reflection and Joda
+ */
+public class ModelTypeAdaptersTest {
+
+    private final Gson gson = new JSON(new ApiClient()).getGson();
+
+    // Reflective Gson with the Joda formatter, as before the hand-written adapters
+    private final Gson reflective = new GsonBuilder()
+            .registerTypeAdapter(DateTime.class, new TypeAdapter<DateTime>() {
+                private final DateTimeFormatter formatter = ISODateTimeFormat.dateTime();
+
+                @Override
+                public void write(JsonWriter out, DateTime date) throws IOException {
+                    if (date == null) {
+                        out.nullValue();
+                    } else {
+                        out.value(formatter.print(date));
+                    }
+                }
+
+                @Override
+                public DateTime read(JsonReader in) throws IOException {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        return null;
+                    }
+                    return formatter.parseDateTime(in.nextString());
+                }
+            })
+            .create();
+
+    private static List<FroodyEntry> entries(int count) {
+        Random random = new Random(42);
+        List<FroodyEntry> entries = new ArrayList<FroodyEntry>();
+        for (int i = 0; i < count; i++) {
+            FroodyEntry entry = new FroodyEntry();
+            entry.setEntryId(random.nextLong());
+            entry.setUserId(i % 3 == 0 ? null : (long) random.nextInt(1000));
+            entry.setGeohash("u0yjjd6jk0" + i);
+            entry.setCreationDate(new DateTime(random.nextInt() * 1000L, DateTimeZone.forOffsetHours(i % 5)));
+            entry.setModificationDate(i % 4 == 0 ? null : new DateTime(random.nextInt() * 1000L + i, DateTimeZone.UTC));
+            entry.setEntryType(random.nextInt(20));
+            entry.setCertificationType(i % 2);
+            entry.setDistributionType(null);
+            entry.setDescription(i % 5 == 0 ? null : "Äpfel \"frisch\"\n" + i);
+            entry.setContact("contact" + i);
+            entry.setAddress("");
+            entry.setWasDeleted(i % 7 == 0);
+            entry.setManagementCode(random.nextInt());
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    @Test
+    public void froodyEntrySameAsReflectionTest() {
+        List<FroodyEntry> entries = entries(200);
+        Type type = new TypeToken<List<FroodyEntry>>() {}.getType();
+
+        String json = reflective.toJson(entries, type);
+        assertEquals(json, gson.toJson(entries, type));
+        List<FroodyEntry> expected = reflective.fromJson(json, type);
+        assertEquals(expected, gson.fromJson(json, type));
+    }
+
+    @Test
+    public void otherModelsSameAsReflectionTest() {
+        BlockInfo info = new BlockInfo();
+        info.setGeohash("u0yjjd");
+        info.setModificationDate(new DateTime(2017, 3, 1, 12, 0, DateTimeZone.UTC));
+        info.setHasBlockBeenModified(true);
+        FroodyUser user = new FroodyUser();
+        user.setUserId(17L);
+        ResponseEntryAdd entryAdd = new ResponseEntryAdd();
+        entryAdd.setEntryId(4L);
+        entryAdd.setManagementCode(99);
+        entryAdd.setCreationDate(new DateTime(2016, 12, 31, 23, 59, DateTimeZone.forOffsetHoursMinutes(-3, -30)));
+        ResponseOk ok = new ResponseOk();
+        ok.setSuccess(false);
+        BlockChanges changes = new BlockChanges().cursor(12L).entries(entries(3));
+        BlockChanges nullEntries = new BlockChanges().entries(null);
+
+        for (Object model : new Object[]{info, new BlockInfo(), user, new FroodyUser(), entryAdd, new ResponseEntryAdd(), ok, new ResponseOk(),
+                changes, new BlockChanges(), nullEntries}) {
+            String json = reflective.toJson(model);
+            assertEquals(json, gson.toJson(model));
+            assertEquals(reflective.fromJson(json, model.getClass()), gson.fromJson(json, model.getClass()));
+        }
+    }
+
+    @Test
+    public void lenientFieldsSameAsReflectionTest() {
+        String[] jsons = {
+                "{}",
+                "{\"entryId\":\"12\",\"wasDeleted\":\"true\",\"geohash\":false,\"unknown\":{\"a\":[1,2]},\"entryType\":3}",
+                "{\"entryId\":null,\"userId\":null,\"geohash\":null,\"wasDeleted\":null,\"creationDate\":null}",
+                "{\"entryId\":1,\"entryId\":2,\"description\":12.5}",
+                "null"
+        };
+        for (String json : jsons) {
+            assertEquals(reflective.fromJson(json, FroodyEntry.class), gson.fromJson(json, FroodyEntry.class));
+        }
+        try {
+            gson.fromJson("{\"entryId\":\"x\"}", FroodyEntry.class);
+            fail("JsonSyntaxException expected");
+        } catch (JsonSyntaxException e) {
+            // expected, like reflection
+        }
+    }
+
+    @Test
+    public void isoParserSameAsJodaTest() {
+        DateTimeFormatter joda = ISODateTimeFormat.dateTime();
+        Random random = new Random(7);
+        DateTimeZone[] zones = {DateTimeZone.UTC, DateTimeZone.forOffsetHours(1), DateTimeZone.forOffsetHoursMinutes(-9, -30),
+                DateTimeZone.forOffsetHoursMinutes(14, 0), DateTimeZone.forID("Europe/Berlin")};
+        for (int i = 0; i < 20000; i++) {
+            long millis = (random.nextLong() % (300L * 365 * 24 * 3600 * 1000)) + 946684800000L;
+            String text = joda.print(new DateTime(millis, zones[i % zones.length]));
+            assertEquals(text, joda.parseDateTime(text), IsoDateTimeParser.parse(text));
+        }
+
+        String[] texts = {
+                "0000-01-01T00:00:00.000Z", "0000-02-29T00:00:00.000Z", "1600-02-29T12:00:00.000+01:00",
+                "2000-02-29T23:59:59.999-00:00", "2016-02-29T00:00:00.000+23:59", "1969-12-31T23:59:59.999Z",
+                "2017-01-03T16:49:39.8Z", "2017-01-03T16:49:39.823456789+01:00", "2017-01-03T16:49:39.823+0100",
+                "2017-01-03T16:49:39.823z", "+2017-01-03T16:49:39.823Z", "12017-01-03T16:49:39.823Z"
+        };
+        for (String text : texts) {
+            assertEquals(text, joda.parseDateTime(text), IsoDateTimeParser.parse(text));
+        }
+    }
+
+    @Test
+    public void isoParserRejectsLikeJodaTest() {
+        String[] texts = {
+                "1900-02-29T00:00:00.000Z", "2017-04-31T00:00:00.000Z", "2017-13-01T00:00:00.000Z",
+                "2017-01-01T24:00:00.000Z", "2017-01-01T00:60:00.000Z", "2017-01-01T00:00:60.000Z",
+                "2017-01-01T00:00:00.000+24:00", "2017-01-01T00:00:00.000", "2017-01-01 00:00:00.000Z",
+                "2017-01-01T00:00:00.0a0Z", "2017-01-01T00:00:00.000Zx", ""
+        };
+        for (String text : texts) {
+            try {
+                IsoDateTimeParser.parse(text);
+                fail("IllegalArgumentException expected for " + text);
+            } catch (IllegalArgumentException e) {
+                try {
+                    ISODateTimeFormat.dateTime().parseDateTime(text);
+                    fail("Joda accepts " + text);
+                } catch (IllegalArgumentException expected) {
+                    // expected
+                }
+            }
+        }
+    }
+}
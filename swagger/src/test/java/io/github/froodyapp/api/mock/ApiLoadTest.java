@@ -0,0 +1,167 @@
+package io.github.froodyapp.api.mock;
+
+import io.github.froodyapp.api.api.BlockApi;
+import io.github.froodyapp.api.api.EntryApi;
+import io.github.froodyapp.api.invoker.ApiClient;
+import io.github.froodyapp.api.invoker.ApiException;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Throughput and latency of BlockApi and EntryApi against the MockFroodyServer, with simulated network latency.
+ * Prints the numbers of each run, so they can be compared between changes of the HTTP layer
+ */
+public class ApiLoadTest {
+    private static final int THREADS = 8;
+    private static final int REQUESTS = 200;
+    private static final String[] BLOCKS = {"u0yjjd", "u0yjje", "u0yjj9", "u0yjjf", "u0yjjc", "u0yjjg", "u0yjj3", "u0yjj6"};
+
+    private MockFroodyServer server;
+    private ApiClient apiClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockFroodyServer().setEntriesPerBlock(50).setLatency(5, 20).start();
+        apiClient = server.createApiClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    /**
+     * Latencies of all requests in nanoseconds, sorted
+     */
+    private static Result run(String name, Callable<Object> request) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(executor.submit(new Timed(request)));
+        }
+        List<Long> latencies = new ArrayList<Long>();
+        int failures = 0;
+        for (Future<Long> future : futures) {
+            long latency = future.get();
+            if (latency < 0) {
+                failures++;
+            } else {
+                latencies.add(latency);
+            }
+        }
+        long total = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        Collections.sort(latencies);
+        Result result = new Result(latencies, failures, total);
+        System.out.println(String.format("%s: %d requests, %d failed, %.1f req/s, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms",
+                name, REQUESTS, failures, REQUESTS / (total / 1e9),
+                result.percentile(50) / 1e6, result.percentile(95) / 1e6, result.percentile(99) / 1e6));
+        return result;
+    }
+
+    @Test
+    public void blockGetLoadTest() throws Exception {
+        final BlockApi api = new BlockApi(apiClient);
+        final DateTime since = new DateTime(DateTimeZone.UTC).minusWeeks(4);
+        Result result = run("BlockApi.blockGetGet", new Callable<Object>() {
+            private int next;
+
+            @Override
+            public Object call() throws ApiException {
+                String block;
+                synchronized (this) {
+                    block = BLOCKS[next++ % BLOCKS.length];
+                }
+                return api.blockGetGet(block, since);
+            }
+        });
+        assertEquals(0, result.failures);
+        assertTrue(result.percentile(50) >= TimeUnit.MILLISECONDS.toNanos(5));
+    }
+
+    @Test
+    public void blockInfoLoadTest() throws Exception {
+        final BlockApi api = new BlockApi(apiClient);
+        final DateTime since = new DateTime(DateTimeZone.UTC).minusWeeks(1);
+        Result result = run("BlockApi.blockInfoGet", new Callable<Object>() {
+            @Override
+            public Object call() throws ApiException {
+                return api.blockInfoGet("u0yjjd", since);
+            }
+        });
+        assertEquals(0, result.failures);
+    }
+
+    @Test
+    public void entryByIdWithErrorsLoadTest() throws Exception {
+        final EntryApi api = new EntryApi(apiClient);
+        final long entryId = new BlockApi(apiClient)
+                .blockGetGet("u0yjjd", new DateTime(DateTimeZone.UTC).minusWeeks(4)).get(0).getEntryId();
+        server.setErrorRate(0.1);
+        Result result = run("EntryApi.entryByIdGet, 10% errors", new Callable<Object>() {
+            @Override
+            public Object call() throws ApiException {
+                return api.entryByIdGet(entryId);
+            }
+        });
+        assertTrue(result.failures > 0 && result.failures < REQUESTS / 2);
+    }
+
+    // Runs a request and returns its latency in nanoseconds, -1 if it failed
+    private static class Timed implements Callable<Long> {
+        private final Callable<Object> request;
+
+        Timed(Callable<Object> request) {
+            this.request = request;
+        }
+
+        @Override
+        public Long call() {
+            long start = System.nanoTime();
+            try {
+                request.call();
+                return System.nanoTime() - start;
+            } catch (Exception e) {
+                return -1L;
+            }
+        }
+    }
+
+    private static class Result {
+        final List<Long> latencies;
+        final int failures;
+        final long totalNanos;
+
+        Result(List<Long> latencies, int failures, long totalNanos) {
+            this.latencies = latencies;
+            this.failures = failures;
+            this.totalNanos = totalNanos;
+        }
+
+        long percentile(int percent) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percent / 100.0 * latencies.size()) - 1;
+            return latencies.get(Math.max(0, Math.min(index, latencies.size() - 1)));
+        }
+    }
+}
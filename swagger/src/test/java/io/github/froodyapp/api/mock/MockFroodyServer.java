@@ -0,0 +1,767 @@
+package io.github.froodyapp.api.mock;
+
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import com.squareup.okhttp.mockwebserver.SocketPolicy;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ServerSocketFactory;
+
+import okio.Buffer;
+import okio.GzipSink;
+
+import io.github.froodyapp.api.invoker.ApiClient;
+import io.github.froodyapp.api.invoker.Configuration;
+import io.github.froodyapp.api.invoker.JSON;
+import io.github.froodyapp.api.model_.BlockChanges;
+import io.github.froodyapp.api.model_.BlockInfo;
+import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.api.model_.FroodyUser;
+import io.github.froodyapp.api.model_.ResponseEntryAdd;
+import io.github.froodyapp.api.model_.ResponseOk;
+
+/**
+ * Embedded Froody server on MockWebServer, for tests without network.
+ * Serves the endpoints of all APIs from synthetic entries, which are generated per precision 6 block from the seed,
+ * so the same seed always serves the same entries. Entries added or deleted via API are kept in memory.
+ * Latency, bandwidth, payload size and error rates are configurable, also while running.
+ * Responses are gzipped for clients accepting it. Successful GET responses have an ETag
+ * and conditional requests with a matching If-None-Match get a 304.
+ * Every add and delete gets the next number of a change sequence, which /block/changes uses as cursor.
+ * The synthetic entries are the state at cursor 1.
+ */
+public class MockFroodyServer implements Closeable {
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final int CELL_PRECISION = 6;
+    private static final int MIN_BLOCK_PRECISION = 5;
+    private static final int MAX_ENTRIES_PER_BLOCK = 1 << 16;
+    private static final long ADDED_ENTRY_ID_START = 1L << 48;
+    private static final int ENTRY_TYPE_COUNT = 50;
+    private static final int POPULAR_ENTRY_TYPE_COUNT = 5;
+
+    private final MockWebServer server = new MockWebServer();
+    private final JSON json = new JSON(new ApiClient());
+    private final long seed;
+    private final Random random;
+    private final DateTime startTime = new DateTime(DateTimeZone.UTC).withMillisOfSecond(0);
+
+    private final ConcurrentHashMap<Long, FroodyEntry> modifiedEntries = new ConcurrentHashMap<Long, FroodyEntry>();
+    private final AtomicLong nextEntryId = new AtomicLong(ADDED_ENTRY_ID_START);
+    private final AtomicLong nextUserId = new AtomicLong(1);
+    private final ConcurrentHashMap<String, AtomicInteger> requestCounts = new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+    private final AtomicInteger compressedRequestCount = new AtomicInteger();
+    private final Map<Long, Long> changeSequences = new HashMap<Long, Long>();    // EntryId -> sequence of its last change
+    private long lastChange = 1;
+    private long oldestCursor = 1;
+
+    private volatile int entriesPerBlock = 20;
+    private volatile long minLatencyMillis = 0;
+    private volatile long maxLatencyMillis = 0;
+    private volatile long connectionLatencyMillis = 0;
+    private volatile long bytesPerSecond = 0;
+    private volatile double errorRate = 0;
+    private volatile double disconnectRate = 0;
+    private volatile boolean gzipResponses = true;
+    private volatile boolean acceptCompressedRequests = false;
+    private volatile boolean changesEnabled = true;
+
+    /**
+     * Server with the default seed
+     */
+    public MockFroodyServer() {
+        this(42);
+    }
+
+    /**
+     * Server serving the synthetic entries of the given seed
+     *
+     * @param seed Seed of the synthetic entries and of latency and error decisions
+     */
+    public MockFroodyServer(long seed) {
+        this.seed = seed;
+        this.random = new Random(seed);
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                return MockFroodyServer.this.dispatch(request);
+            }
+        });
+    }
+
+    //
+    // Lifecycle
+    //
+
+    /**
+     * Start the server on a free local port
+     *
+     * @return this
+     * @throws IOException If the server cannot be started
+     */
+    public MockFroodyServer start() throws IOException {
+        server.start();
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Base path to use for an ApiClient, without trailing slash
+     *
+     * @return Base path
+     */
+    public String getBasePath() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    /**
+     * New ApiClient using this server
+     *
+     * @return ApiClient
+     */
+    public ApiClient createApiClient() {
+        return new ApiClient().setBasePath(getBasePath());
+    }
+
+    /**
+     * Point the default ApiClient to this server, so the APIs' default constructors use it
+     */
+    public void installAsDefault() {
+        Configuration.getDefaultApiClient().setBasePath(getBasePath());
+    }
+
+    //
+    // Configuration
+    //
+
+    /**
+     * Synthetic entries per precision 6 block, a precision 5 block has 32 times as many
+     *
+     * @param entriesPerBlock Entry count
+     * @return this
+     */
+    public MockFroodyServer setEntriesPerBlock(int entriesPerBlock) {
+        if (entriesPerBlock < 0 || entriesPerBlock >= MAX_ENTRIES_PER_BLOCK) {
+            throw new IllegalArgumentException("entriesPerBlock must be in [0, " + MAX_ENTRIES_PER_BLOCK + ")");
+        }
+        this.entriesPerBlock = entriesPerBlock;
+        return this;
+    }
+
+    /**
+     * Delay before each response, uniformly distributed between min and max
+     *
+     * @param minMillis Minimal latency
+     * @param maxMillis Maximal latency
+     * @return this
+     */
+    public MockFroodyServer setLatency(long minMillis, long maxMillis) {
+        if (minMillis < 0 || maxMillis < minMillis) {
+            throw new IllegalArgumentException("Invalid latency range");
+        }
+        this.minLatencyMillis = minMillis;
+        this.maxLatencyMillis = maxMillis;
+        return this;
+    }
+
+    /**
+     * Additional delay before the first response on each connection, simulating the round trips
+     * of the TCP and TLS handshakes which are saved by reusing connections
+     *
+     * @param millis Latency of a new connection
+     * @return this
+     */
+    public MockFroodyServer setConnectionLatency(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Invalid connection latency");
+        }
+        this.connectionLatencyMillis = millis;
+        return this;
+    }
+
+    /**
+     * Bandwidth of response bodies, 0 for unthrottled
+     *
+     * @param bytesPerSecond Bytes per second
+     * @return this
+     */
+    public MockFroodyServer setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Share of requests answered with 503 Service Unavailable
+     *
+     * @param errorRate Rate from 0 to 1
+     * @return this
+     */
+    public MockFroodyServer setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Share of requests where the connection is closed without response
+     *
+     * @param disconnectRate Rate from 0 to 1
+     * @return this
+     */
+    public MockFroodyServer setDisconnectRate(double disconnectRate) {
+        this.disconnectRate = disconnectRate;
+        return this;
+    }
+
+    /**
+     * Gzip response bodies if the client accepts it, which is the default
+     *
+     * @param gzipResponses True to gzip responses
+     * @return this
+     */
+    public MockFroodyServer setGzipResponses(boolean gzipResponses) {
+        this.gzipResponses = gzipResponses;
+        return this;
+    }
+
+    /**
+     * Accept gzipped request bodies and announce it with an Accept-Encoding response header.
+     * Otherwise they are answered with 415 Unsupported Media Type, which is the default
+     *
+     * @param acceptCompressedRequests True to accept gzipped requests
+     * @return this
+     */
+    public MockFroodyServer setAcceptCompressedRequests(boolean acceptCompressedRequests) {
+        this.acceptCompressedRequests = acceptCompressedRequests;
+        return this;
+    }
+
+    /**
+     * Serve /block/changes, or answer it with 404 like a server not supporting it
+     */
+    public MockFroodyServer setChangesEnabled(boolean changesEnabled) {
+        this.changesEnabled = changesEnabled;
+        return this;
+    }
+
+    /**
+     * Forget the changes made so far, so /block/changes answers all cursors given out before with 410 Gone
+     */
+    public MockFroodyServer expireChanges() {
+        synchronized (changeSequences) {
+            oldestCursor = ++lastChange;
+        }
+        return this;
+    }
+
+    //
+    // Statistics
+    //
+
+    /**
+     * @return Count of all requests received
+     */
+    public int getRequestCount() {
+        return server.getRequestCount();
+    }
+
+    /**
+     * @param path Endpoint path, e.g. /block/get
+     * @return Count of requests received for the endpoint
+     */
+    public int getRequestCount(String path) {
+        AtomicInteger count = requestCounts.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return Count of conditional requests answered with 304 Not Modified
+     */
+    public int getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    /**
+     * @return Count of requests received with a gzipped body
+     */
+    public int getCompressedRequestCount() {
+        return compressedRequestCount.get();
+    }
+
+    /**
+     * @return The underlying MockWebServer, e.g. to take recorded requests
+     */
+    public MockWebServer getMockWebServer() {
+        return server;
+    }
+
+    //
+    // Synthetic data
+    //
+
+    /**
+     * All entries of a block with precision 5 or more, including deleted ones, ordered by id
+     *
+     * @param geohash Geohash of the block
+     * @return Entries
+     */
+    public List<FroodyEntry> getEntriesOfBlock(String geohash) {
+        List<FroodyEntry> entries = new ArrayList<FroodyEntry>();
+        if (geohash.length() >= CELL_PRECISION) {
+            for (FroodyEntry entry : getEntriesOfCell(geohash.substring(0, CELL_PRECISION))) {
+                if (entry.getGeohash().startsWith(geohash)) {
+                    entries.add(entry);
+                }
+            }
+        } else {
+            for (int i = 0; i < BASE32.length(); i++) {
+                entries.addAll(getEntriesOfCell(geohash + BASE32.charAt(i)));
+            }
+        }
+        return entries;
+    }
+
+    private List<FroodyEntry> getEntriesOfCell(String cell) {
+        List<FroodyEntry> entries = new ArrayList<FroodyEntry>();
+        int count = entriesPerBlock;
+        for (int i = 0; i < count; i++) {
+            long entryId = (packCell(cell) << 16) | i;
+            FroodyEntry modified = modifiedEntries.get(entryId);
+            entries.add(modified != null ? modified : generateEntry(cell, i));
+        }
+        for (FroodyEntry entry : modifiedEntries.values()) {
+            if (entry.getEntryId() >= ADDED_ENTRY_ID_START && entry.getGeohash().startsWith(cell)) {
+                entries.add(entry);
+            }
+        }
+        Collections.sort(entries, new Comparator<FroodyEntry>() {
+            @Override
+            public int compare(FroodyEntry a, FroodyEntry b) {
+                return a.getEntryId().compareTo(b.getEntryId());
+            }
+        });
+        return entries;
+    }
+
+    // The index-th synthetic entry of a cell, always the same for a seed
+    private FroodyEntry generateEntry(String cell, int index) {
+        Random cellRandom = new Random(seed * 31 + cell.hashCode() * 131L + index);
+        StringBuilder geohash = new StringBuilder(cell);
+        for (int i = 0; i < 6; i++) {
+            geohash.append(BASE32.charAt(cellRandom.nextInt(BASE32.length())));
+        }
+        long ageMillis = (long) (cellRandom.nextDouble() * TimeUnit.DAYS.toMillis(21));
+        DateTime modificationDate = startTime.minus(ageMillis);
+
+        FroodyEntry entry = new FroodyEntry();
+        entry.setEntryId((packCell(cell) << 16) | index);
+        entry.setUserId((long) cellRandom.nextInt(10000));
+        entry.setGeohash(geohash.toString());
+        entry.setCreationDate(modificationDate.minusHours(cellRandom.nextInt(48)));
+        entry.setModificationDate(modificationDate);
+        entry.setEntryType(cellRandom.nextInt(ENTRY_TYPE_COUNT));
+        entry.setCertificationType(cellRandom.nextInt(3));
+        entry.setDistributionType(cellRandom.nextInt(3));
+        entry.setDescription("Entry " + index + " in " + cell);
+        entry.setContact("contact-" + index);
+        entry.setAddress("Street " + index);
+        entry.setManagementCode(null);
+        return entry;
+    }
+
+    // Store an added, modified or deleted entry as the next change
+    private void putChange(FroodyEntry entry) {
+        synchronized (changeSequences) {
+            modifiedEntries.put(entry.getEntryId(), entry);
+            changeSequences.put(entry.getEntryId(), ++lastChange);
+        }
+    }
+
+    private FroodyEntry getEntryById(long entryId) {
+        FroodyEntry modified = modifiedEntries.get(entryId);
+        if (modified != null || entryId >= ADDED_ENTRY_ID_START) {
+            return modified;
+        }
+        int index = (int) (entryId & 0xFFFF);
+        if (entryId < 0 || index >= entriesPerBlock) {
+            return null;
+        }
+        return generateEntry(unpackCell(entryId >>> 16), index);
+    }
+
+    private static long packCell(String cell) {
+        long bits = 0;
+        for (int i = 0; i < CELL_PRECISION; i++) {
+            bits = (bits << 5) | BASE32.indexOf(cell.charAt(i));
+        }
+        return bits;
+    }
+
+    private static String unpackCell(long bits) {
+        char[] cell = new char[CELL_PRECISION];
+        for (int i = CELL_PRECISION - 1; i >= 0; i--) {
+            cell[i] = BASE32.charAt((int) (bits & 31));
+            bits >>>= 5;
+        }
+        return new String(cell);
+    }
+
+    private static boolean isGeohash(String geohash) {
+        if (geohash == null || geohash.length() < MIN_BLOCK_PRECISION || geohash.length() > 12) {
+            return false;
+        }
+        for (int i = 0; i < geohash.length(); i++) {
+            if (BASE32.indexOf(geohash.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //
+    // Request handling
+    //
+    private MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        HttpUrl url = HttpUrl.parse("http://localhost" + request.getPath());
+        String path = url.encodedPath();
+        AtomicInteger count = requestCounts.putIfAbsent(path, new AtomicInteger(1));
+        if (count != null) {
+            count.incrementAndGet();
+        }
+
+        long latency;
+        boolean disconnect;
+        boolean error;
+        synchronized (random) {
+            latency = minLatencyMillis + (long) (random.nextDouble() * (maxLatencyMillis - minLatencyMillis));
+            disconnect = random.nextDouble() < disconnectRate;
+            error = !disconnect && random.nextDouble() < errorRate;
+        }
+        if (request.getSequenceNumber() == 0) {
+            latency += connectionLatencyMillis;
+        }
+        if (latency > 0) {
+            Thread.sleep(latency);
+        }
+        if (disconnect) {
+            return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+        }
+        if (error) {
+            return error(503, "Service unavailable");
+        }
+
+        if ("gzip".equals(request.getHeader("Content-Encoding"))) {
+            if (!acceptCompressedRequests) {
+                return error(415, "Unsupported Content-Encoding");
+            }
+            compressedRequestCount.incrementAndGet();
+        }
+
+        try {
+            MockResponse response = handle(request.getMethod(), path, url);
+            if ("GET".equals(request.getMethod()) && response.getStatus().contains(" 200 ")) {
+                // Successful GETs carry an ETag, so clients can revalidate them
+                String etag = "\"" + response.getBody().readByteString().md5().hex() + "\"";
+                response.setHeader("ETag", etag);
+                if (etag.equals(request.getHeader("If-None-Match"))) {
+                    notModifiedCount.incrementAndGet();
+                    return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+                }
+            }
+            compress(request, response);
+            if (bytesPerSecond > 0) {
+                response.throttleBody(Math.max(1, bytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+            }
+            return response;
+        } catch (IllegalArgumentException e) {
+            return error(400, e.getMessage());
+        }
+    }
+
+    private MockResponse handle(String method, String path, HttpUrl url) {
+        if ("/block/info".equals(path) && "GET".equals(method)) {
+            String geohash = requireGeohash(url);
+            DateTime minModificationDate = requireDateTime(url, "minModificationDate");
+            DateTime modificationDate = startTime.minusWeeks(3);
+            for (FroodyEntry entry : getEntriesOfBlock(geohash)) {
+                if (entry.getModificationDate().isAfter(modificationDate)) {
+                    modificationDate = entry.getModificationDate();
+                }
+            }
+            BlockInfo info = new BlockInfo();
+            info.setGeohash(geohash);
+            info.setModificationDate(modificationDate);
+            info.setHasBlockBeenModified(modificationDate.isAfter(minModificationDate));
+            return ok(Collections.singletonList(info));
+        }
+
+        if ("/block/get".equals(path) && "GET".equals(method)) {
+            String geohash = requireGeohash(url);
+            DateTime minModificationDate = requireDateTime(url, "minModificationDate");
+            List<FroodyEntry> entries = new ArrayList<FroodyEntry>();
+            for (FroodyEntry entry : getEntriesOfBlock(geohash)) {
+                if (entry.getModificationDate().isAfter(minModificationDate)) {
+                    entries.add(entry);
+                }
+            }
+            return ok(entries);
+        }
+
+        if ("/block/changes".equals(path) && "GET".equals(method) && changesEnabled) {
+            List<String> geohashes = url.queryParameterValues("geohash");
+            if (geohashes.isEmpty()) {
+                throw new IllegalArgumentException("Missing geohash");
+            }
+            for (String geohash : geohashes) {
+                if (!isGeohash(geohash)) {
+                    throw new IllegalArgumentException("Invalid geohash: " + geohash);
+                }
+            }
+            long cursor = url.queryParameter("cursor") == null ? 0 : requireLong(url, "cursor");
+
+            // Entries by id, as blocks may overlap
+            Map<Long, FroodyEntry> entries = new LinkedHashMap<Long, FroodyEntry>();
+            BlockChanges changes = new BlockChanges();
+            synchronized (changeSequences) {
+                if (cursor > lastChange || (cursor > 0 && cursor < oldestCursor)) {
+                    return error(410, "Cursor expired: " + cursor);
+                }
+                for (String geohash : geohashes) {
+                    if (cursor <= 0) {
+                        for (FroodyEntry entry : getEntriesOfBlock(geohash)) {
+                            entries.put(entry.getEntryId(), entry);
+                        }
+                    } else {
+                        for (Map.Entry<Long, Long> change : changeSequences.entrySet()) {
+                            FroodyEntry entry = modifiedEntries.get(change.getKey());
+                            if (change.getValue() > cursor && entry.getGeohash().startsWith(geohash)) {
+                                entries.put(entry.getEntryId(), entry);
+                            }
+                        }
+                    }
+                }
+                changes.setCursor(lastChange);
+            }
+            changes.setEntries(new ArrayList<FroodyEntry>(entries.values()));
+            return ok(changes);
+        }
+
+        if ("/entry/byId".equals(path) && "GET".equals(method)) {
+            FroodyEntry entry = getEntryById(requireLong(url, "entryId"));
+            return entry == null ? error(404, "No such entry") : ok(entry);
+        }
+
+        if ("/entry/popularEntryTypes".equals(path) && "GET".equals(method)) {
+            final Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+            for (FroodyEntry entry : getEntriesOfBlock(requireGeohash(url))) {
+                if (!entry.getWasDeleted()) {
+                    Integer typeCount = counts.get(entry.getEntryType());
+                    counts.put(entry.getEntryType(), typeCount == null ? 1 : typeCount + 1);
+                }
+            }
+            List<Integer> types = new ArrayList<Integer>(counts.keySet());
+            Collections.sort(types, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int byCount = counts.get(b).compareTo(counts.get(a));
+                    return byCount != 0 ? byCount : a.compareTo(b);
+                }
+            });
+            return ok(types.size() > POPULAR_ENTRY_TYPE_COUNT ? types.subList(0, POPULAR_ENTRY_TYPE_COUNT) : types);
+        }
+
+        if ("/entry/add".equals(path) && "POST".equals(method)) {
+            String geohash = requireGeohash(url);
+            DateTime now = new DateTime(DateTimeZone.UTC);
+            FroodyEntry entry = new FroodyEntry();
+            entry.setEntryId(nextEntryId.getAndIncrement());
+            entry.setUserId(requireLong(url, "userId"));
+            entry.setGeohash(geohash);
+            entry.setCreationDate(now);
+            entry.setModificationDate(now);
+            entry.setEntryType((int) requireLong(url, "entryType"));
+            entry.setDistributionType(optionalInt(url, "distributionType"));
+            entry.setCertificationType(optionalInt(url, "certificationType"));
+            entry.setDescription(url.queryParameter("description"));
+            entry.setContact(url.queryParameter("contact"));
+            entry.setAddress(url.queryParameter("address"));
+            synchronized (random) {
+                entry.setManagementCode(random.nextInt(Integer.MAX_VALUE));
+            }
+            putChange(entry);
+
+            ResponseEntryAdd response = new ResponseEntryAdd();
+            response.setEntryId(entry.getEntryId());
+            response.setManagementCode(entry.getManagementCode());
+            response.setCreationDate(now);
+            return ok(response);
+        }
+
+        if ("/entry/delete".equals(path) && "GET".equals(method)) {
+            long userId = requireLong(url, "userId");
+            long managementCode = requireLong(url, "managementCode");
+            FroodyEntry entry = modifiedEntries.get(requireLong(url, "entryId"));
+            boolean success = entry != null && !entry.getWasDeleted()
+                    && entry.getUserId() == userId && entry.getManagementCode() == managementCode;
+            if (success) {
+                FroodyEntry deleted = new FroodyEntry();
+                deleted.setEntryId(entry.getEntryId());
+                deleted.setUserId(entry.getUserId());
+                deleted.setGeohash(entry.getGeohash());
+                deleted.setCreationDate(entry.getCreationDate());
+                deleted.setModificationDate(new DateTime(DateTimeZone.UTC));
+                deleted.setEntryType(entry.getEntryType());
+                deleted.setWasDeleted(true);
+                deleted.setManagementCode(entry.getManagementCode());
+                putChange(deleted);
+            }
+            return ok(new ResponseOk().success(success));
+        }
+
+        if ("/user/register".equals(path) && "GET".equals(method)) {
+            return ok(new FroodyUser().userId(nextUserId.getAndIncrement()));
+        }
+
+        if (("/user/isEnabled".equals(path) || "/admin/cleanup".equals(path)) && "GET".equals(method)) {
+            return ok(new ResponseOk().success(true));
+        }
+
+        return error(404, "Not found: " + method + " " + path);
+    }
+
+    private void compress(RecordedRequest request, MockResponse response) {
+        if (acceptCompressedRequests) {
+            response.setHeader("Accept-Encoding", "gzip");
+        }
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        Buffer body = response.getBody();
+        if (!gzipResponses || acceptEncoding == null || !acceptEncoding.contains("gzip")
+                || body == null || body.size() == 0) {
+            return;
+        }
+        Buffer gzipped = new Buffer();
+        try {
+            GzipSink sink = new GzipSink(gzipped);
+            sink.write(body, body.size());
+            sink.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        response.setHeader("Content-Encoding", "gzip").setBody(gzipped);
+    }
+
+    private MockResponse ok(Object body) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(json.serialize(body));
+    }
+
+    private MockResponse error(int code, String message) {
+        return new MockResponse()
+                .setResponseCode(code)
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"message\":" + json.serialize(message) + "}");
+    }
+
+    private static String requireGeohash(HttpUrl url) {
+        String geohash = url.queryParameter("geohash");
+        if (!isGeohash(geohash)) {
+            throw new IllegalArgumentException("Invalid geohash: " + geohash);
+        }
+        return geohash;
+    }
+
+    private static DateTime requireDateTime(HttpUrl url, String name) {
+        String value = url.queryParameter(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return DateTime.parse(value);
+    }
+
+    private static long requireLong(HttpUrl url, String name) {
+        String value = url.queryParameter(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return Long.parseLong(value);
+    }
+
+    private static Integer optionalInt(HttpUrl url, String name) {
+        String value = url.queryParameter(name);
+        return value == null ? 0 : Integer.valueOf(value);
+    }
+
+    /**
+     * Accepted sockets get TCP_NODELAY, otherwise Nagle's algorithm and delayed ACKs
+     * add about 40 ms to responses written in several parts, hiding the configured latencies
+     */
+    private static class NoDelayServerSocketFactory extends ServerSocketFactory {
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new NoDelayServerSocket();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            ServerSocket socket = createServerSocket();
+            socket.bind(new InetSocketAddress(port));
+            return socket;
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            ServerSocket socket = createServerSocket();
+            socket.bind(new InetSocketAddress(port), backlog);
+            return socket;
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            ServerSocket socket = createServerSocket();
+            socket.bind(new InetSocketAddress(address, port), backlog);
+            return socket;
+        }
+    }
+
+    private static class NoDelayServerSocket extends ServerSocket {
+        NoDelayServerSocket() throws IOException {
+        }
+
+        @Override
+        public Socket accept() throws IOException {
+            Socket socket = super.accept();
+            socket.setTcpNoDelay(true);
+            return socket;
+        }
+    }
+}
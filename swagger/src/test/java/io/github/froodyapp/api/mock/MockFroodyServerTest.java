@@ -0,0 +1,206 @@
+package io.github.froodyapp.api.mock;
+
+import io.github.froodyapp.api.api.BlockApi;
+import io.github.froodyapp.api.api.EntryApi;
+import io.github.froodyapp.api.api.UserApi;
+import io.github.froodyapp.api.invoker.ApiClient;
+import io.github.froodyapp.api.invoker.ApiException;
+import io.github.froodyapp.api.model_.BlockChanges;
+import io.github.froodyapp.api.model_.BlockInfo;
+import io.github.froodyapp.api.model_.FroodyEntry;
+import io.github.froodyapp.api.model_.ResponseEntryAdd;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the APIs against the MockFroodyServer
+ */
+public class MockFroodyServerTest {
+
+    private MockFroodyServer server;
+    private BlockApi blockApi;
+    private EntryApi entryApi;
+    private UserApi userApi;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockFroodyServer().setEntriesPerBlock(10).start();
+        ApiClient apiClient = server.createApiClient();
+        blockApi = new BlockApi(apiClient);
+        entryApi = new EntryApi(apiClient);
+        userApi = new UserApi(apiClient);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    private static DateTime weeksAgo(int weeks) {
+        return new DateTime(DateTimeZone.UTC).minusWeeks(weeks);
+    }
+
+    @Test
+    public void blockGetTest() throws Exception {
+        List<FroodyEntry> block6 = blockApi.blockGetGet("u0yjjd", weeksAgo(4));
+        List<FroodyEntry> block5 = blockApi.blockGetGet("u0yjj", weeksAgo(4));
+
+        assertEquals(10, block6.size());
+        assertEquals(320, block5.size());
+        for (FroodyEntry entry : block6) {
+            assertTrue(entry.getGeohash().startsWith("u0yjjd"));
+            assertTrue(block5.contains(entry));
+        }
+
+        // Only entries modified since the given date
+        DateTime since = weeksAgo(1);
+        for (FroodyEntry entry : blockApi.blockGetGet("u0yjj", since)) {
+            assertTrue(entry.getModificationDate().isAfter(since));
+        }
+    }
+
+    @Test
+    public void blockInfoTest() throws Exception {
+        List<BlockInfo> infos = blockApi.blockInfoGet("u0yjjd", weeksAgo(4));
+        assertEquals(1, infos.size());
+        assertEquals("u0yjjd", infos.get(0).getGeohash());
+        assertTrue(infos.get(0).getHasBlockBeenModified());
+
+        List<BlockInfo> unmodified = blockApi.blockInfoGet("u0yjjd", infos.get(0).getModificationDate());
+        assertFalse(unmodified.get(0).getHasBlockBeenModified());
+        assertTrue(blockApi.blockGetGet("u0yjjd", infos.get(0).getModificationDate()).isEmpty());
+    }
+
+    @Test
+    public void blockChangesTest() throws Exception {
+        // Without cursor all entries of the blocks, in one request
+        BlockChanges all = blockApi.blockChangesGet(Arrays.asList("u0yjjd", "u0yjje", "u0yjjd"), null);
+        assertEquals(20, all.getEntries().size());
+        long cursor = all.getCursor();
+        assertTrue(blockApi.blockChangesGet(Arrays.asList("u0yjjd", "u0yjje"), cursor).getEntries().isEmpty());
+
+        // Only the changes since the cursor, within the blocks
+        long userId = userApi.userRegisterGet().getUserId();
+        ResponseEntryAdd added = entryApi.entryAddPost(userId, "u0yjjd6jk0zj", 3, 1, 0, "Äpfel", "me", "Street 1");
+        entryApi.entryAddPost(userId, "u0yjjf6jk0zj", 3, 1, 0, "Birnen", "me", "Street 2");
+        BlockChanges changes = blockApi.blockChangesGet(Arrays.asList("u0yjjd", "u0yjje"), cursor);
+        assertEquals(1, changes.getEntries().size());
+        assertEquals(added.getEntryId(), changes.getEntries().get(0).getEntryId());
+        assertTrue(changes.getCursor() > cursor);
+
+        entryApi.entryDeleteGet(userId, added.getManagementCode(), added.getEntryId());
+        changes = blockApi.blockChangesGet(Arrays.asList("u0yjj"), changes.getCursor());
+        assertEquals(1, changes.getEntries().size());
+        assertTrue(changes.getEntries().get(0).getWasDeleted());
+        assertEquals(4, server.getRequestCount("/block/changes"));
+
+        // Unknown cursors are gone
+        server.expireChanges();
+        try {
+            blockApi.blockChangesGet(Arrays.asList("u0yjjd"), cursor);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(410, e.getCode());
+        }
+        server.setChangesEnabled(false);
+        try {
+            blockApi.blockChangesGet(Arrays.asList("u0yjjd"), null);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(404, e.getCode());
+        }
+    }
+
+    @Test
+    public void deterministicTest() throws Exception {
+        MockFroodyServer other = new MockFroodyServer().setEntriesPerBlock(10).start();
+        try {
+            List<FroodyEntry> entries = blockApi.blockGetGet("u0yjjd", weeksAgo(4));
+            List<FroodyEntry> otherEntries = new BlockApi(other.createApiClient()).blockGetGet("u0yjjd", weeksAgo(4));
+            assertEquals(entries.size(), otherEntries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals(entries.get(i).getEntryId(), otherEntries.get(i).getEntryId());
+                assertEquals(entries.get(i).getGeohash(), otherEntries.get(i).getGeohash());
+                assertEquals(entries.get(i).getEntryType(), otherEntries.get(i).getEntryType());
+            }
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void entryLifecycleTest() throws Exception {
+        long userId = userApi.userRegisterGet().getUserId();
+        assertEquals(userId + 1, (long) userApi.userRegisterGet().getUserId());
+        assertTrue(userApi.userIsEnabledGet(userId).getSuccess());
+
+        ResponseEntryAdd added = entryApi.entryAddPost(userId, "u0yjjd6jk0zj", 3, 1, 0, "Äpfel", "me", "Street 1");
+        FroodyEntry entry = entryApi.entryByIdGet(added.getEntryId());
+        assertEquals("Äpfel", entry.getDescription());
+        assertEquals(11, blockApi.blockGetGet("u0yjjd", weeksAgo(4)).size());
+
+        assertFalse(entryApi.entryDeleteGet(userId, added.getManagementCode() + 1, added.getEntryId()).getSuccess());
+        assertTrue(entryApi.entryDeleteGet(userId, added.getManagementCode(), added.getEntryId()).getSuccess());
+        assertTrue(entryApi.entryByIdGet(added.getEntryId()).getWasDeleted());
+
+        // Synthetic entries are found by id too
+        FroodyEntry synthetic = blockApi.blockGetGet("u0yjjd", weeksAgo(4)).get(0);
+        assertEquals(synthetic.getGeohash(), entryApi.entryByIdGet(synthetic.getEntryId()).getGeohash());
+        assertNotNull(entryApi.entryPopularEntryTypesGet("u0yjjd"));
+    }
+
+    @Test
+    public void errorsTest() throws Exception {
+        try {
+            entryApi.entryByIdGet(Long.MAX_VALUE);
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(404, e.getCode());
+        }
+        try {
+            blockApi.blockGetGet("u0yj", weeksAgo(4));
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(400, e.getCode());
+        }
+
+        server.setErrorRate(1);
+        try {
+            blockApi.blockInfoGet("u0yjjd", weeksAgo(4));
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(503, e.getCode());
+        }
+
+        server.setErrorRate(0).setDisconnectRate(1);
+        try {
+            blockApi.blockInfoGet("u0yjjd", weeksAgo(4));
+            fail("ApiException expected");
+        } catch (ApiException e) {
+            assertEquals(0, e.getCode());
+        }
+        assertEquals(1, server.getRequestCount("/entry/byId"));
+        assertEquals(1, server.getRequestCount("/block/get"));
+    }
+
+    @Test
+    public void latencyTest() throws Exception {
+        server.setLatency(100, 150);
+        long start = System.nanoTime();
+        blockApi.blockInfoGet("u0yjjd", weeksAgo(4));
+        long millis = (System.nanoTime() - start) / 1000000;
+        assertTrue("Latency was " + millis, millis >= 100);
+    }
+}